@@ -0,0 +1,44 @@
+package com.sarahlensing.staggeredgridview.benchmarks;
+
+import com.sarahlensing.staggeredgridview.engine.GridGeometry;
+import com.sarahlensing.staggeredgridview.engine.JustifiedPlacementStrategy;
+import com.sarahlensing.staggeredgridview.engine.LanePlacementStrategy;
+import com.sarahlensing.staggeredgridview.engine.PlacementStrategy;
+import com.sarahlensing.staggeredgridview.engine.SkylinePlacementStrategy;
+
+/**
+ * The grid every benchmark places into: a 1080x1920 phone screen with the default margin.
+ */
+final class BenchmarkGrids {
+    static final int WIDTH = 1080;
+    static final int HEIGHT = 1920;
+    static final int ITEM_MARGIN = 10;
+
+    private BenchmarkGrids() {
+    }
+
+    static boolean isVertical(String orientation) {
+        return "vertical".equals(orientation);
+    }
+
+    static GridGeometry geometry(boolean vertical) {
+        return new GridGeometry(WIDTH, HEIGHT, ITEM_MARGIN, 0, 0, 0, 0, vertical);
+    }
+
+    /**
+     * @param name skyline, lanes (three of them) or justified (rows of 300px)
+     */
+    static PlacementStrategy strategy(String name) {
+        if ("lanes".equals(name)) {
+            return new LanePlacementStrategy(3);
+        }
+        if ("justified".equals(name)) {
+            return new JustifiedPlacementStrategy(300);
+        }
+        return new SkylinePlacementStrategy();
+    }
+
+    static SyntheticItemSource source(int itemCount, int sectionCount, boolean vertical) {
+        return new SyntheticItemSource(itemCount, sectionCount, vertical ? WIDTH : HEIGHT, ITEM_MARGIN, vertical);
+    }
+}
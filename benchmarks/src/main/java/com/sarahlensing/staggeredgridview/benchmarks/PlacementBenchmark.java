@@ -0,0 +1,60 @@
+package com.sarahlensing.staggeredgridview.benchmarks;
+
+import com.sarahlensing.staggeredgridview.engine.GridGeometry;
+import com.sarahlensing.staggeredgridview.engine.LayoutEngine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Places every item from scratch, as a first layout or a full reload does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PlacementBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int itemCount;
+
+    @Param({"vertical", "horizontal"})
+    public String orientation;
+
+    @Param({"0", "20"})
+    public int sectionCount;
+
+    @Param({"skyline", "lanes", "justified"})
+    public String strategy;
+
+    private GridGeometry mGeometry;
+    private SyntheticItemSource mSource;
+    private final LayoutEngine mEngine = new LayoutEngine();
+
+    @Setup
+    public void setUp() {
+        final boolean vertical = BenchmarkGrids.isVertical(orientation);
+        mGeometry = BenchmarkGrids.geometry(vertical);
+        mSource = BenchmarkGrids.source(itemCount, sectionCount, vertical);
+        mEngine.setPlacementStrategy(BenchmarkGrids.strategy(strategy));
+    }
+
+    @Benchmark
+    public int placeAll() {
+        mEngine.start(mGeometry, mSource);
+        mEngine.ensurePlacedThrough(Integer.MAX_VALUE);
+        return mEngine.getPlacedCount();
+    }
+}
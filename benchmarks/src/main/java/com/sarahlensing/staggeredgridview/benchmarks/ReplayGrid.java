@@ -0,0 +1,110 @@
+package com.sarahlensing.staggeredgridview.benchmarks;
+
+import com.sarahlensing.staggeredgridview.engine.GridGeometry;
+import com.sarahlensing.staggeredgridview.engine.GridRect;
+import com.sarahlensing.staggeredgridview.engine.LayoutEngine;
+import com.sarahlensing.staggeredgridview.engine.Placement;
+import com.sarahlensing.staggeredgridview.engine.ScrollWindow;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Scrolls through the same ScrollWindow StaggeredGridView scrolls through, binding placements
+ * where the grid binds views, and counts the work done.
+ */
+class ReplayGrid implements ScrollWindow.Items {
+    private final LayoutEngine mEngine = new LayoutEngine();
+    private final ScrollWindow mWindow = new ScrollWindow(mEngine, this);
+    private final ArrayList<Placement> mBound = new ArrayList<Placement>();
+    private final Set<Integer> mBoundPositions = new HashSet<Integer>();
+    private int mOffset;
+
+    private final Frame mFrame = new Frame();
+
+    /**
+     * Work done while moving to one offset.
+     */
+    static class Frame {
+        int offset;
+        int placed;
+        int bound;
+        int recycled;
+        int visible;
+        long layoutNanos;
+    }
+
+    ReplayGrid(GridGeometry geometry, SyntheticItemSource source, boolean paged, int pagesToPreload) {
+        mWindow.setViewport(geometry.vertical, geometry.getViewportLength(), geometry.itemMargin, pagesToPreload);
+        mEngine.setPagedPlacementEnabled(paged);
+        mWindow.setResidentRange(0);
+        mEngine.start(geometry, source);
+        mWindow.bindRange(0, 0, mWindow.getAmountToLayout());
+    }
+
+    int getOffset() {
+        return mOffset;
+    }
+
+    /**
+     * Scrolls to offset, clamped to the placed content.
+     *
+     * @return The work done, valid until the next call
+     */
+    Frame scrollTo(int offset) {
+        final int placedBefore = mEngine.getPlacedCount();
+        mFrame.bound = 0;
+
+        final long start = System.nanoTime();
+        mOffset = mWindow.clampOffset(offset);
+        mWindow.bindRange(mOffset, mOffset, mOffset + mWindow.getAmountToLayout());
+        mFrame.recycled = mWindow.unbindOffscreen(mOffset);
+        mFrame.layoutNanos = System.nanoTime() - start;
+
+        mFrame.offset = mOffset;
+        mFrame.placed = mEngine.getPlacedCount() - placedBefore;
+        mFrame.visible = mBound.size();
+        return mFrame;
+    }
+
+    @Override
+    public boolean isBound(int rawPosition) {
+        return mBoundPositions.contains(rawPosition);
+    }
+
+    @Override
+    public void bind(Placement placement) {
+        mBound.add(placement);
+        mBoundPositions.add(placement.rawPosition);
+        mFrame.bound++;
+    }
+
+    @Override
+    public int getBoundCount() {
+        return mBound.size();
+    }
+
+    @Override
+    public GridRect getBoundRect(int index) {
+        return mBound.get(index).rect;
+    }
+
+    @Override
+    public boolean unbind(int index) {
+        //the last one takes its place, the window has already looked at it
+        final Placement placement = mBound.get(index);
+        mBound.set(index, mBound.get(mBound.size() - 1));
+        mBound.remove(mBound.size() - 1);
+        mBoundPositions.remove(placement.rawPosition);
+        return true;
+    }
+
+    @Override
+    public void beginPhase(int phase) {
+    }
+
+    @Override
+    public void endPhase(int phase) {
+    }
+}
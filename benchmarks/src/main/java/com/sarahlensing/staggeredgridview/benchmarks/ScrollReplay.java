@@ -0,0 +1,296 @@
+package com.sarahlensing.staggeredgridview.benchmarks;
+
+import com.sarahlensing.staggeredgridview.engine.GridGeometry;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Replays a scroll through the layout engine frame by frame and reports the work done in every
+ * frame as JSON lines, followed by a summary line. It scrolls through the same ScrollWindow as
+ * StaggeredGridView, so the items placed, bound and recycled are the ones the grid would place,
+ * bind and recycle. Given a baseline report it exits with status 1 when the replay did more work
+ * than the baseline, so per-frame regressions fail CI.
+ *
+ * <pre>
+ * ./gradlew :benchmarks:replay -PreplayArgs="--fling 12000 --items 10000 --out build/replay.json"
+ * ./gradlew :benchmarks:replay -PreplayArgs="--events recorded.txt --baseline replay-baseline.json"
+ * </pre>
+ *
+ * <p>Options: --items, --sections, --orientation vertical|horizontal, --paged, --preload pages,
+ * --fling px/s or --events file, --frame-ms, --warmup runs, --out file, --baseline file,
+ * --forks jvms and --tolerance, the fraction layout time may grow by before it counts as a
+ * regression.</p>
+ *
+ * <p>The baseline has to replay the same number of frames. Counts (items placed, bound and
+ * recycled) are deterministic and compared exactly. Layout time from a single run is only
+ * reported. With --forks the replay is also run in that many fresh JVMs, and the median of their
+ * 95th percentile layout times is compared within the tolerance, when the baseline has one.</p>
+ */
+public class ScrollReplay {
+    private int mItemCount = 10000;
+    private int mSectionCount;
+    private boolean mVertical = true;
+    private boolean mPaged;
+    private int mPagesToPreload = 2;
+    private float mFlingVelocity = 12000f;
+    private String mEventsPath;
+    private int mFrameMillis = 16;
+    private int mWarmupRuns = 3;
+    private String mOutPath;
+    private String mBaselinePath;
+    private int mForks;
+    private float mTolerance = 0.25f;
+    private final List<String> mForkArgs = new ArrayList<String>();
+
+    //deterministic, so compared exactly
+    private static final String[] SUMMARY_KEYS = {"frames", "placed", "bound", "recycled"};
+    private static final String MEDIAN_KEY = "layoutNanosP95Median";
+
+    public static void main(String[] args) throws IOException {
+        ScrollReplay replay = new ScrollReplay();
+        replay.parse(args);
+        System.exit(replay.run() ? 0 : 1);
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            final String arg = args[i];
+            if ("--paged".equals(arg)) {
+                mPaged = true;
+                mForkArgs.add(arg);
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            final String value = args[++i];
+            if (!"--out".equals(arg) && !"--baseline".equals(arg) && !"--forks".equals(arg)) {
+                mForkArgs.add(arg);
+                mForkArgs.add(value);
+            }
+            if ("--items".equals(arg)) {
+                mItemCount = Integer.parseInt(value);
+            }
+            else if ("--sections".equals(arg)) {
+                mSectionCount = Integer.parseInt(value);
+            }
+            else if ("--orientation".equals(arg)) {
+                mVertical = BenchmarkGrids.isVertical(value);
+            }
+            else if ("--preload".equals(arg)) {
+                mPagesToPreload = Integer.parseInt(value);
+            }
+            else if ("--fling".equals(arg)) {
+                mFlingVelocity = Float.parseFloat(value);
+            }
+            else if ("--events".equals(arg)) {
+                mEventsPath = value;
+            }
+            else if ("--frame-ms".equals(arg)) {
+                mFrameMillis = Integer.parseInt(value);
+            }
+            else if ("--warmup".equals(arg)) {
+                mWarmupRuns = Integer.parseInt(value);
+            }
+            else if ("--out".equals(arg)) {
+                mOutPath = value;
+            }
+            else if ("--baseline".equals(arg)) {
+                mBaselinePath = value;
+            }
+            else if ("--forks".equals(arg)) {
+                mForks = Integer.parseInt(value);
+            }
+            else if ("--tolerance".equals(arg)) {
+                mTolerance = Float.parseFloat(value);
+            }
+            else {
+                throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+    }
+
+    private boolean run() throws IOException {
+        final ScrollScript script = mEventsPath != null ?
+                ScrollScript.fromEvents(mEventsPath, mFrameMillis) : ScrollScript.fling(mFlingVelocity, mFrameMillis);
+
+        //the same replay a few times first so the measured run is not timing the JIT
+        for (int i = 0; i < mWarmupRuns; i++) {
+            replay(script, null, -1);
+        }
+
+        final long median = mForks > 0 ? medianOfForks() : -1;
+
+        Writer out = mOutPath != null ? new FileWriter(mOutPath) : new PrintWriter(System.out);
+        long[] summary;
+        try {
+            summary = replay(script, new PrintWriter(out), median);
+        }
+        finally {
+            out.flush();
+            if (mOutPath != null) {
+                out.close();
+            }
+        }
+        return mBaselinePath == null || compareWithBaseline(summary, median);
+    }
+
+    /**
+     * Runs the replay in mForks fresh JVMs, one after another so they don't compete.
+     *
+     * @return The median of their 95th percentile layout times
+     */
+    private long medianOfForks() throws IOException {
+        final long[] p95s = new long[mForks];
+        for (int i = 0; i < mForks; i++) {
+            List<String> command = new ArrayList<String>();
+            command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(ScrollReplay.class.getName());
+            command.addAll(mForkArgs);
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+
+            String summary = null;
+            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("{\"summary\":true")) {
+                        summary = line;
+                    }
+                }
+            }
+            finally {
+                reader.close();
+            }
+            try {
+                process.waitFor();
+            }
+            catch (InterruptedException e) {
+                throw new IOException("Interrupted waiting for fork " + i, e);
+            }
+            final long p95 = summary != null ? readValue(summary, "layoutNanosP95") : -1;
+            if (p95 < 0) {
+                throw new IOException("Fork " + i + " exited with " + process.exitValue() + " and no summary");
+            }
+            p95s[i] = p95;
+        }
+        Arrays.sort(p95s);
+        return p95s[mForks / 2];
+    }
+
+    /**
+     * @return The value of key in a summary line, or -1 if it has none
+     */
+    private static long readValue(String summary, String key) {
+        Matcher matcher = Pattern.compile("\"" + key + "\":(-?\\d+)").matcher(summary);
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+
+    /**
+     * @return The summary values, in the order of SUMMARY_KEYS
+     */
+    private long[] replay(ScrollScript script, PrintWriter report, long median) {
+        final GridGeometry geometry = BenchmarkGrids.geometry(mVertical);
+        final SyntheticItemSource source = BenchmarkGrids.source(mItemCount, mSectionCount, mVertical);
+        final ReplayGrid grid = new ReplayGrid(geometry, source, mPaged, mPagesToPreload);
+
+        final int frames = script.getFrameCount();
+        final long[] layoutNanos = new long[frames];
+        long placed = 0;
+        long bound = 0;
+        long recycled = 0;
+        for (int i = 0; i < frames; i++) {
+            final ReplayGrid.Frame frame = grid.scrollTo(grid.getOffset() + script.getDelta(i));
+            layoutNanos[i] = frame.layoutNanos;
+            placed += frame.placed;
+            bound += frame.bound;
+            recycled += frame.recycled;
+            if (report != null) {
+                report.println("{\"frame\":" + i + ",\"timeMillis\":" + i * script.getFrameMillis() +
+                        ",\"offset\":" + frame.offset + ",\"placed\":" + frame.placed +
+                        ",\"bound\":" + frame.bound + ",\"recycled\":" + frame.recycled +
+                        ",\"visible\":" + frame.visible + ",\"layoutNanos\":" + frame.layoutNanos + "}");
+            }
+        }
+
+        long[] sorted = layoutNanos.clone();
+        Arrays.sort(sorted);
+        final long p95 = frames > 0 ? sorted[Math.min(frames - 1, (int) (frames * 0.95f))] : 0;
+        final long[] summary = {frames, placed, bound, recycled};
+        if (report != null) {
+            StringBuilder line = new StringBuilder("{\"summary\":true");
+            for (int i = 0; i < SUMMARY_KEYS.length; i++) {
+                line.append(",\"").append(SUMMARY_KEYS[i]).append("\":").append(summary[i]);
+            }
+            line.append(",\"layoutNanosP95\":").append(p95);
+            line.append(",\"layoutNanosMax\":").append(frames > 0 ? sorted[frames - 1] : 0);
+            if (median >= 0) {
+                line.append(",\"forks\":").append(mForks).append(",\"").append(MEDIAN_KEY).append("\":").append(median);
+            }
+            report.println(line.append('}'));
+        }
+        return summary;
+    }
+
+    private boolean compareWithBaseline(long[] summary, long median) throws IOException {
+        String baselineSummary = null;
+        BufferedReader reader = new BufferedReader(new FileReader(mBaselinePath));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("{\"summary\":true")) {
+                    baselineSummary = line;
+                }
+            }
+        }
+        finally {
+            reader.close();
+        }
+        if (baselineSummary == null) {
+            throw new IOException("No summary line in " + mBaselinePath);
+        }
+
+        boolean passed = true;
+        for (int i = 0; i < SUMMARY_KEYS.length; i++) {
+            final long baseline = readValue(baselineSummary, SUMMARY_KEYS[i]);
+            if (baseline < 0) {
+                continue;
+            }
+            if (i == 0 && summary[i] != baseline) {
+                System.err.println("Baseline replayed " + baseline + " frames, not " + summary[i] +
+                        "; it was recorded for a different scroll");
+                return false;
+            }
+            if (summary[i] > baseline) {
+                System.err.println("Regression in " + SUMMARY_KEYS[i] + ": " + summary[i] + " (baseline " + baseline + ")");
+                passed = false;
+            }
+        }
+
+        //a single run's timing is too noisy to fail on, only the median of forks is compared
+        final long baselineMedian = readValue(baselineSummary, MEDIAN_KEY);
+        if (median >= 0 && baselineMedian >= 0) {
+            final long allowed = (long) (baselineMedian * (1 + mTolerance));
+            if (median > allowed) {
+                System.err.println("Regression in " + MEDIAN_KEY + ": " + median +
+                        " (baseline " + baselineMedian + ", allowed " + allowed + ")");
+                passed = false;
+            }
+        }
+        return passed;
+    }
+}
@@ -0,0 +1,160 @@
+package com.sarahlensing.staggeredgridview.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * A scroll to replay, as the change in offset per frame. Scripts are either a synthetic fling or
+ * a recorded stream of touch events; either way the same script always produces the same frames.
+ */
+class ScrollScript {
+    //px/s^2, a constant deceleration standing in for the platform scroller's friction
+    private static final float DECELERATION = 4000f;
+
+    //only the end of a drag counts towards the velocity it is flung with
+    private static final long VELOCITY_WINDOW_MS = 100;
+
+    private final ArrayList<Integer> mDeltas = new ArrayList<Integer>();
+    private final int mFrameMillis;
+
+    private ScrollScript(int frameMillis) {
+        mFrameMillis = frameMillis;
+    }
+
+    int getFrameCount() {
+        return mDeltas.size();
+    }
+
+    int getFrameMillis() {
+        return mFrameMillis;
+    }
+
+    /**
+     * @return Pixels the offset moves by in the given frame, positive towards the end
+     */
+    int getDelta(int frame) {
+        return mDeltas.get(frame);
+    }
+
+    /**
+     * A fling released at velocity that coasts until it comes to rest.
+     *
+     * @param velocity px/s, positive to fling towards the end of the content
+     */
+    static ScrollScript fling(float velocity, int frameMillis) {
+        ScrollScript script = new ScrollScript(frameMillis);
+        script.addFling(velocity);
+        return script;
+    }
+
+    /**
+     * Touch events recorded from the grid, one per line as "timeMillis action coordinate" where
+     * action is down, move or up and coordinate is the touch position along the scrolling axis.
+     * Lines starting with # are ignored. The content follows the finger while it is down and is
+     * flung with the finger's final velocity when it is lifted.
+     */
+    static ScrollScript fromEvents(String path, int frameMillis) throws IOException {
+        ArrayList<long[]> events = new ArrayList<long[]>();
+        BufferedReader reader = new BufferedReader(new FileReader(path));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                if (parts.length != 3) {
+                    throw new IOException("Expected \"timeMillis action coordinate\": " + line);
+                }
+                events.add(new long[] {Long.parseLong(parts[0]), actionFor(parts[1]),
+                        Math.round(Float.parseFloat(parts[2]))});
+            }
+        }
+        finally {
+            reader.close();
+        }
+
+        ScrollScript script = new ScrollScript(frameMillis);
+        script.addEvents(events);
+        return script;
+    }
+
+    private static final int ACTION_DOWN = 0;
+    private static final int ACTION_MOVE = 1;
+    private static final int ACTION_UP = 2;
+
+    private static int actionFor(String name) throws IOException {
+        if ("down".equals(name)) {
+            return ACTION_DOWN;
+        }
+        if ("move".equals(name)) {
+            return ACTION_MOVE;
+        }
+        if ("up".equals(name)) {
+            return ACTION_UP;
+        }
+        throw new IOException("Unknown action " + name);
+    }
+
+    private void addEvents(ArrayList<long[]> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        long frameTime = events.get(0)[0];
+        int index = 0;
+        long lastCoordinate = events.get(0)[2];
+        float releaseVelocity = 0;
+        while (index < events.size()) {
+            frameTime += mFrameMillis;
+            int delta = 0;
+            while (index < events.size() && events.get(index)[0] <= frameTime) {
+                long[] event = events.get(index);
+                if (event[1] == ACTION_DOWN) {
+                    lastCoordinate = event[2];
+                }
+                else {
+                    //dragging towards the beginning edge moves the content towards the end
+                    delta += (int) (lastCoordinate - event[2]);
+                    lastCoordinate = event[2];
+                }
+                if (event[1] == ACTION_UP) {
+                    releaseVelocity = velocityAt(events, index);
+                }
+                index++;
+            }
+            mDeltas.add(delta);
+        }
+        addFling(releaseVelocity);
+    }
+
+    private static float velocityAt(ArrayList<long[]> events, int upIndex) {
+        long[] up = events.get(upIndex);
+        int first = upIndex;
+        while (first > 0 && events.get(first - 1)[1] != ACTION_DOWN &&
+                up[0] - events.get(first - 1)[0] <= VELOCITY_WINDOW_MS) {
+            first--;
+        }
+        final long elapsed = up[0] - events.get(first)[0];
+        if (elapsed <= 0) {
+            return 0;
+        }
+        return (events.get(first)[2] - up[2]) * 1000f / elapsed;
+    }
+
+    private void addFling(float velocity) {
+        final float frameSeconds = mFrameMillis / 1000f;
+        float remainder = 0;
+        while (Math.abs(velocity) > 1f) {
+            final float decelerated = Math.abs(velocity) - DECELERATION * frameSeconds;
+            final float next = decelerated <= 0 ? 0 : Math.signum(velocity) * decelerated;
+            final float distance = (velocity + next) / 2 * frameSeconds + remainder;
+            final int delta = (int) distance;
+            remainder = distance - delta;
+            mDeltas.add(delta);
+            velocity = next;
+        }
+    }
+}
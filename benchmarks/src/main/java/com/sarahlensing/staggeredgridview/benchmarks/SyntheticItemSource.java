@@ -0,0 +1,127 @@
+package com.sarahlensing.staggeredgridview.benchmarks;
+
+import com.sarahlensing.staggeredgridview.ItemSize;
+import com.sarahlensing.staggeredgridview.engine.ItemSource;
+
+import java.util.Random;
+
+/**
+ * Items sized like a typical photo grid: mostly one column wide, some spanning two, with the
+ * length along the scrolling axis following common photo aspect ratios. Sizes are generated
+ * from a fixed seed so every run places the same content.
+ */
+class SyntheticItemSource implements ItemSource {
+    private static final int COLUMNS = 3;
+    private static final float[] ASPECT_RATIOS = {0.75f, 1f, 1f, 1.33f, 1.5f, 0.5625f, 1.78f};
+
+    private final boolean mVertical;
+    private final int mSectionCount;
+    private final int mItemsPerSection;
+    private final int mSectionHeaderLength;
+    private final int mCrossLength;
+    private final int mItemMargin;
+
+    private int[] mWidths = new int[0];
+    private int[] mHeights = new int[0];
+    private int[] mSpans = new int[0];
+    private int mItemCount;
+    private final Random mRandom = new Random(42);
+
+    /**
+     * @param itemCount Number of items, spread evenly over the sections
+     * @param sectionCount Number of sections, 0 for a grid without section headers
+     * @param crossLength Size of the grid across the scrolling axis
+     */
+    SyntheticItemSource(int itemCount, int sectionCount, int crossLength, int itemMargin, boolean vertical) {
+        mVertical = vertical;
+        mSectionCount = sectionCount;
+        mCrossLength = crossLength;
+        mItemMargin = itemMargin;
+        mSectionHeaderLength = 48;
+        mItemsPerSection = itemCount / Math.max(1, sectionCount);
+        append(itemCount);
+    }
+
+    /**
+     * Adds items to the end of the last section.
+     */
+    void append(int count) {
+        final int itemCount = mItemCount + count;
+        if (itemCount > mWidths.length) {
+            int[] widths = new int[Math.max(itemCount, mWidths.length * 2)];
+            int[] heights = new int[widths.length];
+            int[] spans = new int[widths.length];
+            System.arraycopy(mWidths, 0, widths, 0, mItemCount);
+            System.arraycopy(mHeights, 0, heights, 0, mItemCount);
+            System.arraycopy(mSpans, 0, spans, 0, mItemCount);
+            mWidths = widths;
+            mHeights = heights;
+            mSpans = spans;
+        }
+        final int column = (mCrossLength - (COLUMNS + 1) * mItemMargin) / COLUMNS;
+        for (int i = mItemCount; i < itemCount; i++) {
+            final int span = mRandom.nextInt(8) == 0 ? 2 : 1;
+            final int cross = column * span + (span - 1) * mItemMargin;
+            final int length = (int) (column / ASPECT_RATIOS[mRandom.nextInt(ASPECT_RATIOS.length)]) * span;
+            mWidths[i] = mVertical ? cross : length;
+            mHeights[i] = mVertical ? length : cross;
+            mSpans[i] = span;
+        }
+        mItemCount = itemCount;
+    }
+
+    /**
+     * Gives an item a new length along the scrolling axis, as if its content changed.
+     */
+    void resize(int section, int position) {
+        final int index = index(section, position);
+        final int cross = mVertical ? mWidths[index] : mHeights[index];
+        final int length = (int) (cross / ASPECT_RATIOS[mRandom.nextInt(ASPECT_RATIOS.length)]);
+        if (mVertical) {
+            mHeights[index] = length;
+        }
+        else {
+            mWidths[index] = length;
+        }
+    }
+
+    private int index(int section, int position) {
+        return section * mItemsPerSection + position;
+    }
+
+    @Override
+    public boolean hasSections() {
+        return mSectionCount > 0;
+    }
+
+    @Override
+    public int getSectionCount() {
+        return Math.max(1, mSectionCount);
+    }
+
+    @Override
+    public int getItemCount(int section) {
+        if (section == getSectionCount() - 1) {
+            //the last section also takes what does not divide evenly, and appended items
+            return mItemCount - mItemsPerSection * section;
+        }
+        return mItemsPerSection;
+    }
+
+    @Override
+    public ItemSize getSectionSize(int section) {
+        final int cross = mCrossLength - 2 * mItemMargin;
+        return mVertical ? new ItemSize(cross, mSectionHeaderLength) : new ItemSize(mSectionHeaderLength, cross);
+    }
+
+    @Override
+    public ItemSize getItemSize(int section, int position) {
+        final int index = index(section, position);
+        return new ItemSize(mWidths[index], mHeights[index]);
+    }
+
+    @Override
+    public int getItemSpan(int section, int position) {
+        return mSpans[index(section, position)];
+    }
+}
@@ -0,0 +1,80 @@
+package com.sarahlensing.staggeredgridview.benchmarks;
+
+import com.sarahlensing.staggeredgridview.engine.GridGeometry;
+import com.sarahlensing.staggeredgridview.engine.LayoutEngine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Placing again after the adapter changed. Every operation starts from a fully placed grid,
+ * which is rebuilt outside the measured time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UpdateBenchmark {
+    private static final int APPEND_COUNT = 100;
+
+    @Param({"1000", "10000", "100000"})
+    public int itemCount;
+
+    @Param({"vertical", "horizontal"})
+    public String orientation;
+
+    @Param({"0", "20"})
+    public int sectionCount;
+
+    private GridGeometry mGeometry;
+    private SyntheticItemSource mSource;
+    private final LayoutEngine mEngine = new LayoutEngine();
+
+    @Setup(Level.Invocation)
+    public void placeEverything() {
+        final boolean vertical = BenchmarkGrids.isVertical(orientation);
+        mGeometry = BenchmarkGrids.geometry(vertical);
+        mSource = BenchmarkGrids.source(itemCount, sectionCount, vertical);
+        mEngine.start(mGeometry, mSource);
+        mEngine.ensurePlacedThrough(Integer.MAX_VALUE);
+    }
+
+    /**
+     * A page of items added to the end, as when loading more results.
+     */
+    @Benchmark
+    public int appendPage() {
+        mSource.append(APPEND_COUNT);
+        mEngine.appendSections();
+        mEngine.ensurePlacedThrough(Integer.MAX_VALUE);
+        return mEngine.getPlacedCount();
+    }
+
+    /**
+     * An item in the middle changes size; everything from the checkpoint before it is placed
+     * again.
+     */
+    @Benchmark
+    public int changeMiddleItem() {
+        final int section = mSource.getSectionCount() / 2;
+        final int position = mSource.getItemCount(section) / 2;
+        mSource.resize(section, position);
+        mEngine.invalidateFrom(section, position);
+        mEngine.ensurePlacedThrough(Integer.MAX_VALUE);
+        return mEngine.getPlacedCount();
+    }
+}
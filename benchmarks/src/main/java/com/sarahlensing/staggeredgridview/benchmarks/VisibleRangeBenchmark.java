@@ -0,0 +1,113 @@
+package com.sarahlensing.staggeredgridview.benchmarks;
+
+import com.sarahlensing.staggeredgridview.engine.GridGeometry;
+import com.sarahlensing.staggeredgridview.engine.LayoutEngine;
+import com.sarahlensing.staggeredgridview.engine.Placement;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The work the grid does per frame while scrolling: make sure the pages ahead are placed, page
+ * placements in when paging, and find the placements overlapping the viewport. One operation is
+ * one frame of a scroll that flings down the whole content and back up again.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VisibleRangeBenchmark {
+    private static final int PAGES_TO_PRELOAD = 2;
+
+    @Param({"10000", "100000"})
+    public int itemCount;
+
+    @Param({"vertical", "horizontal"})
+    public String orientation;
+
+    @Param({"false", "true"})
+    public boolean paged;
+
+    private final LayoutEngine mEngine = new LayoutEngine();
+    private final ArrayList<Placement> mVisible = new ArrayList<Placement>();
+    private int[] mFrameOffsets;
+    private int mFrame;
+    private int mViewportLength;
+
+    @Setup
+    public void setUp() {
+        final boolean vertical = BenchmarkGrids.isVertical(orientation);
+        final GridGeometry geometry = BenchmarkGrids.geometry(vertical);
+        mViewportLength = geometry.getViewportLength();
+
+        mEngine.setPagedPlacementEnabled(paged);
+        mEngine.setResidentRange(0, residentAmount());
+        mEngine.start(geometry, BenchmarkGrids.source(itemCount, 0, vertical));
+        mEngine.ensurePlacedThrough(Integer.MAX_VALUE);
+        mFrameOffsets = flingOffsets(mEngine.getContentEnd() - mViewportLength);
+        mFrame = 0;
+    }
+
+    private int residentAmount() {
+        return mViewportLength * (PAGES_TO_PRELOAD * 2 + 1);
+    }
+
+    /**
+     * Offsets of a scroll that accelerates to a fast fling towards maxOffset, slows down near
+     * it and then does the same back to 0.
+     */
+    private static int[] flingOffsets(int maxOffset) {
+        ArrayList<Integer> offsets = new ArrayList<Integer>();
+        int offset = 0;
+        int velocity = 0;
+        while (offset < maxOffset) {
+            velocity = Math.min(velocity + 8, Math.max(4, (maxOffset - offset) / 8));
+            velocity = Math.min(velocity, 250);
+            offset = Math.min(maxOffset, offset + velocity);
+            offsets.add(offset);
+        }
+        velocity = 0;
+        while (offset > 0) {
+            velocity = Math.min(velocity + 8, Math.max(4, offset / 8));
+            velocity = Math.min(velocity, 250);
+            offset = Math.max(0, offset - velocity);
+            offsets.add(offset);
+        }
+
+        int[] result = new int[offsets.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = offsets.get(i);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public int scrollFrame() {
+        final int offset = mFrameOffsets[mFrame];
+        mFrame = (mFrame + 1) % mFrameOffsets.length;
+
+        final int end = offset + mViewportLength;
+        if (mEngine.isPagedPlacement() &&
+                (offset < mEngine.getResidentStart() || end > mEngine.getResidentEnd())) {
+            final int amount = mViewportLength * PAGES_TO_PRELOAD * 2;
+            mEngine.pageIn(Math.max(0, offset - amount), end + amount);
+        }
+        mVisible.clear();
+        mEngine.getPlacementsInRange(offset, end, mVisible);
+        return mVisible.size();
+    }
+}
@@ -0,0 +1,21 @@
+package com.sarahlensing.staggeredgridview.engine;
+
+import java.util.ArrayList;
+
+/**
+ * Everything needed to resume placement part way through the items: where the next item
+ * comes from and the skyline it will be placed against.
+ */
+class Checkpoint {
+    int section;
+    int position; //-1 while the section's header is still to be placed
+    int rawPosition;
+    ArrayList<GridRect> skyline;
+    boolean hasContent;
+
+    //furthest edge reached by any item placed before this checkpoint
+    int contentEnd;
+
+    //closest edge at which any item placed between this checkpoint and the next one begins
+    int minStart = Integer.MAX_VALUE;
+}
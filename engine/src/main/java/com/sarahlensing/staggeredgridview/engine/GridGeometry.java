@@ -0,0 +1,84 @@
+package com.sarahlensing.staggeredgridview.engine;
+
+/**
+ * The viewport a grid is placed into: its size, padding, the margin between items and the
+ * scrolling orientation.
+ */
+public final class GridGeometry {
+    public final int width;
+    public final int height;
+    public final int itemMargin;
+    public final int paddingLeft;
+    public final int paddingTop;
+    public final int paddingRight;
+    public final int paddingBottom;
+    public final boolean vertical;
+
+    public GridGeometry(int width, int height, int itemMargin, int paddingLeft, int paddingTop,
+                        int paddingRight, int paddingBottom, boolean vertical) {
+        this.width = width;
+        this.height = height;
+        this.itemMargin = itemMargin;
+        this.paddingLeft = paddingLeft;
+        this.paddingTop = paddingTop;
+        this.paddingRight = paddingRight;
+        this.paddingBottom = paddingBottom;
+        this.vertical = vertical;
+    }
+
+    public int getBeginningTop() {
+        return paddingTop + itemMargin;
+    }
+
+    public int getBeginningLeft() {
+        return paddingLeft + itemMargin;
+    }
+
+    public int getEndingRight() {
+        return width - paddingRight - itemMargin;
+    }
+
+    public int getEndingBottom() {
+        return height - paddingBottom - itemMargin;
+    }
+
+    /**
+     * @return The size of the viewport along the scrolling axis
+     */
+    public int getViewportLength() {
+        return vertical ? height : width;
+    }
+
+    int[] toKey() {
+        return new int[] {width, height, itemMargin, vertical ? 1 : 0,
+                paddingLeft, paddingTop, paddingRight, paddingBottom};
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GridGeometry)) {
+            return false;
+        }
+        GridGeometry other = (GridGeometry) o;
+        return width == other.width && height == other.height && itemMargin == other.itemMargin &&
+                paddingLeft == other.paddingLeft && paddingTop == other.paddingTop &&
+                paddingRight == other.paddingRight && paddingBottom == other.paddingBottom &&
+                vertical == other.vertical;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = width;
+        result = 31 * result + height;
+        result = 31 * result + itemMargin;
+        result = 31 * result + paddingLeft;
+        result = 31 * result + paddingTop;
+        result = 31 * result + paddingRight;
+        result = 31 * result + paddingBottom;
+        result = 31 * result + (vertical ? 1 : 0);
+        return result;
+    }
+}
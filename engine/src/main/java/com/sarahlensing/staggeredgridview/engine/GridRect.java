@@ -0,0 +1,69 @@
+package com.sarahlensing.staggeredgridview.engine;
+
+/**
+ * An immutable rectangle in content coordinates. Unlike android.graphics.Rect this has no
+ * dependency on the Android framework, so placement can run on any JVM.
+ */
+public final class GridRect {
+    public final int left;
+    public final int top;
+    public final int right;
+    public final int bottom;
+
+    public GridRect(int left, int top, int right, int bottom) {
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    public int width() {
+        return right - left;
+    }
+
+    public int height() {
+        return bottom - top;
+    }
+
+    public int start(boolean vertical) {
+        return vertical ? top : left;
+    }
+
+    public int end(boolean vertical) {
+        return vertical ? bottom : right;
+    }
+
+    public boolean contains(int x, int y) {
+        return left < right && top < bottom && x >= left && x < right && y >= top && y < bottom;
+    }
+
+    public boolean intersects(int left, int top, int right, int bottom) {
+        return this.left < right && left < this.right && this.top < bottom && top < this.bottom;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GridRect)) {
+            return false;
+        }
+        GridRect other = (GridRect) o;
+        return left == other.left && top == other.top && right == other.right && bottom == other.bottom;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = left;
+        result = 31 * result + top;
+        result = 31 * result + right;
+        result = 31 * result + bottom;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "GridRect(" + left + ", " + top + " - " + right + ", " + bottom + ")";
+    }
+}
@@ -0,0 +1,20 @@
+package com.sarahlensing.staggeredgridview.engine;
+
+import com.sarahlensing.staggeredgridview.ItemSize;
+
+/**
+ * Supplies the layout engine with the number and sizes of the items it places. Grids without
+ * sections report a single section.
+ */
+public interface ItemSource {
+    boolean hasSections();
+    int getSectionCount();
+    int getItemCount(int section);
+    ItemSize getSectionSize(int section);
+    ItemSize getItemSize(int section, int position);
+
+    /**
+     * @return The number of lanes the item takes up, or {@link PlacementStrategy#FULL_SPAN}
+     */
+    int getItemSpan(int section, int position);
+}
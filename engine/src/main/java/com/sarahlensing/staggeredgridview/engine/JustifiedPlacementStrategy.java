@@ -0,0 +1,221 @@
+package com.sarahlensing.staggeredgridview.engine;
+
+import com.sarahlensing.staggeredgridview.ItemSize;
+
+import java.util.ArrayList;
+
+/**
+ * Places items in rows that all fill the cross axis exactly, columns when scrolling
+ * horizontally. Each item keeps its aspect ratio. Rows are broken greedily, one at a time:
+ * items are added at the target row length until the next one would overflow the cross axis,
+ * and that one item is taken too if the row ends closer to the target with it than without.
+ * Nothing further ahead is looked at, so a break is never revised to even out later rows. The
+ * row is then scaled to fit. Every item is looked at once for its row, so breaking is linear in
+ * the number of items. The last row of a section keeps the target length instead of being
+ * stretched to fill. Items spanning more than one lane, or {@link #FULL_SPAN}, get a row of
+ * their own, filling it at their aspect ratio, and the row before them is not stretched either.
+ * Any other span counts as one lane.
+ */
+public class JustifiedPlacementStrategy implements PlacementStrategy {
+    private final int mRowLength;
+    private GridGeometry mGeometry;
+    private boolean mVertical;
+    private int mItemMargin;
+
+    //where the next row begins along the scrolling axis
+    private int mNextRowStart;
+
+    //frames of the items of the current row that have not been handed out yet
+    private ArrayList<GridRect> mPending = new ArrayList<GridRect>();
+
+    //scaled cross lengths of the row being broken, reused from row to row
+    private double[] mRowCross = new double[16];
+
+    /**
+     * @param rowLength Length every row aims for along the scrolling axis, in pixels
+     */
+    public JustifiedPlacementStrategy(int rowLength) {
+        if (rowLength < 1) {
+            throw new IllegalArgumentException("Row length must be positive: " + rowLength);
+        }
+        mRowLength = rowLength;
+    }
+
+    public int getRowLength() {
+        return mRowLength;
+    }
+
+    @Override
+    public void start(GridGeometry geometry) {
+        mGeometry = geometry;
+        mVertical = geometry.vertical;
+        mItemMargin = geometry.itemMargin;
+        mNextRowStart = mVertical ? geometry.getBeginningTop() : geometry.getBeginningLeft();
+        mPending.clear();
+    }
+
+    private int crossBeginning() {
+        return mVertical ? mGeometry.getBeginningLeft() : mGeometry.getBeginningTop();
+    }
+
+    private int crossAvailable() {
+        return mVertical ? mGeometry.getEndingRight() - mGeometry.getBeginningLeft() :
+                mGeometry.getEndingBottom() - mGeometry.getBeginningTop();
+    }
+
+    //cross length of an item scaled to the target row length
+    private double scaledCross(ItemSize size) {
+        final int cross = mVertical ? size.width : size.height;
+        final int axis = mVertical ? size.height : size.width;
+        return axis > 0 ? (double) cross * mRowLength / axis : mRowLength;
+    }
+
+    @Override
+    public GridRect place(ItemSize size, boolean isSection, int span, UpcomingItems upcoming) {
+        if (isSection) {
+            return placeSection(size);
+        }
+        if (spansLanes(span)) {
+            return placeAcross(size);
+        }
+        if (mPending.isEmpty()) {
+            breakRow(size, upcoming);
+        }
+        return mPending.remove(0);
+    }
+
+    private static boolean spansLanes(int span) {
+        return span > 1 || span == FULL_SPAN;
+    }
+
+    private GridRect placeSection(ItemSize size) {
+        final int start = mNextRowStart;
+        final GridRect rect;
+        if (mVertical) {
+            rect = new GridRect(mGeometry.getBeginningLeft(), start,
+                    mGeometry.getBeginningLeft() + size.width, start + size.height);
+        }
+        else {
+            rect = new GridRect(start, mGeometry.getBeginningTop(),
+                    start + size.width, mGeometry.getBeginningTop() + size.height);
+        }
+        mNextRowStart = rect.end(mVertical) + mItemMargin;
+        return rect;
+    }
+
+    private GridRect placeAcross(ItemSize size) {
+        final int start = mNextRowStart;
+        final int available = crossAvailable();
+        final int cross = mVertical ? size.width : size.height;
+        final int axis = mVertical ? size.height : size.width;
+        final int length = cross > 0 ? (int) ((long) axis * available / cross) : axis;
+        final int crossBeginning = crossBeginning();
+        final GridRect rect = mVertical ?
+                new GridRect(crossBeginning, start, crossBeginning + available, start + length) :
+                new GridRect(start, crossBeginning, start + length, crossBeginning + available);
+        mNextRowStart = rect.end(mVertical) + mItemMargin;
+        return rect;
+    }
+
+    /**
+     * Breaks the row beginning with first and queues the frames of its items.
+     */
+    private void breakRow(ItemSize first, UpcomingItems upcoming) {
+        final int available = crossAvailable();
+        int count = 0;
+        double total = 0; //scaled cross length of the row's items, without margins
+        boolean fills = false;
+        ItemSize size = first;
+        while (true) {
+            final double cross = scaledCross(size);
+            final double withItem = total + cross + count * mItemMargin;
+            if (count > 0 && withItem > available) {
+                //take the overflowing item only if that leaves the row closer to the target
+                final double without = total + (count - 1) * mItemMargin;
+                if (withItem - available < available - without) {
+                    addToRow(count++, cross);
+                    total += cross;
+                }
+                fills = true;
+                break;
+            }
+            addToRow(count++, cross);
+            total += cross;
+            if (withItem >= available) {
+                fills = true;
+                break;
+            }
+            if (count > upcoming.getCount() || spansLanes(upcoming.getItemSpan(count - 1))) {
+                break; //last row of the section, or before an item with a row of its own
+            }
+            size = upcoming.getItemSize(count - 1);
+        }
+
+        final double scale = fills && total > 0 ? (available - (count - 1) * mItemMargin) / total : 1;
+        final int rowStart = mNextRowStart;
+        final int rowEnd = rowStart + (int) Math.round(mRowLength * scale);
+        final int crossBeginning = crossBeginning();
+        double before = 0;
+        for (int i = 0; i < count; i++) {
+            final double after = before + mRowCross[i];
+            final int crossStart = crossBeginning + (int) Math.round(before * scale) + i * mItemMargin;
+            final int crossEnd = crossBeginning + (int) Math.round(after * scale) + i * mItemMargin;
+            mPending.add(mVertical ? new GridRect(crossStart, rowStart, crossEnd, rowEnd) :
+                    new GridRect(rowStart, crossStart, rowEnd, crossEnd));
+            before = after;
+        }
+        mNextRowStart = rowEnd + mItemMargin;
+    }
+
+    private void addToRow(int index, double cross) {
+        if (index == mRowCross.length) {
+            double[] grown = new double[mRowCross.length * 2];
+            System.arraycopy(mRowCross, 0, grown, 0, mRowCross.length);
+            mRowCross = grown;
+        }
+        mRowCross[index] = cross;
+    }
+
+    @Override
+    public int getFrontier() {
+        if (!mPending.isEmpty()) {
+            return mPending.get(0).start(mVertical);
+        }
+        return mNextRowStart;
+    }
+
+    @Override
+    public boolean hasPendingPlacements() {
+        return !mPending.isEmpty();
+    }
+
+    /**
+     * @return A zero length rect ending where the last row ends, followed by the frames still
+     *         pending in the current row
+     */
+    @Override
+    public ArrayList<GridRect> getSkyline() {
+        ArrayList<GridRect> skyline = new ArrayList<GridRect>(mPending.size() + 1);
+        final int end = mNextRowStart - mItemMargin;
+        final int cross = crossBeginning();
+        skyline.add(mVertical ? new GridRect(cross, end, cross, end) : new GridRect(end, cross, end, cross));
+        skyline.addAll(mPending);
+        return skyline;
+    }
+
+    @Override
+    public void restoreSkyline(ArrayList<GridRect> skyline) {
+        mPending.clear();
+        if (skyline.isEmpty()) {
+            mNextRowStart = mVertical ? mGeometry.getBeginningTop() : mGeometry.getBeginningLeft();
+            return;
+        }
+        mNextRowStart = skyline.get(0).end(mVertical) + mItemMargin;
+        mPending.addAll(skyline.subList(1, skyline.size()));
+    }
+
+    @Override
+    public int[] getKey() {
+        return new int[] {3, mRowLength};
+    }
+}
@@ -0,0 +1,212 @@
+package com.sarahlensing.staggeredgridview.engine;
+
+import com.sarahlensing.staggeredgridview.ItemSize;
+
+import java.util.ArrayList;
+
+/**
+ * Places items into a fixed number of equal lanes, columns when scrolling vertically and rows
+ * when scrolling horizontally. Every item is scaled to the width of a lane and goes into the
+ * lane that ends closest to the beginning, found with a min-heap of lane ends in O(log lanes).
+ * Items spanning several lanes go into the neighbouring lanes whose furthest end is closest to
+ * the beginning, and section headers and full span items span every lane after the furthest of
+ * them, both in O(lanes).
+ */
+public class LanePlacementStrategy implements PlacementStrategy {
+    private final int mLaneCount;
+    private GridGeometry mGeometry;
+    private boolean mVertical;
+    private int mItemMargin;
+    private int mLaneSize;
+
+    //where the next item in each lane begins, along the scrolling axis
+    private final int[] mLaneNext;
+
+    //lane indices ordered as a min-heap on mLaneNext, ties broken towards the first lane
+    private final int[] mHeap;
+
+    public LanePlacementStrategy(int laneCount) {
+        if (laneCount < 1) {
+            throw new IllegalArgumentException("Must have at least one lane: " + laneCount);
+        }
+        mLaneCount = laneCount;
+        mLaneNext = new int[laneCount];
+        mHeap = new int[laneCount];
+    }
+
+    public int getLaneCount() {
+        return mLaneCount;
+    }
+
+    @Override
+    public void start(GridGeometry geometry) {
+        mGeometry = geometry;
+        mVertical = geometry.vertical;
+        mItemMargin = geometry.itemMargin;
+        final int available = mVertical ? geometry.getEndingRight() - geometry.getBeginningLeft() :
+                geometry.getEndingBottom() - geometry.getBeginningTop();
+        mLaneSize = Math.max(0, (available - (mLaneCount - 1) * mItemMargin) / mLaneCount);
+        resetLanes(beginning());
+    }
+
+    private int beginning() {
+        return mVertical ? mGeometry.getBeginningTop() : mGeometry.getBeginningLeft();
+    }
+
+    private int laneStart(int lane) {
+        final int crossBeginning = mVertical ? mGeometry.getBeginningLeft() : mGeometry.getBeginningTop();
+        return crossBeginning + lane * (mLaneSize + mItemMargin);
+    }
+
+    private void resetLanes(int next) {
+        for (int i = 0; i < mLaneCount; i++) {
+            mLaneNext[i] = next;
+            mHeap[i] = i;
+        }
+    }
+
+    @Override
+    public GridRect place(ItemSize size, boolean isSection, int span, UpcomingItems upcoming) {
+        if (isSection) {
+            return placeSection(size);
+        }
+        final int lanes = span == FULL_SPAN ? mLaneCount : Math.max(1, Math.min(span, mLaneCount));
+        if (lanes > 1) {
+            return placeAcross(size, lanes);
+        }
+        final int length = scaledLength(size, mLaneSize);
+
+        final int lane = mHeap[0];
+        final int start = mLaneNext[lane];
+        final int cross = laneStart(lane);
+        final GridRect rect = mVertical ? new GridRect(cross, start, cross + mLaneSize, start + length) :
+                new GridRect(start, cross, start + length, cross + mLaneSize);
+        mLaneNext[lane] = start + length + mItemMargin;
+        siftDown(0);
+        return rect;
+    }
+
+    //keeps the item's aspect ratio at the given cross length
+    private int scaledLength(ItemSize size, int crossSize) {
+        final int crossLength = mVertical ? size.width : size.height;
+        final int axisLength = mVertical ? size.height : size.width;
+        return crossLength > 0 ? (int) ((long) axisLength * crossSize / crossLength) : axisLength;
+    }
+
+    private GridRect placeAcross(ItemSize size, int lanes) {
+        int first = 0;
+        int start = Integer.MAX_VALUE;
+        for (int i = 0; i + lanes <= mLaneCount; i++) {
+            int windowStart = mLaneNext[i];
+            for (int j = i + 1; j < i + lanes; j++) {
+                windowStart = Math.max(windowStart, mLaneNext[j]);
+            }
+            if (windowStart < start) {
+                start = windowStart;
+                first = i;
+            }
+        }
+        final int crossSize = lanes * mLaneSize + (lanes - 1) * mItemMargin;
+        final int length = scaledLength(size, crossSize);
+        final int cross = laneStart(first);
+        final GridRect rect = mVertical ? new GridRect(cross, start, cross + crossSize, start + length) :
+                new GridRect(start, cross, start + length, cross + crossSize);
+        for (int i = first; i < first + lanes; i++) {
+            mLaneNext[i] = start + length + mItemMargin;
+        }
+        rebuildHeap();
+        return rect;
+    }
+
+    private void rebuildHeap() {
+        for (int i = 0; i < mLaneCount; i++) {
+            mHeap[i] = i;
+        }
+        for (int i = mLaneCount / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    private GridRect placeSection(ItemSize size) {
+        int start = mLaneNext[0];
+        for (int i = 1; i < mLaneCount; i++) {
+            start = Math.max(start, mLaneNext[i]);
+        }
+        final GridRect rect;
+        if (mVertical) {
+            rect = new GridRect(mGeometry.getBeginningLeft(), start,
+                    mGeometry.getBeginningLeft() + size.width, start + size.height);
+        }
+        else {
+            rect = new GridRect(start, mGeometry.getBeginningTop(),
+                    start + size.width, mGeometry.getBeginningTop() + size.height);
+        }
+        resetLanes(rect.end(mVertical) + mItemMargin);
+        return rect;
+    }
+
+    private boolean before(int lane, int other) {
+        return mLaneNext[lane] < mLaneNext[other] || (mLaneNext[lane] == mLaneNext[other] && lane < other);
+    }
+
+    private void siftDown(int index) {
+        final int lane = mHeap[index];
+        while (true) {
+            int child = index * 2 + 1;
+            if (child >= mLaneCount) {
+                break;
+            }
+            if (child + 1 < mLaneCount && before(mHeap[child + 1], mHeap[child])) {
+                child++;
+            }
+            if (!before(mHeap[child], lane)) {
+                break;
+            }
+            mHeap[index] = mHeap[child];
+            index = child;
+        }
+        mHeap[index] = lane;
+    }
+
+    @Override
+    public int getFrontier() {
+        return mLaneNext[mHeap[0]];
+    }
+
+    @Override
+    public boolean hasPendingPlacements() {
+        return false;
+    }
+
+    /**
+     * @return One rect per lane, across the lane and ending where the lane ends
+     */
+    @Override
+    public ArrayList<GridRect> getSkyline() {
+        ArrayList<GridRect> skyline = new ArrayList<GridRect>(mLaneCount);
+        for (int i = 0; i < mLaneCount; i++) {
+            final int end = mLaneNext[i] - mItemMargin;
+            final int cross = laneStart(i);
+            skyline.add(mVertical ? new GridRect(cross, end, cross + mLaneSize, end) :
+                    new GridRect(end, cross, end, cross + mLaneSize));
+        }
+        return skyline;
+    }
+
+    @Override
+    public void restoreSkyline(ArrayList<GridRect> skyline) {
+        if (skyline.size() != mLaneCount) {
+            resetLanes(beginning());
+            return;
+        }
+        for (int i = 0; i < mLaneCount; i++) {
+            mLaneNext[i] = skyline.get(i).end(mVertical) + mItemMargin;
+        }
+        rebuildHeap();
+    }
+
+    @Override
+    public int[] getKey() {
+        return new int[] {2, mLaneCount};
+    }
+}
@@ -0,0 +1,1063 @@
+package com.sarahlensing.staggeredgridview.engine;
+
+import com.sarahlensing.staggeredgridview.ItemSize;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Places the items of an {@link ItemSource} into a {@link GridGeometry}. This is everything
+ * StaggeredGridView knows about where items go, without any dependency on the Android
+ * framework, so it can be driven, profiled and tested on a plain JVM.
+ *
+ * <p>Items are placed lazily in order: {@link #ensurePlacedThrough(int)} places just enough items
+ * to cover a stretch of content. Every so often the placement cursor is saved as a checkpoint so
+ * that placement can resume part way through, after a change or when paging placements back
+ * in.</p>
+ */
+public class LayoutEngine {
+    public static final int INVALID_POSITION = -1;
+
+    private static final int DEFAULT_CHECKPOINT_INTERVAL = 64;
+    private static final int MAX_CHECKPOINTS = 256;
+    private static final int CHECKPOINT_HEADER_SIZE = 9;
+
+    //items placed before the placement cache file is brought up to date again
+    private static final int PLACEMENT_CACHE_COMMIT_INTERVAL = 4096;
+
+    private GridGeometry mGeometry;
+    private ItemSource mSource;
+    private SectionIndex mSectionIndex = new SectionIndex(new int[0], false);
+    private PlacementStrategy mStrategy = new SkylinePlacementStrategy();
+    private boolean mHasContent;
+    private int mContentEnd;
+
+    private int mRawPosition;
+    private int mNextSection;
+    private int mNextPosition;
+    private boolean mPlacementComplete = true;
+    private long mItemsPlaced;
+
+    private ArrayList<Checkpoint> mCheckpoints = new ArrayList<Checkpoint>();
+    private int mCheckpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+
+    private boolean mPagedPlacementEnabled;
+    private boolean mPagedPlacement;
+    private int mResidentStart = Integer.MIN_VALUE;
+    private int mResidentEnd = Integer.MAX_VALUE;
+
+    private ArrayList<Placement> mPlacements = new ArrayList<Placement>();
+    private PlacementIndex mPlacementIndex = new PlacementIndex(false);
+
+    //header placement of every section, kept whether or not the header is resident. Only the
+    //placed sections' entries are meaningful, so the array keeps slack past the section count.
+    private Placement[] mSectionHeaders = new Placement[0];
+
+    private PlacementCache mPlacementCache;
+    private Executor mPlacementCacheExecutor;
+    private PlacementCache.Writer mPlacementCacheWriter;
+    private int mPlacementCacheCommitAt;
+
+    //set while items are rearranged from the source's order, which the file must not take in
+    private boolean mPlacementCacheHeld;
+
+    //checkpoints stored with the placement cache that placement has not reached yet
+    private ArrayList<Checkpoint> mCachedCheckpoints = new ArrayList<Checkpoint>();
+    private int mNextCachedCheckpoint;
+
+    private final SectionItems mUpcomingItems = new SectionItems();
+
+    //the rest of a section from some position on, read straight from the source
+    private class SectionItems implements PlacementStrategy.UpcomingItems {
+        private int mSection;
+        private int mFirst;
+
+        void set(int section, int first) {
+            mSection = section;
+            mFirst = first;
+        }
+
+        @Override
+        public int getCount() {
+            return Math.max(0, mSectionIndex.getItemCount(mSection) - mFirst);
+        }
+
+        @Override
+        public ItemSize getItemSize(int index) {
+            return mSource.getItemSize(mSection, mFirst + index);
+        }
+
+        @Override
+        public int getItemSpan(int index) {
+            return mSource.getItemSpan(mSection, mFirst + index);
+        }
+    }
+
+    public boolean isPagedPlacementEnabled() {
+        return mPagedPlacementEnabled;
+    }
+
+    /**
+     * Keep placements only for the resident range instead of for every placed item. Takes
+     * effect the next time placement is started.
+     */
+    public void setPagedPlacementEnabled(boolean enabled) {
+        mPagedPlacementEnabled = enabled;
+    }
+
+    public PlacementStrategy getPlacementStrategy() {
+        return mStrategy;
+    }
+
+    /**
+     * Decide where items go with strategy instead of the skyline. Takes effect the next time
+     * placement is started.
+     *
+     * @param strategy The strategy to place with, or null for a {@link SkylinePlacementStrategy}
+     */
+    public void setPlacementStrategy(PlacementStrategy strategy) {
+        //the cache file describes placement by the strategy it was written with
+        commitPlacementCache(false);
+        mStrategy = strategy != null ? strategy : new SkylinePlacementStrategy();
+    }
+
+    /**
+     * @return The number of lanes of a {@link LanePlacementStrategy}, or 0 for any other strategy
+     */
+    public int getLaneCount() {
+        return mStrategy instanceof LanePlacementStrategy ?
+                ((LanePlacementStrategy) mStrategy).getLaneCount() : 0;
+    }
+
+    /**
+     * Place every item into one of a fixed number of equal lanes instead of the largest gap in
+     * the skyline. Takes effect the next time placement is started.
+     *
+     * @param laneCount Number of columns (or rows when scrolling horizontally), or 0 to place
+     *                  items at their own size wherever they fit
+     */
+    public void setLaneCount(int laneCount) {
+        if (laneCount < 0) {
+            throw new IllegalArgumentException("Lane count must not be negative: " + laneCount);
+        }
+        setPlacementStrategy(laneCount > 0 ? new LanePlacementStrategy(laneCount) : null);
+    }
+
+    /**
+     * Store computed placements in a file and read them back instead of placing items again.
+     * Items are written as they are placed, so the file only ever holds what has been placed;
+     * placement carries on from its end. Takes effect the next time placement is started.
+     *
+     * @param file File to keep the placements in, or null to stop caching
+     * @param contentVersion Caller supplied version of the source's content
+     */
+    public void setPlacementCache(File file, long contentVersion) {
+        closePlacementCache();
+        mPlacementCache = file != null ? new PlacementCache(file, contentVersion) : null;
+    }
+
+    /**
+     * Write the cache file on executor instead of a background thread shared by every engine.
+     * Placement only works out what to write and queues it, so the file is never written on the
+     * placing thread. Takes effect the next time placement is started.
+     *
+     * @param executor Runs writes one at a time in the order they are queued, or null for the
+     *                 shared background thread
+     */
+    public void setPlacementCacheExecutor(Executor executor) {
+        mPlacementCacheExecutor = executor;
+    }
+
+    public boolean hasPlacementCache() {
+        return mPlacementCache != null;
+    }
+
+    /**
+     * @return true while placements are being read from a cache file
+     */
+    public boolean isPlacementCacheOpen() {
+        return mPlacementCache != null && mPlacementCache.isOpen();
+    }
+
+    /**
+     * @return true while placements are being written to a cache file
+     */
+    public boolean isWritingPlacementCache() {
+        return mPlacementCacheWriter != null;
+    }
+
+    /**
+     * Makes the cache file readable with every item placed so far, as when the grid goes away
+     * before placing every item. Placement brings the file up to date by itself as it goes, so
+     * this only saves what was placed since. The write is queued like any other, so this does
+     * not wait for the disk.
+     */
+    public void flushPlacementCache() {
+        commitPlacementCache(true);
+    }
+
+    /**
+     * Forgets every placement and starts placing the items of source into geometry.
+     *
+     * @param source Items to place, or null for an empty grid
+     */
+    public void start(GridGeometry geometry, ItemSource source) {
+        closePlacementCache();
+        mGeometry = geometry;
+        mSource = source;
+        mStrategy.start(geometry);
+        mHasContent = false;
+        mContentEnd = 0;
+        mPagedPlacement = mPagedPlacementEnabled;
+        mPlacements = new ArrayList<Placement>();
+        mPlacementIndex = new PlacementIndex(geometry.vertical);
+
+        mRawPosition = 0;
+        mNextSection = 0;
+        mNextPosition = -1;
+        mCheckpoints.clear();
+        mCheckpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+        mCheckpoints.add(captureCheckpoint());
+        mSectionIndex = new SectionIndex(source != null ? readSectionCounts() : new int[0],
+                source != null && source.hasSections());
+        mSectionHeaders = new Placement[mSectionIndex.getSectionCount()];
+        if (source == null) {
+            mPlacementComplete = true;
+        }
+        else {
+            mPlacementComplete = false;
+            openPlacementCache();
+        }
+    }
+
+    /**
+     * Forgets every placement. Nothing is placed again until placement is started.
+     */
+    public void clear() {
+        closePlacementCache();
+        mSource = null;
+        mHasContent = false;
+        mContentEnd = 0;
+        mSectionIndex = new SectionIndex(new int[0], false);
+        mSectionHeaders = new Placement[0];
+        mPlacements.clear();
+        mPlacementIndex.clear();
+        mCheckpoints.clear();
+        mRawPosition = 0;
+        mPlacementComplete = true;
+        mPagedPlacement = false;
+    }
+
+    public boolean isStarted() {
+        return mSource != null;
+    }
+
+    public GridGeometry getGeometry() {
+        return mGeometry;
+    }
+
+    private int[] readSectionCounts() {
+        int[] counts = new int[mSource.getSectionCount()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = mSource.getItemCount(i);
+        }
+        return counts;
+    }
+
+    public int getSectionCount() {
+        return mSectionIndex.getSectionCount();
+    }
+
+    public int getItemCount(int section) {
+        return mSectionIndex.getItemCount(section);
+    }
+
+    /**
+     * @param position Position within the section, -1 for its header
+     * @return The position of an item among every header and item in the grid
+     */
+    public int getRawPosition(int section, int position) {
+        if (mSource == null || !mSource.hasSections()) {
+            return position;
+        }
+        return mSectionIndex.getRawPosition(section, position);
+    }
+
+    /**
+     * @return The number of headers and items in every section, placed or not
+     */
+    public int getRawCount() {
+        return mSectionIndex.getRawCount();
+    }
+
+    /**
+     * @return The section of the item at rawPosition, or {@link #INVALID_POSITION}
+     */
+    public int getSectionForRawPosition(int rawPosition) {
+        return mSectionIndex.getSection(rawPosition);
+    }
+
+    /**
+     * @return The position of the item at rawPosition within its section, or -1 for a section
+     *         header. Also -1 when rawPosition is outside every section, which
+     *         {@link #getSectionForRawPosition(int)} tells apart.
+     */
+    public int getPositionForRawPosition(int rawPosition) {
+        return mSectionIndex.getPosition(rawPosition);
+    }
+
+    private void readSectionIndex() {
+        mSectionIndex.update(readSectionCounts());
+        resizeSectionHeaders();
+    }
+
+    /**
+     * @return The number of items placed so far, which is also the raw position of the next one
+     */
+    public int getPlacedCount() {
+        return mRawPosition;
+    }
+
+    /**
+     * @return The number of items placed since this engine was created, counting every time an
+     *         item was placed again after paging, a change or a restart
+     */
+    public long getItemsPlacedCount() {
+        return mItemsPlaced;
+    }
+
+    /**
+     * @return true once every item has been placed
+     */
+    public boolean isComplete() {
+        return mPlacementComplete;
+    }
+
+    public boolean hasContent() {
+        return mHasContent;
+    }
+
+    /**
+     * @return The furthest ending edge of anything placed so far
+     */
+    public int getContentEnd() {
+        return mHasContent ? mContentEnd : 0;
+    }
+
+    private void extendContent(GridRect rect) {
+        final int end = rect.end(mGeometry.vertical);
+        if (!mHasContent || end > mContentEnd) {
+            mContentEnd = end;
+        }
+        mHasContent = true;
+    }
+
+    /**
+     * @return The size of the content placed so far, or null if nothing has been placed
+     */
+    public ItemSize getContentSize() {
+        if (!hasContent()) {
+            return null;
+        }
+        if (mGeometry.vertical) {
+            return new ItemSize(mGeometry.width, mContentEnd);
+        }
+        return new ItemSize(mContentEnd, mGeometry.height);
+    }
+
+    /**
+     * Items are only placed once something needs them. Every later item begins at or after the
+     * lowest edge of the skyline, so placing stops as soon as that edge passes end.
+     */
+    public void ensurePlacedThrough(int end) {
+        while (!mPlacementComplete && placementFrontier() <= end) {
+            placeAndKeepNextItem();
+        }
+    }
+
+    private void placeAndKeepNextItem() {
+        Placement placement = placeNextItem(true);
+        writePlacementCache(placement);
+        if (placement == null) {
+            mPlacementComplete = true;
+        }
+        else if (isResident(placement)) {
+            mPlacements.add(placement);
+            mPlacementIndex.add(placement);
+        }
+    }
+
+    private int placementFrontier() {
+        if (readingPlacementCache()) {
+            return mPlacementCache.getMinStartFrom(mRawPosition);
+        }
+        if (!mHasContent) {
+            return Integer.MIN_VALUE;
+        }
+        return mStrategy.getFrontier();
+    }
+
+    /**
+     * Places the item under the placement cursor and advances the cursor.
+     *
+     * @param recordCheckpoints false when replaying from a checkpoint, in which case the
+     *                          checkpoints describing this stretch already exist
+     * @return The placement, or null once every item has been placed
+     */
+    private Placement placeNextItem(boolean recordCheckpoints) {
+        while (mNextSection < mSectionIndex.getSectionCount()) {
+            final boolean needsSection = mNextPosition < 0 && mSource.hasSections();
+            final int position = Math.max(mNextPosition, 0);
+            if (!needsSection && position >= mSectionIndex.getItemCount(mNextSection)) {
+                mNextSection++;
+                mNextPosition = -1;
+                continue;
+            }
+
+            final boolean cached = readingPlacementCache();
+            if (isPlacementCacheOpen() && mRawPosition > 0 && mRawPosition == mPlacementCache.getItemCount()) {
+                //placing past what the cache holds, continue from the skyline it ended with
+                mStrategy.restoreSkyline(mPlacementCache.getSkyline());
+            }
+
+            if (recordCheckpoints) {
+                if (cached) {
+                    //the cache brought its own checkpoints for the items it holds
+                    takeCachedCheckpoint();
+                }
+                else if (needsCheckpoint()) {
+                    recordCheckpoint();
+                }
+            }
+
+            final GridRect rect;
+            if (cached) {
+                rect = mPlacementCache.getRect(mRawPosition);
+            }
+            else if (needsSection) {
+                mUpcomingItems.set(mNextSection, 0);
+                rect = mStrategy.place(mSource.getSectionSize(mNextSection), true,
+                        PlacementStrategy.FULL_SPAN, mUpcomingItems);
+            }
+            else {
+                mUpcomingItems.set(mNextSection, position + 1);
+                rect = mStrategy.place(mSource.getItemSize(mNextSection, position), false,
+                        mSource.getItemSpan(mNextSection, position), mUpcomingItems);
+            }
+            extendContent(rect);
+
+            final Placement placement;
+            if (needsSection) {
+                placement = new Placement(mRawPosition, mNextSection, mNextSection, true, rect);
+                mSectionHeaders[mNextSection] = placement;
+                mNextPosition = 0;
+            }
+            else {
+                placement = new Placement(mRawPosition, mNextSection, position, false, rect);
+                mNextPosition = position + 1;
+            }
+            mRawPosition++;
+            mItemsPlaced++;
+
+            if (recordCheckpoints) {
+                Checkpoint last = mCheckpoints.get(mCheckpoints.size() - 1);
+                last.minStart = Math.min(last.minStart, rect.start(mGeometry.vertical));
+            }
+            return placement;
+        }
+        return null;
+    }
+
+    /**
+     * Finds the placement of an item, placing forward from the frontier if it has not been
+     * reached yet or replaying from the closest checkpoint if its placement was paged out.
+     *
+     * @return The placement, or null if there is no item at rawPosition
+     */
+    public Placement getPlacement(int rawPosition) {
+        while (!mPlacementComplete && mRawPosition <= rawPosition) {
+            placeAndKeepNextItem();
+        }
+        if (rawPosition < 0 || rawPosition >= mRawPosition) {
+            return null;
+        }
+
+        if (!mPagedPlacement) {
+            //every placed item is kept, in placement order
+            return mPlacements.get(rawPosition);
+        }
+        for (Placement placement : mPlacements) {
+            if (placement.rawPosition == rawPosition) {
+                return placement;
+            }
+        }
+
+        Checkpoint frontier = captureCheckpoint();
+        restoreCheckpoint(mCheckpoints.get(checkpointIndexBefore(rawPosition)));
+        Placement target = null;
+        while (mRawPosition <= rawPosition) {
+            target = placeNextItem(false);
+        }
+        restoreCheckpoint(frontier);
+        return target;
+    }
+
+    /**
+     * @return Every placement currently kept, in placement order
+     */
+    public List<Placement> getPlacements() {
+        return Collections.unmodifiableList(mPlacements);
+    }
+
+    /**
+     * @param x X in content coordinates
+     * @param y Y in content coordinates
+     * @return The placement whose frame contains the point, or null
+     */
+    public Placement itemAt(int x, int y) {
+        return mPlacementIndex.itemAt(x, y);
+    }
+
+    /**
+     * Collects every kept placement that overlaps [start, end) along the scrolling axis.
+     */
+    public void getPlacementsInRange(int start, int end, ArrayList<Placement> out) {
+        mPlacementIndex.getInRange(start, end, out);
+    }
+
+    /**
+     * Forgets every placement from the last checkpoint before the given item on, so placement
+     * resumes there instead of from the first item. Section counts are read again from the
+     * source.
+     *
+     * @param section Section of the first changed item
+     * @param position Position of the first changed item within its section, -1 for the header
+     * @return Raw position of the first placement that was forgotten
+     */
+    public int invalidateFrom(int section, int position) {
+        readSectionIndex();
+        mPlacementCacheHeld = false;
+        return invalidateFrom(getRawPosition(section, position));
+    }
+
+    /**
+     * Forgets every placement from the last checkpoint before the given item on, as
+     * {@link #invalidateFrom(int, int)} does, for items that only moved among themselves within
+     * their section, as while one is dragged. Section counts are not read again. The cache file
+     * keeps the items before the change but takes no more until the source changes or placement
+     * is started again, so it never describes an order the source may not keep.
+     *
+     * @return Raw position of the first placement that was forgotten
+     */
+    public int rearrangeFrom(int section, int position) {
+        final int firstStale = invalidateFrom(getRawPosition(section, position));
+        mPlacementCacheHeld = true;
+        return firstStale;
+    }
+
+    private int invalidateFrom(int rawPosition) {
+        int index = checkpointIndexBefore(rawPosition);
+        while (mCheckpoints.size() > index + 1) {
+            mCheckpoints.remove(mCheckpoints.size() - 1);
+        }
+        Checkpoint checkpoint = mCheckpoints.get(index);
+        checkpoint.minStart = Integer.MAX_VALUE;
+        restoreCheckpoint(checkpoint);
+        mPlacementComplete = false;
+        truncatePlacementCache(checkpoint.rawPosition);
+
+        final int firstStale = checkpoint.rawPosition;
+        for (int i = mPlacements.size() - 1; i >= 0; i--) {
+            if (mPlacements.get(i).rawPosition >= firstStale) {
+                mPlacements.remove(i);
+            }
+        }
+        mPlacementIndex.rebuild(mPlacements);
+        return firstStale;
+    }
+
+    /**
+     * Reads section counts again after items or sections were added at the end. If placement
+     * had finished it carries on from the last checkpoint, so strategies that looked ahead to the
+     * end of the items place the last of them again knowing what follows.
+     *
+     * @return Raw position of the first placement that was forgotten, or the number of items
+     *         placed if none were
+     */
+    public int appendSections() {
+        if (mSource == null) {
+            return mRawPosition;
+        }
+        final boolean wasComplete = mPlacementComplete;
+        readSectionIndex();
+        if (!wasComplete) {
+            return mRawPosition;
+        }
+        return invalidateFrom(mRawPosition);
+    }
+
+    /**
+     * A section was inserted into the source before the given one, or after the last. Only its
+     * item count is read from the source, so the section counts are brought up to date in
+     * O(log sections), and placement resumes from the last checkpoint before its header.
+     *
+     * @return Raw position of the first placement that was forgotten
+     */
+    public int insertSection(int section) {
+        if (mSource == null) {
+            return mRawPosition;
+        }
+        mSectionIndex.insertSection(section, mSource.getItemCount(section));
+        resizeSectionHeaders();
+        mPlacementCacheHeld = false;
+        return invalidateFrom(mSectionIndex.getSectionStart(section));
+    }
+
+    /**
+     * A section was removed from the source. The section counts are brought up to date in
+     * O(log sections) without reading the source, and placement resumes from the last
+     * checkpoint before where the section began.
+     *
+     * @return Raw position of the first placement that was forgotten
+     */
+    public int removeSection(int section) {
+        if (mSource == null) {
+            return mRawPosition;
+        }
+        final int sectionStart = mSectionIndex.getSectionStart(section);
+        mSectionIndex.removeSection(section);
+        mPlacementCacheHeld = false;
+        return invalidateFrom(sectionStart);
+    }
+
+    private void resizeSectionHeaders() {
+        final int count = mSectionIndex.getSectionCount();
+        if (mSectionHeaders.length >= count) {
+            return;
+        }
+        Placement[] headers = new Placement[Math.max(count, mSectionHeaders.length * 2)];
+        System.arraycopy(mSectionHeaders, 0, headers, 0, mSectionHeaders.length);
+        mSectionHeaders = headers;
+    }
+
+    /**
+     * @return The number of sections whose header has been placed. Headers are placed in order,
+     *         so these are the first sections.
+     */
+    public int getPlacedSectionCount() {
+        if (mSource == null || !mSource.hasSections()) {
+            return 0;
+        }
+        return Math.min(mNextSection + (mNextPosition >= 0 ? 1 : 0), mSectionIndex.getSectionCount());
+    }
+
+    /**
+     * @return The placement of a section's header, or null if it has not been placed yet
+     */
+    public Placement getSectionHeader(int section) {
+        if (section < 0 || section >= getPlacedSectionCount()) {
+            return null;
+        }
+        if (mSectionHeaders[section] == null) {
+            //placement resumed from restored checkpoints past this header, replay it once
+            mSectionHeaders[section] = getPlacement(getRawPosition(section, -1));
+        }
+        return mSectionHeaders[section];
+    }
+
+    /**
+     * Every header spans the grid after everything placed before it, so headers begin in section
+     * order and the section containing an offset is found by a binary search over them.
+     *
+     * @param offset Offset along the scrolling axis, in content coordinates
+     * @return The last placed section whose header begins at or before offset, or
+     *         {@link #INVALID_POSITION} if there is none
+     */
+    public int getSectionAt(int offset) {
+        int low = 0;
+        int high = getPlacedSectionCount() - 1;
+        int section = INVALID_POSITION;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (getSectionHeader(mid).rect.start(mGeometry.vertical) <= offset) {
+                section = mid;
+                low = mid + 1;
+            }
+            else {
+                high = mid - 1;
+            }
+        }
+        return section;
+    }
+
+    private int checkpointIndexBefore(int rawPosition) {
+        int low = 0;
+        int high = mCheckpoints.size() - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (mCheckpoints.get(mid).rawPosition <= rawPosition) {
+                low = mid;
+            }
+            else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private boolean needsCheckpoint() {
+        Checkpoint last = mCheckpoints.get(mCheckpoints.size() - 1);
+        return mRawPosition - last.rawPosition >= mCheckpointInterval && !mStrategy.hasPendingPlacements();
+    }
+
+    private void recordCheckpoint() {
+        mCheckpoints.add(captureCheckpoint());
+        if (mCheckpoints.size() > MAX_CHECKPOINTS) {
+            thinCheckpoints();
+        }
+    }
+
+    //keeps every other checkpoint so their number stays bounded however many items are placed
+    private void thinCheckpoints() {
+        ArrayList<Checkpoint> kept = new ArrayList<Checkpoint>(mCheckpoints.size() / 2 + 1);
+        for (int i = 0; i < mCheckpoints.size(); i++) {
+            Checkpoint checkpoint = mCheckpoints.get(i);
+            if (i % 2 == 0) {
+                kept.add(checkpoint);
+            }
+            else {
+                Checkpoint previous = kept.get(kept.size() - 1);
+                previous.minStart = Math.min(previous.minStart, checkpoint.minStart);
+            }
+        }
+        mCheckpoints = kept;
+        mCheckpointInterval *= 2;
+    }
+
+    private Checkpoint captureCheckpoint() {
+        Checkpoint checkpoint = new Checkpoint();
+        checkpoint.section = mNextSection;
+        checkpoint.position = mNextPosition;
+        checkpoint.rawPosition = mRawPosition;
+        checkpoint.skyline = mStrategy.getSkyline();
+        checkpoint.hasContent = mHasContent;
+        checkpoint.contentEnd = mContentEnd;
+        return checkpoint;
+    }
+
+    private void restoreCheckpoint(Checkpoint checkpoint) {
+        mNextSection = checkpoint.section;
+        mNextPosition = checkpoint.position;
+        mRawPosition = checkpoint.rawPosition;
+        mStrategy.restoreSkyline(checkpoint.skyline);
+        mHasContent = checkpoint.hasContent;
+        mContentEnd = checkpoint.contentEnd;
+    }
+
+    public boolean isPagedPlacement() {
+        return mPagedPlacement;
+    }
+
+    public int getResidentStart() {
+        return mResidentStart;
+    }
+
+    public int getResidentEnd() {
+        return mResidentEnd;
+    }
+
+    /**
+     * Sets the stretch of content whose placements are kept while paging. Placements already
+     * kept are not affected; use {@link #pageIn(int, int)} to replace them.
+     */
+    public void setResidentRange(int start, int end) {
+        mResidentStart = start;
+        mResidentEnd = end;
+    }
+
+    private boolean isResident(Placement placement) {
+        return !mPagedPlacement || (placement.rect.start(mGeometry.vertical) < mResidentEnd &&
+                placement.rect.end(mGeometry.vertical) > mResidentStart);
+    }
+
+    /**
+     * Replaces the kept placements with those in [start, end) by replaying placement from the
+     * closest checkpoint that no earlier item reaches past, stopping once no later item can
+     * begin inside the range.
+     */
+    public void pageIn(int start, int end) {
+        setResidentRange(start, end);
+
+        int first = 0;
+        for (int i = mCheckpoints.size() - 1; i >= 0; i--) {
+            if (mCheckpoints.get(i).contentEnd <= mResidentStart) {
+                first = i;
+                break;
+            }
+        }
+
+        Checkpoint frontier = captureCheckpoint();
+        int stopRawPosition = frontier.rawPosition;
+        int minStart = Integer.MAX_VALUE;
+        for (int i = mCheckpoints.size() - 1; i > first; i--) {
+            minStart = Math.min(minStart, mCheckpoints.get(i).minStart);
+            if (minStart < mResidentEnd) {
+                break;
+            }
+            stopRawPosition = mCheckpoints.get(i).rawPosition;
+        }
+
+        ArrayList<Placement> placements = new ArrayList<Placement>();
+        restoreCheckpoint(mCheckpoints.get(first));
+        while (mRawPosition < stopRawPosition) {
+            Placement placement = placeNextItem(false);
+            if (placement == null) {
+                break;
+            }
+            if (isResident(placement)) {
+                placements.add(placement);
+            }
+        }
+        restoreCheckpoint(frontier);
+
+        mPlacements = placements;
+        mPlacementIndex.rebuild(mPlacements);
+    }
+
+    /**
+     * @return Everything placements depend on besides the sizes of the items: the geometry, the
+     *         strategy's key preceded by its length, then the item count of every section
+     */
+    public int[] getPlacementKey() {
+        final int[] geometryKey = mGeometry != null ? mGeometry.toKey() : new int[0];
+        final int[] strategyKey = mStrategy.getKey();
+        final int[] sectionCounts = mSectionIndex.getItemCounts();
+        int[] key = new int[geometryKey.length + 1 + strategyKey.length + sectionCounts.length];
+        int index = 0;
+        System.arraycopy(geometryKey, 0, key, index, geometryKey.length);
+        index += geometryKey.length;
+        key[index++] = strategyKey.length;
+        System.arraycopy(strategyKey, 0, key, index, strategyKey.length);
+        index += strategyKey.length;
+        System.arraycopy(sectionCounts, 0, key, index, sectionCounts.length);
+        return key;
+    }
+
+    /**
+     * Flattens the checkpoints up to and including the last one before rawPosition into an int
+     * array: the checkpoint interval followed by, per checkpoint, its cursor, extents, content size
+     * and skyline rects.
+     */
+    public int[] encodeCheckpoints(int rawPosition) {
+        final int last = checkpointIndexBefore(rawPosition);
+        int size = 1;
+        for (int i = 0; i <= last; i++) {
+            size += CHECKPOINT_HEADER_SIZE + mCheckpoints.get(i).skyline.size() * 4;
+        }
+
+        int[] data = new int[size];
+        int index = 0;
+        data[index++] = mCheckpointInterval;
+        for (int i = 0; i <= last; i++) {
+            Checkpoint checkpoint = mCheckpoints.get(i);
+            data[index++] = checkpoint.section;
+            data[index++] = checkpoint.position;
+            data[index++] = checkpoint.rawPosition;
+            data[index++] = checkpoint.contentEnd;
+            data[index++] = checkpoint.minStart;
+            data[index++] = checkpoint.hasContent ? 1 : 0;
+            if (checkpoint.hasContent) {
+                data[index++] = mGeometry.vertical ? mGeometry.width : checkpoint.contentEnd;
+                data[index++] = mGeometry.vertical ? checkpoint.contentEnd : mGeometry.height;
+            }
+            else {
+                data[index++] = 0;
+                data[index++] = 0;
+            }
+            data[index++] = checkpoint.skyline.size();
+            for (GridRect rect : checkpoint.skyline) {
+                data[index++] = rect.left;
+                data[index++] = rect.top;
+                data[index++] = rect.right;
+                data[index++] = rect.bottom;
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Resumes placement from checkpoints saved by {@link #encodeCheckpoints(int)}. They are only
+     * used while paging, as otherwise everything before them has to be placed to be kept anyway,
+     * and only if they were taken with the same placement key.
+     *
+     * @return true if placement now resumes from the last saved checkpoint
+     */
+    public boolean restoreCheckpoints(int[] placementKey, int[] data) {
+        if (!mPagedPlacement || data == null || data.length == 0 ||
+                !Arrays.equals(placementKey, getPlacementKey())) {
+            return false;
+        }
+        ArrayList<Checkpoint> checkpoints = decodeCheckpoints(data);
+        Checkpoint last = checkpoints.get(checkpoints.size() - 1);
+        if (mPlacementCacheWriter != null && mPlacementCacheWriter.getItemCount() < last.rawPosition) {
+            return false; //the cache would be missing the items skipped
+        }
+
+        //resume placement at the last checkpoint, its stretch is placed again from here
+        last.minStart = Integer.MAX_VALUE;
+        mCheckpoints = checkpoints;
+        mCheckpointInterval = data[0];
+        restoreCheckpoint(last);
+        return true;
+    }
+
+    private static ArrayList<Checkpoint> decodeCheckpoints(int[] data) {
+        ArrayList<Checkpoint> checkpoints = new ArrayList<Checkpoint>();
+        int index = 1;
+        while (index < data.length) {
+            Checkpoint checkpoint = new Checkpoint();
+            checkpoint.section = data[index++];
+            checkpoint.position = data[index++];
+            checkpoint.rawPosition = data[index++];
+            checkpoint.contentEnd = data[index++];
+            checkpoint.minStart = data[index++];
+            checkpoint.hasContent = data[index++] == 1;
+            index += 2; //content width and height follow from the geometry and contentEnd
+            final int rectCount = data[index++];
+            checkpoint.skyline = new ArrayList<GridRect>(rectCount);
+            for (int i = 0; i < rectCount; i++) {
+                checkpoint.skyline.add(new GridRect(data[index], data[index + 1], data[index + 2], data[index + 3]));
+                index += 4;
+            }
+            checkpoints.add(checkpoint);
+        }
+        return checkpoints;
+    }
+
+    private void openPlacementCache() {
+        mPlacementCacheHeld = false;
+        if (mPlacementCache == null) {
+            return;
+        }
+        if (mPlacementCache.open(getPlacementKey())) {
+            //checkpoints taken while the cache was written, so paging and changes can replay
+            //from inside it once placement reaches them
+            final int[] data = mPlacementCache.getCheckpoints();
+            if (data.length > 0) {
+                mCachedCheckpoints = decodeCheckpoints(data);
+                mNextCachedCheckpoint = 1;
+                mCheckpoints.set(0, mCachedCheckpoints.get(0));
+                mCheckpointInterval = data[0];
+            }
+        }
+        mPlacementCacheWriter = mPlacementCache.beginWrite(mGeometry.vertical, mPlacementCacheExecutor);
+        mPlacementCacheCommitAt = mPlacementCacheWriter.getItemCount() + PLACEMENT_CACHE_COMMIT_INTERVAL;
+    }
+
+    private boolean readingPlacementCache() {
+        return isPlacementCacheOpen() && mRawPosition < mPlacementCache.getItemCount();
+    }
+
+    private void takeCachedCheckpoint() {
+        //placement may have resumed past some of them, from checkpoints restored from a saved state
+        while (mNextCachedCheckpoint < mCachedCheckpoints.size() &&
+                mCachedCheckpoints.get(mNextCachedCheckpoint).rawPosition < mRawPosition) {
+            mNextCachedCheckpoint++;
+        }
+        if (mNextCachedCheckpoint < mCachedCheckpoints.size() &&
+                mCachedCheckpoints.get(mNextCachedCheckpoint).rawPosition == mRawPosition) {
+            mCheckpoints.add(mCachedCheckpoints.get(mNextCachedCheckpoint++));
+        }
+    }
+
+    private void closePlacementReader() {
+        if (mPlacementCache != null) {
+            mPlacementCache.close();
+        }
+        mCachedCheckpoints.clear();
+        mNextCachedCheckpoint = 0;
+    }
+
+    private void closePlacementCache() {
+        commitPlacementCache(false);
+        if (mPlacementCacheWriter != null) {
+            mPlacementCacheWriter.close();
+            mPlacementCacheWriter = null;
+        }
+        closePlacementReader();
+    }
+
+    /**
+     * Appends a newly placed item to the cache file, or makes the file readable once every item
+     * has been placed. Items already in the file are skipped.
+     */
+    private void writePlacementCache(Placement placement) {
+        if (mPlacementCacheWriter == null || mPlacementCacheHeld) {
+            return;
+        }
+        if (placement == null) {
+            commitPlacementCache(true);
+            return;
+        }
+        final int itemCount = mPlacementCacheWriter.getItemCount();
+        if (placement.rawPosition < itemCount) {
+            return;
+        }
+        if (placement.rawPosition > itemCount) {
+            //placement skipped items the file does not have, it cannot be carried on
+            stopWritingPlacementCache();
+            return;
+        }
+        mPlacementCacheWriter.append(placement.rect);
+        if (itemCount + 1 >= mPlacementCacheCommitAt) {
+            commitPlacementCache(false);
+            mPlacementCacheCommitAt = itemCount + 1 + PLACEMENT_CACHE_COMMIT_INTERVAL;
+        }
+    }
+
+    private void truncatePlacementCache(int rawPosition) {
+        //items from rawPosition on are placed again, and the skyline to carry on placing them
+        //comes from the checkpoint just restored, not from the end of the cache
+        closePlacementReader();
+        if (mPlacementCacheWriter == null) {
+            return;
+        }
+        mPlacementCacheWriter.truncate(rawPosition);
+        //the file must not go on describing the items that changed
+        commitPlacementCache(false);
+    }
+
+    /**
+     * Writes what follows the item rects in the cache file, so it can be read with every item
+     * appended so far. Only done while the placement cursor is at the last item written, where
+     * the skyline and checkpoints describe the end of the file.
+     */
+    private void commitPlacementCache(boolean force) {
+        if (mPlacementCacheWriter == null || !mPlacementCacheWriter.isDirty() ||
+                mPlacementCacheWriter.getItemCount() != mRawPosition) {
+            return;
+        }
+        try {
+            ItemSize contentSize = getContentSize();
+            mPlacementCacheWriter.commit(getPlacementKey(), contentSize != null ? contentSize.width : 0,
+                    contentSize != null ? contentSize.height : 0, mStrategy.getSkyline(),
+                    encodeCheckpoints(mRawPosition), force);
+        }
+        catch (IOException e) {
+            //placement works just the same without the cache
+            stopWritingPlacementCache();
+        }
+    }
+
+    private void stopWritingPlacementCache() {
+        if (mPlacementCacheWriter != null) {
+            mPlacementCacheWriter.close();
+            mPlacementCacheWriter = null;
+        }
+    }
+}
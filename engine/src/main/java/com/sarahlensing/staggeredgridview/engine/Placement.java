@@ -0,0 +1,33 @@
+package com.sarahlensing.staggeredgridview.engine;
+
+/**
+ * Where the layout engine placed a single item or section header.
+ */
+public final class Placement {
+    /**
+     * Position of the item among every header and item in the grid
+     */
+    public final int rawPosition;
+    public final int section;
+
+    /**
+     * Position of the item within its section, or the section itself for a header
+     */
+    public final int position;
+    public final boolean isSection;
+    public final GridRect rect;
+
+    public Placement(int rawPosition, int section, int position, boolean isSection, GridRect rect) {
+        this.rawPosition = rawPosition;
+        this.section = section;
+        this.position = position;
+        this.isSection = isSection;
+        this.rect = rect;
+    }
+
+    @Override
+    public String toString() {
+        return "Placement{raw=" + rawPosition + " section=" + section + " position=" + position +
+                " frame=" + rect + "}";
+    }
+}
@@ -0,0 +1,506 @@
+package com.sarahlensing.staggeredgridview.engine;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Placements computed by {@link LayoutEngine} stored in a file, so a later launch showing the
+ * same content can map the file and read item rects back instead of placing items again.
+ *
+ * <p>Layout of the file, all values big endian ints unless noted:</p>
+ * <pre>
+ * magic, format version, content version (long), item count, content width, content height,
+ * block count, skyline rect count, checkpoint data length, key length,
+ * item rects (left, top, right, bottom per item, in placement order),
+ * per block of items: the closest start of any item in that block or after it,
+ * skyline rects after the last item, checkpoint data, key
+ * </pre>
+ *
+ * <p>The file holds however many items have been placed so far, not necessarily all of them.
+ * Rects placed since the file was last written are kept in memory and written over everything
+ * after the old ones, which is small, so bringing the file up to date costs the new rects and a
+ * few ints per block of items rather than a rewrite. The item count is set to -1 while that is
+ * written, so a file left half written is never read.</p>
+ *
+ * <p>Only the reader touches the file on the placing thread. The writer works out what to write
+ * there and hands the writing itself to an executor, one write at a time in order, so placement
+ * never waits on the disk.</p>
+ */
+class PlacementCache {
+    private static final int MAGIC = 0x53475650; //SGVP
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 7 * 4;
+    private static final int ITEM_COUNT_OFFSET = 4 + 4 + 8;
+    private static final int RECT_SIZE = 4 * 4;
+    static final int BLOCK_SIZE = 64;
+
+    private static Executor sWriteExecutor;
+
+    //writes handed to an executor that have not finished yet by file, whichever cache queued
+    //them, guarded by itself
+    private static final HashMap<File, Integer> sQueuedWrites = new HashMap<File, Integer>();
+
+    private final File mFile;
+    private final long mContentVersion;
+
+    private IntBuffer mRects;
+    private int[] mBlockMinStarts;
+    private ArrayList<GridRect> mSkyline;
+    private int[] mCheckpoints;
+    private int mItemCount;
+
+    PlacementCache(File file, long contentVersion) {
+        mFile = file.getAbsoluteFile();
+        mContentVersion = contentVersion;
+    }
+
+    /**
+     * Maps the cache file if it was written for the same content version and key. Writes queued
+     * for the file, by this cache or another one for the same file, are finished first so it is
+     * never truncated while mapped. That only waits when placement is started again right after
+     * they were made.
+     *
+     * @param key Geometry and section counts the placements depend on
+     * @return true if placements can be read from the cache
+     */
+    boolean open(int[] key) {
+        close();
+        awaitQueuedWrites();
+        if (!mFile.exists()) {
+            return false;
+        }
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(mFile, "r");
+            FileChannel channel = file.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION ||
+                    buffer.getLong() != mContentVersion) {
+                return false;
+            }
+            final int itemCount = buffer.getInt();
+            if (itemCount < 0) {
+                return false; //left part way through appending
+            }
+            buffer.getInt(); //content width
+            buffer.getInt(); //content height
+            final int blockCount = buffer.getInt();
+            final int skylineCount = buffer.getInt();
+            final int checkpointLength = buffer.getInt();
+            final int keyLength = buffer.getInt();
+
+            IntBuffer ints = buffer.slice().asIntBuffer();
+            int index = itemCount * 4;
+            IntBuffer rects = slice(ints, 0, index);
+            int[] blockMinStarts = new int[blockCount];
+            slice(ints, index, blockCount).get(blockMinStarts);
+            index += blockCount;
+            int[] skyline = new int[skylineCount * 4];
+            slice(ints, index, skyline.length).get(skyline);
+            index += skyline.length;
+            int[] checkpoints = new int[checkpointLength];
+            slice(ints, index, checkpointLength).get(checkpoints);
+            index += checkpointLength;
+            int[] storedKey = new int[keyLength];
+            slice(ints, index, keyLength).get(storedKey);
+            if (!Arrays.equals(storedKey, key)) {
+                return false;
+            }
+
+            mRects = rects;
+            mBlockMinStarts = blockMinStarts;
+            mSkyline = toRects(skyline);
+            mCheckpoints = checkpoints;
+            mItemCount = itemCount;
+            return true;
+        }
+        catch (IOException e) {
+            close();
+            return false;
+        }
+        catch (RuntimeException e) {
+            //truncated or otherwise corrupt file
+            close();
+            return false;
+        }
+        finally {
+            closeQuietly(file);
+        }
+    }
+
+    private static IntBuffer slice(IntBuffer ints, int position, int length) {
+        IntBuffer duplicate = ints.duplicate();
+        duplicate.position(position);
+        duplicate.limit(position + length);
+        return duplicate.slice();
+    }
+
+    private static ArrayList<GridRect> toRects(int[] values) {
+        ArrayList<GridRect> rects = new ArrayList<GridRect>(values.length / 4);
+        for (int i = 0; i + 3 < values.length; i += 4) {
+            rects.add(new GridRect(values[i], values[i + 1], values[i + 2], values[i + 3]));
+        }
+        return rects;
+    }
+
+    void close() {
+        mRects = null;
+        mBlockMinStarts = null;
+        mSkyline = null;
+        mCheckpoints = null;
+        mItemCount = 0;
+    }
+
+    boolean isOpen() {
+        return mRects != null;
+    }
+
+    int getItemCount() {
+        return mItemCount;
+    }
+
+    GridRect getRect(int rawPosition) {
+        final int index = rawPosition * 4;
+        return new GridRect(mRects.get(index), mRects.get(index + 1), mRects.get(index + 2), mRects.get(index + 3));
+    }
+
+    /**
+     * @return A lower bound for the starting edge of the item at rawPosition and every cached
+     *         item after it
+     */
+    int getMinStartFrom(int rawPosition) {
+        return mBlockMinStarts[rawPosition / BLOCK_SIZE];
+    }
+
+    /**
+     * @return The skyline placement continues from after the last cached item
+     */
+    ArrayList<GridRect> getSkyline() {
+        return new ArrayList<GridRect>(mSkyline);
+    }
+
+    /**
+     * @return Checkpoints up to the last cached item, as encoded by
+     *         {@link LayoutEngine#encodeCheckpoints(int)}
+     */
+    int[] getCheckpoints() {
+        return mCheckpoints;
+    }
+
+    /**
+     * Starts keeping the cache file up to date, carrying on after the items it holds if it is
+     * open and starting over otherwise.
+     *
+     * @param executor Runs the writes one at a time in the order they are made, or null for a
+     *                 background thread shared by every cache
+     */
+    Writer beginWrite(boolean vertical, Executor executor) {
+        return new Writer(vertical, executor != null ? executor : getWriteExecutor());
+    }
+
+    private static synchronized Executor getWriteExecutor() {
+        if (sWriteExecutor == null) {
+            sWriteExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "PlacementCacheWriter");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        return sWriteExecutor;
+    }
+
+    private void awaitQueuedWrites() {
+        boolean interrupted = false;
+        synchronized (sQueuedWrites) {
+            while (sQueuedWrites.containsKey(mFile)) {
+                try {
+                    sQueuedWrites.wait();
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void queuedWriteStarted() {
+        synchronized (sQueuedWrites) {
+            final Integer queued = sQueuedWrites.get(mFile);
+            sQueuedWrites.put(mFile, queued != null ? queued + 1 : 1);
+        }
+    }
+
+    private void queuedWriteFinished() {
+        synchronized (sQueuedWrites) {
+            final int queued = sQueuedWrites.get(mFile) - 1;
+            if (queued > 0) {
+                sQueuedWrites.put(mFile, queued);
+            }
+            else {
+                sQueuedWrites.remove(mFile);
+                sQueuedWrites.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Part of bringing the file up to date, run by the writer's executor.
+     */
+    private interface Write {
+        void run() throws IOException;
+    }
+
+    class Writer {
+        private final Executor mExecutor;
+        private final boolean mVertical;
+
+        //only used by queued writes
+        private RandomAccessFile mOutputFile;
+        private FileChannel mChannel;
+        private volatile boolean mFailed;
+
+        private int mItemCount;
+        private int[] mBlockMinStarts;
+        private int mBlockCount;
+
+        //rects up to mCommittedCount are in the file, later ones wait here for the next commit
+        private int mCommittedCount;
+        private int[] mPending = new int[BLOCK_SIZE * 4];
+        private boolean mDirty;
+
+        private Writer(boolean vertical, Executor executor) {
+            mVertical = vertical;
+            mExecutor = executor;
+            queue(new Write() {
+                @Override
+                public void run() throws IOException {
+                    mOutputFile = new RandomAccessFile(mFile, "rw");
+                    mChannel = mOutputFile.getChannel();
+                }
+            });
+            if (isOpen()) {
+                //the stored block starts already bound every later item, which stays true as
+                //more are appended
+                final int[] stored = PlacementCache.this.mBlockMinStarts;
+                mItemCount = PlacementCache.this.mItemCount;
+                mCommittedCount = mItemCount;
+                mBlockCount = stored.length;
+                mBlockMinStarts = new int[Math.max(16, mBlockCount)];
+                System.arraycopy(stored, 0, mBlockMinStarts, 0, mBlockCount);
+                return;
+            }
+            mBlockMinStarts = new int[16];
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(FORMAT_VERSION);
+            header.putLong(mContentVersion);
+            header.putInt(-1);
+            header.flip();
+            queue(new Write() {
+                @Override
+                public void run() throws IOException {
+                    mOutputFile.setLength(0);
+                    writeFully(header, 0);
+                }
+            });
+            mDirty = true;
+        }
+
+        private void queue(final Write write) {
+            queuedWriteStarted();
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (!mFailed) {
+                            write.run();
+                        }
+                    }
+                    catch (IOException e) {
+                        //the item count stays -1 if this was part way through a commit
+                        mFailed = true;
+                        closeQuietly(mOutputFile);
+                    }
+                    finally {
+                        queuedWriteFinished();
+                    }
+                }
+            });
+        }
+
+        int getItemCount() {
+            return mItemCount;
+        }
+
+        void append(GridRect rect) {
+            final int index = (mItemCount - mCommittedCount) * 4;
+            if (index + 4 > mPending.length) {
+                int[] pending = new int[mPending.length * 2];
+                System.arraycopy(mPending, 0, pending, 0, index);
+                mPending = pending;
+            }
+            mPending[index] = rect.left;
+            mPending[index + 1] = rect.top;
+            mPending[index + 2] = rect.right;
+            mPending[index + 3] = rect.bottom;
+            addStart(mItemCount, rect.start(mVertical));
+            mItemCount++;
+            mDirty = true;
+        }
+
+        private void addStart(int rawPosition, int start) {
+            final int block = rawPosition / BLOCK_SIZE;
+            if (block == mBlockCount) {
+                if (mBlockCount == mBlockMinStarts.length) {
+                    int[] blockMinStarts = new int[mBlockCount * 2];
+                    System.arraycopy(mBlockMinStarts, 0, blockMinStarts, 0, mBlockCount);
+                    mBlockMinStarts = blockMinStarts;
+                }
+                mBlockMinStarts[mBlockCount++] = start;
+            }
+            else {
+                mBlockMinStarts[block] = Math.min(mBlockMinStarts[block], start);
+            }
+        }
+
+        /**
+         * Forgets every item from rawPosition on, so they can be written again. The file keeps
+         * describing the items it had until the next commit.
+         */
+        void truncate(int rawPosition) {
+            if (rawPosition >= mItemCount) {
+                return;
+            }
+            //bounds of the blocks kept may include forgotten items, which leaves them lower than
+            //they need to be but still right, and saves reading the kept items back
+            mBlockCount = (rawPosition + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            if (rawPosition < mCommittedCount) {
+                mCommittedCount = rawPosition;
+            }
+            mItemCount = rawPosition;
+            mDirty = true;
+        }
+
+        boolean isDirty() {
+            return mDirty;
+        }
+
+        /**
+         * Queues writing the rects appended since the last commit and everything that follows
+         * them, making the file readable with every item appended so far. The file is only
+         * unreadable while that write runs.
+         *
+         * @param key Geometry and section counts the placements depend on
+         * @param skyline Skyline after the last item appended
+         * @param checkpoints Checkpoints up to the last item appended
+         * @param force true to have the write wait until the file is on disk
+         * @throws IOException if an earlier write failed, so the file can no longer be kept up
+         *                     to date
+         */
+        void commit(int[] key, int contentWidth, int contentHeight, ArrayList<GridRect> skyline,
+                    int[] checkpoints, final boolean force) throws IOException {
+            if (mFailed) {
+                throw new IOException("Writing the placement cache failed: " + mFile);
+            }
+            final int[] blockMinStarts = new int[mBlockCount];
+            System.arraycopy(mBlockMinStarts, 0, blockMinStarts, 0, mBlockCount);
+            //each block has to bound every item after it as well
+            for (int i = mBlockCount - 2; i >= 0; i--) {
+                blockMinStarts[i] = Math.min(blockMinStarts[i], blockMinStarts[i + 1]);
+            }
+            final int pendingLength = (mItemCount - mCommittedCount) * 4;
+            final ByteBuffer tail = ByteBuffer.allocate(
+                    (pendingLength + mBlockCount + skyline.size() * 4 + checkpoints.length + key.length) * 4);
+            IntBuffer ints = tail.asIntBuffer();
+            ints.put(mPending, 0, pendingLength);
+            ints.put(blockMinStarts);
+            for (GridRect rect : skyline) {
+                ints.put(rect.left).put(rect.top).put(rect.right).put(rect.bottom);
+            }
+            ints.put(checkpoints);
+            ints.put(key);
+
+            final long tailStart = HEADER_SIZE + (long) mCommittedCount * RECT_SIZE;
+            final ByteBuffer counts = ByteBuffer.allocate(7 * 4);
+            counts.putInt(mItemCount);
+            counts.putInt(contentWidth);
+            counts.putInt(contentHeight);
+            counts.putInt(mBlockCount);
+            counts.putInt(skyline.size());
+            counts.putInt(checkpoints.length);
+            counts.putInt(key.length);
+            counts.flip();
+            queue(new Write() {
+                @Override
+                public void run() throws IOException {
+                    writeItemCount(-1);
+                    writeFully(tail, tailStart);
+                    mOutputFile.setLength(tailStart + tail.capacity());
+                    if (force) {
+                        //everything has to be on disk before the header points at it
+                        mChannel.force(false);
+                    }
+                    writeFully(counts, ITEM_COUNT_OFFSET);
+                    if (force) {
+                        mChannel.force(false);
+                    }
+                }
+            });
+            mCommittedCount = mItemCount;
+            mDirty = false;
+        }
+
+        void close() {
+            queue(new Write() {
+                @Override
+                public void run() {
+                    closeQuietly(mOutputFile);
+                }
+            });
+        }
+
+        private void writeItemCount(int itemCount) throws IOException {
+            ByteBuffer count = ByteBuffer.allocate(4);
+            count.putInt(itemCount);
+            count.flip();
+            writeFully(count, ITEM_COUNT_OFFSET);
+        }
+
+        private void writeFully(ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                position += mChannel.write(buffer, position);
+            }
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        }
+        catch (IOException e) {
+            //nothing left to do with it
+        }
+    }
+}
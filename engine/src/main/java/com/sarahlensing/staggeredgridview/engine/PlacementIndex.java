@@ -0,0 +1,176 @@
+package com.sarahlensing.staggeredgridview.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Placements sorted by the edge at which they begin along the scrolling axis, over a segment
+ * tree holding the furthest ending edge of every stretch of them. A lookup for a content
+ * coordinate is a binary search for the placements beginning before it, then a descent of the
+ * tree that skips every stretch ending at or before it. One long item early on, such as a full
+ * span banner, only keeps its own path through the tree open, so lookups stay O(log n) plus the
+ * placements actually overlapping the coordinate.
+ */
+class PlacementIndex {
+    private final boolean mVertical;
+    private Placement[] mItems = new Placement[0];
+    private int mCount;
+
+    //mMaxEnds[mCapacity + i] is the end of item i, and every other node the larger of its two
+    //children, so mMaxEnds[1] is the furthest end of all. Unused leaves hold MIN_VALUE.
+    private int[] mMaxEnds = new int[0];
+    private int mCapacity;
+
+    private final Comparator<Placement> mStartComparator = new Comparator<Placement>() {
+        @Override
+        public int compare(Placement lhs, Placement rhs) {
+            return start(lhs) - start(rhs);
+        }
+    };
+
+    PlacementIndex(boolean vertical) {
+        mVertical = vertical;
+    }
+
+    private int start(Placement placement) {
+        return placement.rect.start(mVertical);
+    }
+
+    private int end(Placement placement) {
+        return placement.rect.end(mVertical);
+    }
+
+    void rebuild(ArrayList<Placement> items) {
+        final int count = items == null ? 0 : items.size();
+        if (mItems.length < count) {
+            mItems = new Placement[count];
+        }
+        for (int i = 0; i < count; i++) {
+            mItems[i] = items.get(i);
+        }
+        for (int i = count; i < mCount; i++) {
+            mItems[i] = null;
+        }
+        mCount = count;
+        Arrays.sort(mItems, 0, count, mStartComparator);
+        buildTree(count);
+    }
+
+    private void buildTree(int count) {
+        if (mCapacity < count || mMaxEnds.length == 0) {
+            mCapacity = Math.max(16, Integer.highestOneBit(Math.max(count, 1) - 1) << 1);
+            mMaxEnds = new int[mCapacity * 2];
+        }
+        for (int i = 0; i < mCapacity; i++) {
+            mMaxEnds[mCapacity + i] = i < count ? end(mItems[i]) : Integer.MIN_VALUE;
+        }
+        for (int node = mCapacity - 1; node > 0; node--) {
+            mMaxEnds[node] = Math.max(mMaxEnds[node * 2], mMaxEnds[node * 2 + 1]);
+        }
+    }
+
+    void clear() {
+        Arrays.fill(mItems, 0, mCount, null);
+        mCount = 0;
+        Arrays.fill(mMaxEnds, Integer.MIN_VALUE);
+    }
+
+    /**
+     * Adds a newly placed item. Items are placed roughly in order along the scrolling axis
+     * so this is usually an append, which only updates the item's own path through the tree.
+     */
+    void add(Placement item) {
+        if (mCount == mItems.length) {
+            Placement[] items = new Placement[Math.max(16, mCount * 2)];
+            System.arraycopy(mItems, 0, items, 0, mCount);
+            mItems = items;
+        }
+
+        final int index = countStartingBefore(start(item) + 1);
+        System.arraycopy(mItems, index, mItems, index + 1, mCount - index);
+        mItems[index] = item;
+        mCount++;
+
+        if (mCount > mCapacity) {
+            buildTree(mCount);
+            return;
+        }
+        for (int i = index; i < mCount; i++) {
+            mMaxEnds[mCapacity + i] = end(mItems[i]);
+        }
+        //every item from index on moved, so bring up to date the parents of that stretch
+        for (int low = (mCapacity + index) >> 1, high = (mCapacity + mCount - 1) >> 1; low > 0; low >>= 1, high >>= 1) {
+            for (int node = low; node <= high; node++) {
+                mMaxEnds[node] = Math.max(mMaxEnds[node * 2], mMaxEnds[node * 2 + 1]);
+            }
+        }
+    }
+
+    //number of items that begin before coordinate
+    private int countStartingBefore(int coordinate) {
+        int low = 0;
+        int high = mCount;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (start(mItems[mid]) < coordinate) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param x X in content coordinates
+     * @param y Y in content coordinates
+     * @return The placement whose frame contains the point, or null
+     */
+    Placement itemAt(int x, int y) {
+        final int coordinate = mVertical ? y : x;
+        final int limit = countStartingBefore(coordinate + 1);
+        if (limit == 0) {
+            return null;
+        }
+        return itemAt(1, 0, mCapacity, limit, coordinate, x, y);
+    }
+
+    //searches the items below node, which covers [nodeStart, nodeEnd), latest first
+    private Placement itemAt(int node, int nodeStart, int nodeEnd, int limit, int coordinate, int x, int y) {
+        if (nodeStart >= limit || mMaxEnds[node] <= coordinate) {
+            return null;
+        }
+        if (node >= mCapacity) {
+            final Placement item = mItems[nodeStart];
+            return item.rect.contains(x, y) ? item : null;
+        }
+        final int middle = (nodeStart + nodeEnd) >>> 1;
+        final Placement item = itemAt(node * 2 + 1, middle, nodeEnd, limit, coordinate, x, y);
+        return item != null ? item : itemAt(node * 2, nodeStart, middle, limit, coordinate, x, y);
+    }
+
+    /**
+     * Collects every placement overlapping [start, end) along the scrolling axis.
+     */
+    void getInRange(int start, int end, ArrayList<Placement> out) {
+        final int limit = countStartingBefore(end);
+        if (limit > 0) {
+            collect(1, 0, mCapacity, limit, start, out);
+        }
+    }
+
+    private void collect(int node, int nodeStart, int nodeEnd, int limit, int start, ArrayList<Placement> out) {
+        if (nodeStart >= limit || mMaxEnds[node] <= start) {
+            return;
+        }
+        if (node >= mCapacity) {
+            out.add(mItems[nodeStart]);
+            return;
+        }
+        final int middle = (nodeStart + nodeEnd) >>> 1;
+        collect(node * 2 + 1, middle, nodeEnd, limit, start, out);
+        collect(node * 2, nodeStart, middle, limit, start, out);
+    }
+}
@@ -0,0 +1,80 @@
+package com.sarahlensing.staggeredgridview.engine;
+
+import com.sarahlensing.staggeredgridview.ItemSize;
+
+import java.util.ArrayList;
+
+/**
+ * Decides where each item goes. The layout engine hands items to a strategy one at a time, in
+ * order, and takes care of everything else: placing lazily, keeping and paging placements,
+ * checkpoints and the placement cache.
+ *
+ * <p>Everything a strategy needs to carry on placing has to be expressible as a list of rects,
+ * its skyline, so that placement can be saved and resumed part way through. Given the same
+ * geometry, skyline and items a strategy must place them the same way every time.</p>
+ */
+public interface PlacementStrategy {
+    /**
+     * Span of an item that takes up the whole cross axis, as section headers do
+     */
+    int FULL_SPAN = -1;
+
+    /**
+     * Forgets everything placed and starts placing into geometry.
+     */
+    void start(GridGeometry geometry);
+
+    /**
+     * Places the next item.
+     *
+     * @param size Size the item asks for
+     * @param isSection true for a section header
+     * @param span Number of lanes the item takes up, or {@link #FULL_SPAN}
+     * @param upcoming The items that follow this one in its section, for strategies that need to
+     *                 look ahead
+     * @return The frame of the item in content coordinates
+     */
+    GridRect place(ItemSize size, boolean isSection, int span, UpcomingItems upcoming);
+
+    /**
+     * @return The closest edge along the scrolling axis at which any later item can begin
+     */
+    int getFrontier();
+
+    /**
+     * @return true while places already decided for items that come next depend on items placed
+     *         so far, as when a whole row is broken at once. Placement is only checkpointed while
+     *         this is false, so it can always resume without those items.
+     */
+    boolean hasPendingPlacements();
+
+    /**
+     * @return A copy of the rects this strategy needs to carry on placing from here
+     */
+    ArrayList<GridRect> getSkyline();
+
+    /**
+     * Carries on placing from a skyline returned by {@link #getSkyline()} with the same geometry.
+     */
+    void restoreSkyline(ArrayList<GridRect> skyline);
+
+    /**
+     * @return Values identifying this strategy and any settings that change where it places
+     *         items, so saved placements are only reused by a strategy that would place the same
+     */
+    int[] getKey();
+
+    /**
+     * The items after the one being placed, up to the end of its section.
+     */
+    interface UpcomingItems {
+        int getCount();
+
+        /**
+         * @param index 0 for the item right after the one being placed
+         */
+        ItemSize getItemSize(int index);
+
+        int getItemSpan(int index);
+    }
+}
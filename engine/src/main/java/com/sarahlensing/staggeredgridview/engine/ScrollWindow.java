@@ -0,0 +1,175 @@
+package com.sarahlensing.staggeredgridview.engine;
+
+import java.util.ArrayList;
+
+/**
+ * The stretch of placed content around the scroll offset that has items bound, and the loop
+ * keeping it that way as the offset moves: clamp the offset to the placed content, place ahead,
+ * page placements in, bind what came into range and unbind what left it. StaggeredGridView binds
+ * views through it and the scroll replay benchmark only counts, so both run the same loop.
+ *
+ * <p>The offset itself is kept by the caller and passed in, along with the viewport it was
+ * last given by {@link #setViewport}.</p>
+ */
+public class ScrollWindow {
+    /**
+     * Engine calls that may place items.
+     */
+    public static final int PHASE_PLACEMENT = 0;
+    /**
+     * Looking up the placements in the range to bind.
+     */
+    public static final int PHASE_RANGE_QUERY = 1;
+
+    /**
+     * What the window binds into, held by the caller.
+     */
+    public interface Items {
+        boolean isBound(int rawPosition);
+
+        void bind(Placement placement);
+
+        int getBoundCount();
+
+        GridRect getBoundRect(int index);
+
+        /**
+         * Unbinds the item at index, which may move the items after it.
+         *
+         * @return false if it stays bound, as the item being dragged does
+         */
+        boolean unbind(int index);
+
+        /**
+         * Called around every phase of the loop, one of the PHASE constants, for tracing and timing.
+         * Phases never nest.
+         */
+        void beginPhase(int phase);
+
+        void endPhase(int phase);
+    }
+
+    private final LayoutEngine mEngine;
+    private final Items mItems;
+    private final ArrayList<Placement> mRange = new ArrayList<Placement>();
+
+    private boolean mVertical = true;
+    private int mViewportLength;
+    private int mItemMargin;
+    private int mPagesToPreload;
+
+    public ScrollWindow(LayoutEngine engine, Items items) {
+        mEngine = engine;
+        mItems = items;
+    }
+
+    public void setViewport(boolean vertical, int viewportLength, int itemMargin, int pagesToPreload) {
+        mVertical = vertical;
+        mViewportLength = viewportLength;
+        mItemMargin = itemMargin;
+        mPagesToPreload = pagesToPreload;
+    }
+
+    /**
+     * @return How far past the offset items are bound, and before it they are kept bound
+     */
+    public int getAmountToLayout() {
+        return mViewportLength * mPagesToPreload;
+    }
+
+    /**
+     * @return How far either side of the viewport placements stay resident when paging
+     */
+    public int getResidentAmount() {
+        return getAmountToLayout() * 2 + mViewportLength;
+    }
+
+    /**
+     * @return The furthest offset the placed content allows, negative while it all fits
+     */
+    public int getMaxOffset() {
+        return mEngine.getContentEnd() - mViewportLength + mItemMargin;
+    }
+
+    /**
+     * Places far enough to show the viewport at offset, then clamps offset to the placed content.
+     */
+    public int clampOffset(int offset) {
+        ensurePlacedThrough(offset + mViewportLength);
+        return Math.max(0, Math.min(offset, getMaxOffset()));
+    }
+
+    public void ensurePlacedThrough(int end) {
+        mItems.beginPhase(PHASE_PLACEMENT);
+        try {
+            mEngine.ensurePlacedThrough(end);
+        }
+        finally {
+            mItems.endPhase(PHASE_PLACEMENT);
+        }
+    }
+
+    public void setResidentRange(int offset) {
+        mEngine.setResidentRange(Math.max(0, offset - getResidentAmount()),
+                offset + mViewportLength + getResidentAmount());
+    }
+
+    /**
+     * Replaces the resident placements with those for the pages around offset.
+     */
+    public void pageInAround(int offset) {
+        mItems.beginPhase(PHASE_PLACEMENT);
+        try {
+            mEngine.pageIn(Math.max(0, offset - getResidentAmount()),
+                    offset + mViewportLength + getResidentAmount());
+        }
+        finally {
+            mItems.endPhase(PHASE_PLACEMENT);
+        }
+    }
+
+    /**
+     * Binds every placement between start and end that is not bound yet, paging in around offset
+     * first if the range runs outside the resident placements.
+     */
+    public void bindRange(int offset, int start, int end) {
+        ensurePlacedThrough(end);
+        if (mEngine.isPagedPlacement() && (start < mEngine.getResidentStart() || end > mEngine.getResidentEnd())) {
+            pageInAround(offset);
+        }
+        final ArrayList<Placement> placements = mRange;
+        mItems.beginPhase(PHASE_RANGE_QUERY);
+        try {
+            mEngine.getPlacementsInRange(start, end, placements);
+        }
+        finally {
+            mItems.endPhase(PHASE_RANGE_QUERY);
+        }
+        //the index reports placements furthest along first, bind them from the beginning edge on
+        for (int i = placements.size() - 1; i >= 0; i--) {
+            Placement placement = placements.get(i);
+            if (!mItems.isBound(placement.rawPosition)) {
+                mItems.bind(placement);
+            }
+        }
+        placements.clear();
+    }
+
+    /**
+     * Unbinds the items more than the amount to layout either side of offset.
+     *
+     * @return How many were unbound
+     */
+    public int unbindOffscreen(int offset) {
+        final int start = Math.max(0, offset - getAmountToLayout());
+        final int end = Math.min(mEngine.getContentEnd(), offset + getAmountToLayout());
+        int unbound = 0;
+        for (int i = mItems.getBoundCount() - 1; i >= 0; i--) {
+            final GridRect rect = mItems.getBoundRect(i);
+            if ((rect.start(mVertical) >= end || rect.end(mVertical) <= start) && mItems.unbind(i)) {
+                unbound++;
+            }
+        }
+        return unbound;
+    }
+}
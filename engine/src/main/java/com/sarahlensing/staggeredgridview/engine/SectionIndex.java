@@ -0,0 +1,389 @@
+package com.sarahlensing.staggeredgridview.engine;
+
+/**
+ * Prefix sums over the number of raw positions each section takes up, its items plus its
+ * header. Sections are the nodes of a treap ordered by section, each holding the item count of
+ * its section and the sums over its subtree, so mapping between raw positions and (section,
+ * position) pairs, changing a section's item count and inserting or removing a section are all
+ * O(log sections) expected.
+ */
+public final class SectionIndex {
+    //node 0 stands for no node and keeps zero sums
+    private static final int NONE = 0;
+
+    private final boolean mHasHeaders;
+
+    private int[] mLeft;
+    private int[] mRight;
+    private int[] mPriority;
+    private int[] mCounts;
+    //sections in the subtree, and the raw positions they take up
+    private int[] mSubtreeSections;
+    private int[] mSubtreeSizes;
+    private int mRoot = NONE;
+    private int mNodeCount;
+    //nodes of removed sections, chained through mRight
+    private int mFreeNode = NONE;
+    private int mSeed = 0x2545f491;
+
+    //split returns both halves here
+    private int mSplitLeft;
+    private int mSplitRight;
+
+    //placement reads the count of the same section for every item in it
+    private int mCachedSection = -1;
+    private int mCachedCount;
+
+    /**
+     * @param counts Item count of every section
+     * @param hasHeaders true if every section begins with a header taking up a raw position
+     */
+    public SectionIndex(int[] counts, boolean hasHeaders) {
+        mHasHeaders = hasHeaders;
+        build(counts);
+    }
+
+    /**
+     * Builds the treap in O(sections), keeping the nodes whose priorities are not yet beaten on a
+     * stack down its right edge.
+     */
+    private void build(int[] counts) {
+        final int capacity = counts.length + 1;
+        mLeft = new int[capacity];
+        mRight = new int[capacity];
+        mPriority = new int[capacity];
+        mCounts = new int[capacity];
+        mSubtreeSections = new int[capacity];
+        mSubtreeSizes = new int[capacity];
+        mNodeCount = 1;
+        mFreeNode = NONE;
+        mCachedSection = -1;
+
+        final int[] rightEdge = new int[counts.length];
+        int depth = 0;
+        for (int i = 0; i < counts.length; i++) {
+            final int node = newNode(counts[i]);
+            int last = NONE;
+            while (depth > 0 && mPriority[rightEdge[depth - 1]] < mPriority[node]) {
+                last = rightEdge[--depth];
+                pull(last);
+            }
+            mLeft[node] = last;
+            if (depth > 0) {
+                mRight[rightEdge[depth - 1]] = node;
+            }
+            rightEdge[depth++] = node;
+        }
+        mRoot = depth > 0 ? rightEdge[0] : NONE;
+        while (depth > 0) {
+            pull(rightEdge[--depth]);
+        }
+    }
+
+    private int newNode(int count) {
+        int node = mFreeNode;
+        if (node != NONE) {
+            mFreeNode = mRight[node];
+        }
+        else {
+            if (mNodeCount == mLeft.length) {
+                grow(mLeft.length * 2);
+            }
+            node = mNodeCount++;
+        }
+        mLeft[node] = NONE;
+        mRight[node] = NONE;
+        mSeed ^= mSeed << 13;
+        mSeed ^= mSeed >>> 17;
+        mSeed ^= mSeed << 5;
+        mPriority[node] = mSeed;
+        mCounts[node] = count;
+        mSubtreeSections[node] = 1;
+        mSubtreeSizes[node] = sizeOf(count);
+        return node;
+    }
+
+    private void grow(int capacity) {
+        mLeft = copyOf(mLeft, capacity);
+        mRight = copyOf(mRight, capacity);
+        mPriority = copyOf(mPriority, capacity);
+        mCounts = copyOf(mCounts, capacity);
+        mSubtreeSections = copyOf(mSubtreeSections, capacity);
+        mSubtreeSizes = copyOf(mSubtreeSizes, capacity);
+    }
+
+    private static int[] copyOf(int[] array, int length) {
+        int[] copy = new int[length];
+        System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+        return copy;
+    }
+
+    private void pull(int node) {
+        final int left = mLeft[node];
+        final int right = mRight[node];
+        mSubtreeSections[node] = mSubtreeSections[left] + 1 + mSubtreeSections[right];
+        mSubtreeSizes[node] = mSubtreeSizes[left] + sizeOf(mCounts[node]) + mSubtreeSizes[right];
+    }
+
+    private int sizeOf(int count) {
+        return mHasHeaders ? count + 1 : count;
+    }
+
+    public int getSectionCount() {
+        return mSubtreeSections[mRoot];
+    }
+
+    private int nodeOf(int section) {
+        if (section < 0 || section >= getSectionCount()) {
+            throw new IndexOutOfBoundsException("Section " + section + " of " + getSectionCount());
+        }
+        int node = mRoot;
+        while (true) {
+            final int before = mSubtreeSections[mLeft[node]];
+            if (section < before) {
+                node = mLeft[node];
+            }
+            else if (section == before) {
+                return node;
+            }
+            else {
+                section -= before + 1;
+                node = mRight[node];
+            }
+        }
+    }
+
+    public int getItemCount(int section) {
+        if (section != mCachedSection) {
+            mCachedCount = mCounts[nodeOf(section)];
+            mCachedSection = section;
+        }
+        return mCachedCount;
+    }
+
+    /**
+     * @return The item count of every section, in order
+     */
+    public int[] getItemCounts() {
+        int[] counts = new int[getSectionCount()];
+        collectCounts(mRoot, counts, 0);
+        return counts;
+    }
+
+    private int collectCounts(int node, int[] counts, int index) {
+        if (node == NONE) {
+            return index;
+        }
+        index = collectCounts(mLeft[node], counts, index);
+        counts[index++] = mCounts[node];
+        return collectCounts(mRight[node], counts, index);
+    }
+
+    /**
+     * @return The number of raw positions in every section before the given one
+     */
+    public int getSectionStart(int section) {
+        int sum = 0;
+        int node = mRoot;
+        while (node != NONE) {
+            final int before = mSubtreeSections[mLeft[node]];
+            if (section <= before) {
+                node = mLeft[node];
+            }
+            else {
+                sum += mSubtreeSizes[mLeft[node]] + sizeOf(mCounts[node]);
+                section -= before + 1;
+                node = mRight[node];
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return The number of headers and items in every section
+     */
+    public int getRawCount() {
+        return mSubtreeSizes[mRoot];
+    }
+
+    /**
+     * @param position Position within the section, -1 for its header
+     * @return The position of the item among every header and item
+     */
+    public int getRawPosition(int section, int position) {
+        return getSectionStart(section) + (mHasHeaders ? 1 : 0) + position;
+    }
+
+    /**
+     * Walks down the treap by the raw positions each subtree takes up, skipping empty sections.
+     *
+     * @return The section holding rawPosition, or {@link LayoutEngine#INVALID_POSITION} if it
+     *         is outside every section
+     */
+    public int getSection(int rawPosition) {
+        if (rawPosition < 0) {
+            return LayoutEngine.INVALID_POSITION;
+        }
+        int section = 0;
+        int remaining = rawPosition;
+        int node = mRoot;
+        while (node != NONE) {
+            final int left = mLeft[node];
+            if (remaining < mSubtreeSizes[left]) {
+                node = left;
+                continue;
+            }
+            remaining -= mSubtreeSizes[left];
+            section += mSubtreeSections[left];
+            final int size = sizeOf(mCounts[node]);
+            if (remaining < size) {
+                return section;
+            }
+            remaining -= size;
+            section++;
+            node = mRight[node];
+        }
+        return LayoutEngine.INVALID_POSITION;
+    }
+
+    /**
+     * @return The position of rawPosition within its section, or -1 for a section header. Also
+     *         -1 ({@link LayoutEngine#INVALID_POSITION}) if it is outside every section, which
+     *         {@link #getSection(int)} tells apart.
+     */
+    public int getPosition(int rawPosition) {
+        final int section = getSection(rawPosition);
+        if (section == LayoutEngine.INVALID_POSITION) {
+            return LayoutEngine.INVALID_POSITION;
+        }
+        return rawPosition - getSectionStart(section) - (mHasHeaders ? 1 : 0);
+    }
+
+    /**
+     * Changes the item count of one section in O(log sections).
+     */
+    public void setItemCount(int section, int count) {
+        final int node = nodeOf(section);
+        final int delta = sizeOf(count) - sizeOf(mCounts[node]);
+        if (delta == 0) {
+            return;
+        }
+        mCounts[node] = count;
+        mCachedSection = -1;
+        //every subtree on the way down holds the section
+        int index = section;
+        int on = mRoot;
+        while (on != node) {
+            mSubtreeSizes[on] += delta;
+            final int before = mSubtreeSections[mLeft[on]];
+            if (index < before) {
+                on = mLeft[on];
+            }
+            else {
+                index -= before + 1;
+                on = mRight[on];
+            }
+        }
+        mSubtreeSizes[node] += delta;
+    }
+
+    /**
+     * Inserts a section with the given item count before section, or after the last with
+     * section equal to the section count, in O(log sections).
+     */
+    public void insertSection(int section, int count) {
+        if (section < 0 || section > getSectionCount()) {
+            throw new IndexOutOfBoundsException("Section " + section + " of " + getSectionCount());
+        }
+        mCachedSection = -1;
+        final int node = newNode(count);
+        split(mRoot, section);
+        final int right = mSplitRight;
+        mRoot = merge(merge(mSplitLeft, node), right);
+    }
+
+    /**
+     * Removes a section, moving every later one back by one, in O(log sections).
+     */
+    public void removeSection(int section) {
+        final int node = nodeOf(section);
+        mCachedSection = -1;
+        split(mRoot, section);
+        final int left = mSplitLeft;
+        split(mSplitRight, 1);
+        mRoot = merge(left, mSplitRight);
+        mRight[node] = mFreeNode;
+        mFreeNode = node;
+    }
+
+    //the first count sections of the subtree go to mSplitLeft and the rest to mSplitRight
+    private void split(int node, int count) {
+        if (node == NONE) {
+            mSplitLeft = NONE;
+            mSplitRight = NONE;
+            return;
+        }
+        final int before = mSubtreeSections[mLeft[node]];
+        if (count <= before) {
+            split(mLeft[node], count);
+            mLeft[node] = mSplitRight;
+            pull(node);
+            mSplitRight = node;
+        }
+        else {
+            split(mRight[node], count - before - 1);
+            mRight[node] = mSplitLeft;
+            pull(node);
+            mSplitLeft = node;
+        }
+    }
+
+    //every section of left comes before every section of right
+    private int merge(int left, int right) {
+        if (left == NONE) {
+            return right;
+        }
+        if (right == NONE) {
+            return left;
+        }
+        if (mPriority[left] > mPriority[right]) {
+            mRight[left] = merge(mRight[left], right);
+            pull(left);
+            return left;
+        }
+        mLeft[right] = merge(left, mLeft[right]);
+        pull(right);
+        return right;
+    }
+
+    /**
+     * Brings the index up to date with counts read again from the source, when what changed is not
+     * known. Sections added or removed at the end are inserted or removed one by one, then one walk
+     * over the treap compares every count and sets those that changed, without rebuilding it.
+     */
+    public void update(int[] counts) {
+        while (getSectionCount() > counts.length) {
+            removeSection(getSectionCount() - 1);
+        }
+        final int kept = getSectionCount();
+        for (int i = kept; i < counts.length; i++) {
+            insertSection(i, counts[i]);
+        }
+        updateCounts(mRoot, counts, 0);
+    }
+
+    //sets the counts of the subtree whose first section is first, by one walk over the treap
+    private int updateCounts(int node, int[] counts, int first) {
+        if (node == NONE) {
+            return first;
+        }
+        final int section = updateCounts(mLeft[node], counts, first);
+        if (counts[section] != mCounts[node]) {
+            mCounts[node] = counts[section];
+            mCachedSection = -1;
+        }
+        final int next = updateCounts(mRight[node], counts, section + 1);
+        pull(node);
+        return next;
+    }
+}
@@ -0,0 +1,324 @@
+package com.sarahlensing.staggeredgridview.engine;
+
+import com.sarahlensing.staggeredgridview.ItemSize;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+/**
+ * Places items one after another against a skyline: the rects that currently make up the
+ * ending edge of the content. Each item goes into the largest gap along the scrolling axis,
+ * at its own size, and section headers span the whole grid after everything placed before them.
+ * Items are already as wide as their size, so the only span that changes anything is
+ * {@link #FULL_SPAN}: such an item is stretched across the grid after everything before it,
+ * leveling the skyline in one pass over it. This is the strategy the grid uses unless told
+ * otherwise.
+ */
+public class SkylinePlacementStrategy implements PlacementStrategy {
+    private GridGeometry mGeometry;
+    private boolean mVertical;
+    private int mItemMargin;
+
+    private ArrayList<GridRect> mPosRects = new ArrayList<GridRect>();
+
+    private int mNextLeft;
+    private int mNextTop;
+
+    //the items after the one placed last, unknown after the skyline was restored
+    private UpcomingItems mUpcoming;
+
+    private final Comparator<GridRect> mEndComparator = new Comparator<GridRect>() {
+        @Override
+        public int compare(GridRect r1, GridRect r2) {
+            if (mVertical) {
+                return r1.bottom - r2.bottom;
+            }
+            return r1.right - r2.right;
+        }
+    };
+
+    @Override
+    public void start(GridGeometry geometry) {
+        mGeometry = geometry;
+        mVertical = geometry.vertical;
+        mItemMargin = geometry.itemMargin;
+        mPosRects = new ArrayList<GridRect>();
+        mUpcoming = null;
+    }
+
+    @Override
+    public GridRect place(ItemSize size, boolean isSection, int span, UpcomingItems upcoming) {
+        mUpcoming = upcoming;
+        if (span == FULL_SPAN && !isSection) {
+            return placeAcross(size);
+        }
+        final int itemWidth = size.width;
+        final int itemHeight = size.height;
+
+        computeNextPoint(mVertical ? itemWidth : itemHeight, isSection);
+        final int itemLeft = mNextLeft;
+        final int itemRight = itemLeft + itemWidth;
+        final int itemTop = mNextTop;
+        final int itemBottom = itemTop + itemHeight;
+
+        GridRect posRect = posRectFor(itemLeft, itemTop, itemRight, itemBottom, isSection);
+        updatePosRects(posRect);
+
+        if (isSection) {
+            return new GridRect(itemLeft, itemTop, itemRight, itemBottom);
+        }
+        return posRect;
+    }
+
+    private GridRect placeAcross(ItemSize size) {
+        int start = mVertical ? mGeometry.getBeginningTop() : mGeometry.getBeginningLeft();
+        for (int i = 0; i < mPosRects.size(); i++) {
+            start = Math.max(start, mPosRects.get(i).end(mVertical) + mItemMargin);
+        }
+        final GridRect rect;
+        if (mVertical) {
+            rect = new GridRect(mGeometry.getBeginningLeft(), start, mGeometry.getEndingRight(), start + size.height);
+        }
+        else {
+            rect = new GridRect(start, mGeometry.getBeginningTop(), start + size.width, mGeometry.getEndingBottom());
+        }
+        //nothing placed before the item can reach past it any more
+        mPosRects = new ArrayList<GridRect>();
+        mPosRects.add(rect);
+        return rect;
+    }
+
+    /**
+     * Items go after the end of some skyline rect, except while the first row (column when
+     * scrolling horizontally) still has room for the next item, which then goes at the
+     * beginning. When the next item is not known yet any room at all counts.
+     */
+    @Override
+    public int getFrontier() {
+        if (mPosRects.size() == 0) {
+            return Integer.MIN_VALUE;
+        }
+        final GridRect lastPosRect = mPosRects.get(mPosRects.size() - 1);
+        final int room = mVertical ? mGeometry.getEndingRight() - lastPosRect.right :
+                mGeometry.getEndingBottom() - lastPosRect.bottom;
+        if (room > 0) {
+            if (mUpcoming == null) {
+                return mVertical ? mGeometry.getBeginningTop() : mGeometry.getBeginningLeft();
+            }
+            //sections and whatever follows the last item go after everything anyway
+            if (mUpcoming.getCount() > 0 && mUpcoming.getItemSpan(0) != FULL_SPAN) {
+                final ItemSize next = mUpcoming.getItemSize(0);
+                if (room >= (mVertical ? next.width : next.height)) {
+                    return mVertical ? mGeometry.getBeginningTop() : mGeometry.getBeginningLeft();
+                }
+            }
+        }
+        int frontier = Integer.MAX_VALUE;
+        for (int i = 0; i < mPosRects.size(); i++) {
+            frontier = Math.min(frontier, mPosRects.get(i).end(mVertical));
+        }
+        return frontier + mItemMargin;
+    }
+
+    @Override
+    public boolean hasPendingPlacements() {
+        return false;
+    }
+
+    @Override
+    public ArrayList<GridRect> getSkyline() {
+        return new ArrayList<GridRect>(mPosRects);
+    }
+
+    @Override
+    public void restoreSkyline(ArrayList<GridRect> skyline) {
+        mPosRects = new ArrayList<GridRect>(skyline);
+        mUpcoming = null;
+    }
+
+    @Override
+    public int[] getKey() {
+        return new int[] {1};
+    }
+
+    //is actually nextBottom if vertical so consider better variable naming
+    private boolean ensureAvailableSpace(int nextLeft, int nextTop, int itemSpace) {
+        int clearedSpace = 0;
+        int index = 0;
+
+        if (mPosRects.size() == 0) { //we have space because its the first item we are laying out
+            return true;
+        }
+        boolean hadClearedSpaceBefore = false; //because we need consecutive space
+        while (clearedSpace < itemSpace && index < mPosRects.size()) {
+            GridRect rect = mPosRects.get(index);
+            if (mVertical) {
+                if (rect.left >= nextLeft) {
+                    if (rect.bottom < nextTop) {
+                        clearedSpace += rect.width() + mItemMargin;
+                        hadClearedSpaceBefore = true;
+                    }
+                    else if (hadClearedSpaceBefore) {
+                        clearedSpace = 0;
+                    }
+                }
+            }
+            else {
+                if (rect.top >= nextTop) {
+                    if (rect.right < nextLeft) {
+                        clearedSpace += rect.height() + mItemMargin;
+                        hadClearedSpaceBefore = true;
+                    }
+                    else if (hadClearedSpaceBefore) {
+                        clearedSpace = 0;
+                    }
+                }
+            }
+            index++;
+        }
+        return clearedSpace >= itemSpace;
+    }
+
+    private ArrayList<GridRect> sortedRects() {
+        ArrayList<GridRect> sorted = new ArrayList<GridRect>(mPosRects);
+        Collections.sort(sorted, mEndComparator);
+        return sorted;
+    }
+
+    private void setNextPoint(int left, int top) {
+        mNextLeft = left;
+        mNextTop = top;
+    }
+
+    private void computeNextPoint(int itemSpace, boolean isSection) {
+        if (mPosRects.size() == 0) {
+            setNextPoint(mGeometry.getBeginningLeft(), mGeometry.getBeginningTop());
+            return;
+        }
+        //the skyline does not change while looking for a spot, so sort it once
+        final ArrayList<GridRect> sorted = sortedRects();
+        final GridRect lastSorted = sorted.get(sorted.size() - 1);
+        final GridRect lastPosRect = mPosRects.get(mPosRects.size() - 1);
+        if (mVertical) {
+            if (isSection) {
+                setNextPoint(mGeometry.getBeginningLeft(), lastSorted.bottom + mItemMargin);
+                return;
+            }
+            //not a lot of pos rects yet so just get next space to right
+            if (mGeometry.getEndingRight() - lastPosRect.right >= itemSpace) {
+                setNextPoint(lastPosRect.right + mItemMargin, mGeometry.getBeginningTop());
+                return;
+            }
+            for (GridRect rect : sorted) {
+                if (ensureAvailableSpace(rect.left, rect.bottom + mItemMargin, itemSpace)) {
+                    setNextPoint(rect.left, rect.bottom + mItemMargin);
+                    return;
+                }
+            }
+            //ensures that scenario |-___| where rect width is -- places the rect at beginning left
+            for (GridRect anchorRect : sorted) {
+                for (GridRect rect : sorted) {
+                    if (ensureAvailableSpace(rect.left, anchorRect.bottom + mItemMargin, itemSpace)) {
+                        setNextPoint(rect.left, rect.bottom + mItemMargin);
+                        return;
+                    }
+                }
+            }
+            setNextPoint(mGeometry.getBeginningLeft(), lastSorted.bottom + mItemMargin);
+        }
+        else {
+            if (isSection) {
+                setNextPoint(lastSorted.right + mItemMargin, mGeometry.getBeginningTop());
+                return;
+            }
+            //not a lot of pos rects yet so just get next space below
+            if (mGeometry.getEndingBottom() - lastPosRect.bottom >= itemSpace) {
+                setNextPoint(mGeometry.getBeginningLeft(), lastPosRect.bottom + mItemMargin);
+                return;
+            }
+            for (GridRect rect : sorted) {
+                if (ensureAvailableSpace(rect.right + mItemMargin, rect.top, itemSpace)) {
+                    setNextPoint(rect.right + mItemMargin, rect.top);
+                    return;
+                }
+            }
+            setNextPoint(lastSorted.right + mItemMargin, mGeometry.getBeginningTop());
+        }
+    }
+
+    private ArrayList<GridRect> calculateIrrelevantRects(GridRect rect) {
+        ArrayList<GridRect> ret = new ArrayList<GridRect>();
+        final int rectStart = mVertical ? rect.left : rect.top;
+        final int rectEnd = mVertical ? rect.right : rect.bottom;
+
+        for (int index = 0; index < mPosRects.size(); index++) {
+            GridRect potentialIrrelevant = mPosRects.get(index);
+            final int lastRectStart = mVertical ? potentialIrrelevant.left : potentialIrrelevant.top;
+            final int lastRectEnd = mVertical ? potentialIrrelevant.right : potentialIrrelevant.bottom;
+
+            if (lastRectStart >= rectStart && lastRectEnd <= rectEnd) {
+                ret.add(potentialIrrelevant);
+            }
+            else if (lastRectStart > rectEnd) {
+                break; //there are no more irrelevants bc we have accounted for rect's extent
+            }
+        }
+        return ret;
+    }
+
+    private int nextAddIndexForRect(GridRect rect) {
+        for (int i = 0; i < mPosRects.size(); i++) {
+            GridRect r = mPosRects.get(i);
+            if (mVertical ? rect.right <= r.right : rect.bottom <= r.bottom) {
+                return i;
+            }
+        }
+        return mPosRects.size();
+    }
+
+    private void trimAnyPosRectOverlap() {
+        for (int i = 0; i < mPosRects.size() - 1; i++) {
+            GridRect r1 = mPosRects.get(i);
+            GridRect r2 = mPosRects.get(i + 1);
+            if (mVertical && r2.left < r1.right) {
+                mPosRects.set(i + 1, new GridRect(r1.right + mItemMargin, r2.top, r2.right, r2.bottom));
+            }
+            else if (!mVertical && r2.top < r1.bottom) {
+                mPosRects.set(i + 1, new GridRect(r2.left, r1.bottom + mItemMargin, r2.right, r2.bottom));
+            }
+        }
+    }
+
+    private void updatePosRects(GridRect rect) {
+        final int addIndex;
+
+        //1) remove rects that rect will render irrelevant in next views position calculations
+        ArrayList<GridRect> irrelevantRects = calculateIrrelevantRects(rect);
+        if (irrelevantRects.size() > 0) {
+            addIndex = mPosRects.indexOf(irrelevantRects.get(0));
+            mPosRects.removeAll(irrelevantRects);
+        }
+        else {
+            addIndex = nextAddIndexForRect(rect);
+        }
+
+        // 2) add rect so can be used in future position calculations
+        mPosRects.add(addIndex, rect);
+
+        // 3) modify rects so that there is no overlap (ie. in case that one element takes whole height and then another takes half, modify whole element's top for future calculations
+        trimAnyPosRectOverlap();
+    }
+
+    private GridRect posRectFor(int itemLeft, int itemTop, int itemRight, int itemBottom, boolean isSection) {
+        if (isSection) {
+            if (mVertical) {
+                return new GridRect(mGeometry.getBeginningLeft(), itemTop,
+                        mGeometry.width - mGeometry.getBeginningLeft(), itemBottom);
+            }
+            return new GridRect(itemLeft, mGeometry.getBeginningTop(),
+                    itemRight, mGeometry.height - mGeometry.getBeginningTop());
+        }
+        return new GridRect(itemLeft, itemTop, itemRight, itemBottom);
+    }
+}
@@ -0,0 +1,233 @@
+package com.sarahlensing.staggeredgridview.engine;
+
+import com.sarahlensing.staggeredgridview.ItemSize;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JustifiedPlacementStrategyTest {
+    private static final int ROW_LENGTH = 200;
+    private static final int MARGIN = 6;
+    private static final GridGeometry VERTICAL = new GridGeometry(720, 1000, MARGIN, 12, 3, 12, 3, true);
+    private static final GridGeometry HORIZONTAL = new GridGeometry(1000, 720, MARGIN, 3, 12, 3, 12, false);
+
+    //the rest of section 0 of a source from some item on
+    private static class SourceItems implements PlacementStrategy.UpcomingItems {
+        private final ItemSource mSource;
+        private final int mFirst;
+
+        SourceItems(ItemSource source, int first) {
+            mSource = source;
+            mFirst = first;
+        }
+
+        @Override
+        public int getCount() {
+            return mSource.getItemCount(0) - mFirst;
+        }
+
+        @Override
+        public ItemSize getItemSize(int index) {
+            return mSource.getItemSize(0, mFirst + index);
+        }
+
+        @Override
+        public int getItemSpan(int index) {
+            return mSource.getItemSpan(0, mFirst + index);
+        }
+    }
+
+    private static TestItemSource source() {
+        return TestItemSource.random(19, true, new int[] {300, 1, 0, 250}, 300).setSectionSize(200, 40);
+    }
+
+    private static LayoutEngine engine(GridGeometry geometry, ItemSource source) {
+        LayoutEngine engine = new LayoutEngine();
+        engine.setPlacementStrategy(new JustifiedPlacementStrategy(ROW_LENGTH));
+        engine.start(geometry, source);
+        engine.ensurePlacedThrough(Integer.MAX_VALUE);
+        return engine;
+    }
+
+    private static int crossStart(GridRect rect, boolean vertical) {
+        return vertical ? rect.left : rect.top;
+    }
+
+    private static int crossEnd(GridRect rect, boolean vertical) {
+        return vertical ? rect.right : rect.bottom;
+    }
+
+    //consecutive single span items of a section beginning at the same place make up a row
+    private static ArrayList<List<Placement>> rows(List<Placement> placements, ItemSource source, boolean vertical) {
+        ArrayList<List<Placement>> rows = new ArrayList<List<Placement>>();
+        List<Placement> row = null;
+        for (Placement placement : placements) {
+            if (placement.isSection || source.getItemSpan(placement.section, placement.position) != 1) {
+                row = null;
+                continue;
+            }
+            if (row == null || row.get(0).section != placement.section ||
+                    row.get(0).rect.start(vertical) != placement.rect.start(vertical)) {
+                row = new ArrayList<Placement>();
+                rows.add(row);
+            }
+            row.add(placement);
+        }
+        return rows;
+    }
+
+    private static boolean endsSectionOrSpan(List<Placement> row, ItemSource source) {
+        final Placement last = row.get(row.size() - 1);
+        final int next = last.position + 1;
+        return next >= source.getItemCount(last.section) || source.getItemSpan(last.section, next) != 1;
+    }
+
+    @Test
+    public void rowsFillTheCrossAxis() {
+        for (GridGeometry geometry : new GridGeometry[] {VERTICAL, HORIZONTAL}) {
+            final boolean vertical = geometry.vertical;
+            final int crossBeginning = vertical ? geometry.getBeginningLeft() : geometry.getBeginningTop();
+            final int crossEnding = vertical ? geometry.getEndingRight() : geometry.getEndingBottom();
+            TestItemSource source = source();
+            ArrayList<List<Placement>> rows = rows(engine(geometry, source).getPlacements(), source, vertical);
+            assertTrue(rows.size() > 50);
+            for (List<Placement> row : rows) {
+                final int length = row.get(0).rect.end(vertical) - row.get(0).rect.start(vertical);
+                assertEquals(crossBeginning, crossStart(row.get(0).rect, vertical));
+                for (int i = 1; i < row.size(); i++) {
+                    assertEquals(row.toString(), crossEnd(row.get(i - 1).rect, vertical) + MARGIN,
+                            crossStart(row.get(i).rect, vertical));
+                    assertEquals(length, row.get(i).rect.end(vertical) - row.get(i).rect.start(vertical));
+                }
+
+                final int rowEnd = crossEnd(row.get(row.size() - 1).rect, vertical);
+                if (!endsSectionOrSpan(row, source)) {
+                    assertEquals(row.toString(), crossEnding, rowEnd);
+                }
+                else if (rowEnd != crossEnding) {
+                    //a last row that does not fill is not stretched, so it falls short
+                    assertEquals(row.toString(), ROW_LENGTH, length);
+                    assertTrue(row.toString(), rowEnd < crossEnding || row.size() == 1);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void itemsKeepTheirAspectRatio() {
+        TestItemSource source = source();
+        for (Placement placement : engine(VERTICAL, source).getPlacements()) {
+            if (placement.isSection) {
+                continue;
+            }
+            final ItemSize size = source.getItemSize(placement.section, placement.position);
+            final double ratio = (double) size.width / size.height;
+            //one pixel of rounding along each axis
+            assertEquals(placement.toString(), placement.rect.height() * ratio, placement.rect.width(), 1 + ratio);
+        }
+    }
+
+    @Test
+    public void spanningItemsGetARowOfTheirOwn() {
+        TestItemSource source = new TestItemSource(false);
+        source.add(0, 300, 200, 1).add(0, 300, 200, 1).add(0, 400, 100, 2).add(0, 300, 200, 1);
+        List<Placement> placements = engine(VERTICAL, source).getPlacements();
+        final GridRect across = placements.get(2).rect;
+        assertEquals(VERTICAL.getBeginningLeft(), across.left);
+        assertEquals(VERTICAL.getEndingRight(), across.right);
+        assertEquals(across.width() / 4, across.height());
+        //the row before is not stretched to meet it
+        assertEquals(ROW_LENGTH, placements.get(0).rect.height());
+        assertEquals(placements.get(0).rect.bottom + MARGIN, across.top);
+        assertEquals(across.bottom + MARGIN, placements.get(3).rect.top);
+    }
+
+    @Test
+    public void spansBelowOneAreSingleItems() {
+        TestItemSource single = new TestItemSource(false);
+        TestItemSource odd = new TestItemSource(false);
+        for (int i = 0; i < 6; i++) {
+            single.add(0, 200, 200, 1);
+            odd.add(0, 200, 200, i % 2 == 0 ? 0 : -2);
+        }
+        assertEquals(engine(VERTICAL, single).getPlacements().toString(),
+                engine(VERTICAL, odd).getPlacements().toString());
+
+        //a full span item still gets a row of its own
+        TestItemSource full = new TestItemSource(false);
+        full.add(0, 200, 200, 1).add(0, 400, 100, PlacementStrategy.FULL_SPAN);
+        final GridRect across = engine(VERTICAL, full).getPlacements().get(1).rect;
+        assertEquals(VERTICAL.getBeginningLeft(), across.left);
+        assertEquals(VERTICAL.getEndingRight(), across.right);
+    }
+
+    @Test
+    public void rowIsPendingUntilItsLastItemIsPlaced() {
+        TestItemSource source = new TestItemSource(false);
+        for (int i = 0; i < 9; i++) {
+            source.add(200, 200);
+        }
+        JustifiedPlacementStrategy strategy = new JustifiedPlacementStrategy(ROW_LENGTH);
+        strategy.start(VERTICAL);
+        assertFalse(strategy.hasPendingPlacements());
+        //rows of three 200 wide items come closest to the 684 across
+        for (int i = 0; i < 9; i++) {
+            strategy.place(source.getItemSize(0, i), false, 1, new SourceItems(source, i + 1));
+            assertEquals("after item " + i, i % 3 != 2, strategy.hasPendingPlacements());
+        }
+    }
+
+    @Test
+    public void checkpointsAreOnlyTakenBetweenRows() {
+        TestItemSource source = TestItemSource.random(31, false, new int[] {3000}, 300);
+        LayoutEngine engine = new LayoutEngine();
+        engine.setPlacementStrategy(new JustifiedPlacementStrategy(ROW_LENGTH));
+        engine.setPagedPlacementEnabled(true);
+        engine.start(VERTICAL, source);
+        engine.ensurePlacedThrough(Integer.MAX_VALUE);
+
+        final int[] data = engine.encodeCheckpoints(engine.getPlacedCount());
+        int checkpoints = 0;
+        int index = 1;
+        while (index < data.length) {
+            final int rawPosition = data[index + 2];
+            final int rectCount = data[index + 8];
+            //only the row end, with no frames of a broken row waiting
+            assertEquals(1, rectCount);
+            if (rawPosition > 0) {
+                final GridRect rect = engine.getPlacement(rawPosition).rect;
+                assertEquals(VERTICAL.getBeginningLeft(), rect.left);
+                assertTrue(rect.top > engine.getPlacement(rawPosition - 1).rect.top);
+            }
+            index += 9 + rectCount * 4;
+            checkpoints++;
+        }
+        assertTrue(checkpoints > 10);
+    }
+
+    @Test
+    public void restoredSkylineCarriesOnTheRow() {
+        TestItemSource source = TestItemSource.random(37, false, new int[] {100}, 300);
+        JustifiedPlacementStrategy strategy = new JustifiedPlacementStrategy(ROW_LENGTH);
+        strategy.start(VERTICAL);
+        for (int i = 0; i < 50; i++) {
+            strategy.place(source.getItemSize(0, i), false, source.getItemSpan(0, i), new SourceItems(source, i + 1));
+        }
+        JustifiedPlacementStrategy resumed = new JustifiedPlacementStrategy(ROW_LENGTH);
+        resumed.start(VERTICAL);
+        resumed.restoreSkyline(strategy.getSkyline());
+        assertEquals(strategy.hasPendingPlacements(), resumed.hasPendingPlacements());
+        assertEquals(strategy.getFrontier(), resumed.getFrontier());
+        for (int i = 50; i < 100; i++) {
+            final SourceItems upcoming = new SourceItems(source, i + 1);
+            assertEquals(strategy.place(source.getItemSize(0, i), false, source.getItemSpan(0, i), upcoming),
+                    resumed.place(source.getItemSize(0, i), false, source.getItemSpan(0, i), upcoming));
+        }
+    }
+}
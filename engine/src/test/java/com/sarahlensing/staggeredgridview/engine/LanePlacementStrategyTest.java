@@ -0,0 +1,140 @@
+package com.sarahlensing.staggeredgridview.engine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LanePlacementStrategyTest {
+    private static final int LANES = 3;
+    private static final int MARGIN = 10;
+
+    //600 across inside the padding and outer margins, so lanes are (600 - 2 * 10) / 3 = 193 across
+    private static final GridGeometry VERTICAL = new GridGeometry(640, 1000, MARGIN, 10, 5, 10, 5, true);
+    private static final GridGeometry HORIZONTAL = new GridGeometry(1000, 640, MARGIN, 5, 10, 5, 10, false);
+    private static final int LANE_SIZE = 193;
+
+    private static ArrayList<Placement> placeAll(GridGeometry geometry, TestItemSource source) {
+        LayoutEngine engine = new LayoutEngine();
+        engine.setPlacementStrategy(new LanePlacementStrategy(LANES));
+        engine.start(geometry, source);
+        engine.ensurePlacedThrough(Integer.MAX_VALUE);
+        return new ArrayList<Placement>(engine.getPlacements());
+    }
+
+    private static TestItemSource source() {
+        TestItemSource source = TestItemSource.random(13, true, new int[] {200, 3, 150}, 300)
+                .setSectionSize(300, 50);
+        //one item across every lane in the middle of the first section
+        source.add(0, 100, 50, PlacementStrategy.FULL_SPAN);
+        for (int i = 0; i < 20; i++) {
+            source.add(0, 120, 80, 1);
+        }
+        return source;
+    }
+
+    private static int crossStart(GridRect rect, boolean vertical) {
+        return vertical ? rect.left : rect.top;
+    }
+
+    private static int crossEnd(GridRect rect, boolean vertical) {
+        return vertical ? rect.right : rect.bottom;
+    }
+
+    @Test
+    public void itemsNeverOverlap() {
+        for (GridGeometry geometry : new GridGeometry[] {VERTICAL, HORIZONTAL}) {
+            ArrayList<Placement> placements = placeAll(geometry, source());
+            for (int i = 0; i < placements.size(); i++) {
+                final GridRect rect = placements.get(i).rect;
+                for (int j = i + 1; j < placements.size(); j++) {
+                    assertFalse(placements.get(i) + " overlaps " + placements.get(j),
+                            placements.get(j).rect.intersects(rect.left, rect.top, rect.right, rect.bottom));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void itemsFillTheLanesTheySpan() {
+        for (GridGeometry geometry : new GridGeometry[] {VERTICAL, HORIZONTAL}) {
+            final boolean vertical = geometry.vertical;
+            final int crossBeginning = vertical ? geometry.getBeginningLeft() : geometry.getBeginningTop();
+            TestItemSource source = source();
+            for (Placement placement : placeAll(geometry, source)) {
+                if (placement.isSection) {
+                    continue;
+                }
+                final int span = source.getItemSpan(placement.section, placement.position);
+                final int lanes = span == PlacementStrategy.FULL_SPAN ? LANES : span;
+                final int offset = crossStart(placement.rect, vertical) - crossBeginning;
+                assertEquals(placement.toString(), 0, offset % (LANE_SIZE + MARGIN));
+                final int firstLane = offset / (LANE_SIZE + MARGIN);
+                assertTrue(placement.toString(), firstLane + lanes <= LANES);
+                assertEquals(placement.toString(), lanes * LANE_SIZE + (lanes - 1) * MARGIN,
+                        crossEnd(placement.rect, vertical) - crossStart(placement.rect, vertical));
+            }
+        }
+    }
+
+    @Test
+    public void itemsKeepTheirAspectRatioAcrossALane() {
+        TestItemSource source = new TestItemSource(false);
+        source.add(386, 200).add(193, 50).add(0, 70);
+        ArrayList<Placement> placements = placeAll(VERTICAL, source);
+        assertEquals(100, placements.get(0).rect.height());
+        assertEquals(50, placements.get(1).rect.height());
+        //nothing to scale by, so the length is kept
+        assertEquals(70, placements.get(2).rect.height());
+    }
+
+    @Test
+    public void itemsGoIntoTheLaneEndingClosestToTheBeginning() {
+        TestItemSource source = new TestItemSource(false);
+        source.add(193, 300).add(193, 100).add(193, 200).add(193, 50).add(193, 50);
+        ArrayList<Placement> placements = placeAll(VERTICAL, source);
+        final int top = VERTICAL.getBeginningTop();
+        final int left = VERTICAL.getBeginningLeft();
+        assertEquals(new GridRect(left, top, left + 193, top + 300), placements.get(0).rect);
+        assertEquals(new GridRect(left + 203, top, left + 396, top + 100), placements.get(1).rect);
+        assertEquals(new GridRect(left + 406, top, left + 599, top + 200), placements.get(2).rect);
+        //the second lane ends first, then again after the item put into it
+        assertEquals(new GridRect(left + 203, top + 110, left + 396, top + 160), placements.get(3).rect);
+        assertEquals(new GridRect(left + 203, top + 170, left + 396, top + 220), placements.get(4).rect);
+    }
+
+    @Test
+    public void sectionHeadersBeginAfterEveryLane() {
+        for (GridGeometry geometry : new GridGeometry[] {VERTICAL, HORIZONTAL}) {
+            int furthest = Integer.MIN_VALUE;
+            for (Placement placement : placeAll(geometry, source())) {
+                if (placement.isSection) {
+                    assertTrue(placement.toString(), placement.rect.start(geometry.vertical) >= furthest);
+                }
+                furthest = Math.max(furthest, placement.rect.end(geometry.vertical));
+            }
+        }
+    }
+
+    @Test
+    public void restoredSkylinePlacesTheSame() {
+        TestItemSource source = source();
+        LanePlacementStrategy strategy = new LanePlacementStrategy(LANES);
+        strategy.start(VERTICAL);
+        LanePlacementStrategy resumed = new LanePlacementStrategy(LANES);
+        resumed.start(VERTICAL);
+        for (int i = 0; i < 100; i++) {
+            strategy.place(source.getItemSize(0, i), false, source.getItemSpan(0, i), null);
+            assertFalse(strategy.hasPendingPlacements());
+        }
+        resumed.restoreSkyline(strategy.getSkyline());
+        assertEquals(strategy.getFrontier(), resumed.getFrontier());
+        for (int i = 100; i < 200; i++) {
+            assertEquals(strategy.place(source.getItemSize(0, i), false, source.getItemSpan(0, i), null),
+                    resumed.place(source.getItemSize(0, i), false, source.getItemSpan(0, i), null));
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.sarahlensing.staggeredgridview.engine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+import static com.sarahlensing.staggeredgridview.engine.PlacementCacheTest.placeAll;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LayoutEngineTest {
+    private static final GridGeometry VERTICAL = new GridGeometry(600, 1000, 8, 0, 0, 0, 0, true);
+    private static final GridGeometry HORIZONTAL = new GridGeometry(1000, 600, 8, 0, 0, 0, 0, false);
+
+    private static final Comparator<Placement> RAW_ORDER = new Comparator<Placement>() {
+        @Override
+        public int compare(Placement lhs, Placement rhs) {
+            return lhs.rawPosition - rhs.rawPosition;
+        }
+    };
+
+    private static PlacementStrategy[] strategies() {
+        return new PlacementStrategy[] {new SkylinePlacementStrategy(), new LanePlacementStrategy(3),
+                new JustifiedPlacementStrategy(250)};
+    }
+
+    private static TestItemSource source(boolean hasSections) {
+        return TestItemSource.random(3, hasSections, hasSections ? new int[] {40, 0, 700, 5, 300} : new int[] {1200}, 300)
+                .setSectionSize(100, 40);
+    }
+
+    private static LayoutEngine engine(GridGeometry geometry, ItemSource source, PlacementStrategy strategy,
+                                       boolean paged) {
+        LayoutEngine engine = new LayoutEngine();
+        engine.setPlacementStrategy(strategy);
+        engine.setPagedPlacementEnabled(paged);
+        engine.start(geometry, source);
+        return engine;
+    }
+
+    private static ArrayList<Placement> sorted(ArrayList<Placement> placements) {
+        Collections.sort(placements, RAW_ORDER);
+        return placements;
+    }
+
+    @Test
+    public void firstRowIsPlacedPastALongFirstItem() {
+        TestItemSource source = new TestItemSource(false);
+        source.add(400, 5000).add(400, 100).add(100, 100);
+        LayoutEngine engine = new LayoutEngine();
+        engine.start(new GridGeometry(1000, 2000, 0, 0, 0, 0, 0, true), source);
+        engine.ensurePlacedThrough(2000);
+
+        ArrayList<Placement> visible = new ArrayList<Placement>();
+        engine.getPlacementsInRange(0, 2000, visible);
+        assertEquals(3, visible.size());
+    }
+
+    @Test
+    public void lazyPlacementHasEverythingBeforeTheRequestedEnd() {
+        for (GridGeometry geometry : new GridGeometry[] {VERTICAL, HORIZONTAL}) {
+            for (boolean hasSections : new boolean[] {false, true}) {
+                for (int s = 0; s < strategies().length; s++) {
+                    TestItemSource source = source(hasSections);
+                    ArrayList<GridRect> reference = placeAll(engine(geometry, source, strategies()[s], false));
+                    for (int end = 0; end < 60000; end += 7919) {
+                        LayoutEngine lazy = engine(geometry, source, strategies()[s], false);
+                        lazy.ensurePlacedThrough(end);
+                        for (int i = 0; i < reference.size(); i++) {
+                            if (reference.get(i).start(geometry.vertical) <= end) {
+                                assertTrue("item " + i + " begins before " + end, i < lazy.getPlacedCount());
+                                assertEquals(reference.get(i), lazy.getPlacement(i).rect);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void pagedPlacementMatchesKeepingEverything() {
+        for (GridGeometry geometry : new GridGeometry[] {VERTICAL, HORIZONTAL}) {
+            for (int s = 0; s < strategies().length; s++) {
+                TestItemSource source = source(true);
+                LayoutEngine full = engine(geometry, source, strategies()[s], false);
+                LayoutEngine paged = engine(geometry, source, strategies()[s], true);
+                assertTrue(paged.isPagedPlacement());
+                paged.setResidentRange(0, 2000);
+
+                full.ensurePlacedThrough(Integer.MAX_VALUE);
+                paged.ensurePlacedThrough(Integer.MAX_VALUE);
+                assertEquals(full.getPlacedCount(), paged.getPlacedCount());
+                assertEquals(full.getContentEnd(), paged.getContentEnd());
+                assertTrue(paged.getPlacements().size() < full.getPlacements().size());
+
+                for (int start = 0; start < full.getContentEnd(); start += 5003) {
+                    paged.pageIn(start, start + 2000);
+                    ArrayList<Placement> expected = new ArrayList<Placement>();
+                    full.getPlacementsInRange(start, start + 2000, expected);
+                    ArrayList<Placement> found = new ArrayList<Placement>();
+                    paged.getPlacementsInRange(start, start + 2000, found);
+                    assertEquals(sorted(expected).toString(), sorted(found).toString());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void pagedOutPlacementsAreReplayedFromCheckpoints() {
+        TestItemSource source = source(true);
+        LayoutEngine full = engine(VERTICAL, source, null, false);
+        LayoutEngine paged = engine(VERTICAL, source, null, true);
+        paged.setResidentRange(0, 1000);
+        full.ensurePlacedThrough(Integer.MAX_VALUE);
+        paged.ensurePlacedThrough(Integer.MAX_VALUE);
+
+        final int count = full.getPlacedCount();
+        for (int i = count - 1; i >= 0; i -= 37) {
+            assertEquals(full.getPlacement(i).toString(), paged.getPlacement(i).toString());
+        }
+        //replaying leaves the frontier where it was
+        assertEquals(count, paged.getPlacedCount());
+        assertTrue(paged.isComplete());
+        assertNull(paged.getPlacement(count));
+    }
+
+    @Test
+    public void invalidatedPlacementMatchesPlacingAfresh() {
+        for (int s = 0; s < strategies().length; s++) {
+            TestItemSource source = source(true);
+            LayoutEngine engine = engine(VERTICAL, source, strategies()[s], false);
+            placeAll(engine);
+
+            source.setSize(2, 350, 200, 900);
+            engine.invalidateFrom(2, 350);
+            assertEquals(placeAll(engine(VERTICAL, source, strategies()[s], false)), placeAll(engine));
+
+            source.remove(0, 10);
+            engine.invalidateFrom(0, 10);
+            assertEquals(placeAll(engine(VERTICAL, source, strategies()[s], false)), placeAll(engine));
+        }
+    }
+
+    @Test
+    public void rearrangedItemsArePlacedAgainFromTheEarlierSlot() {
+        for (int s = 0; s < strategies().length; s++) {
+            TestItemSource source = source(true);
+            LayoutEngine engine = engine(VERTICAL, source, strategies()[s], true);
+            engine.setResidentRange(0, 3000);
+            engine.ensurePlacedThrough(20000);
+
+            source.move(2, 500, 120);
+            final int firstStale = engine.rearrangeFrom(2, 120);
+            assertTrue(firstStale <= engine.getRawPosition(2, 120));
+            assertEquals(firstStale, engine.getPlacedCount());
+
+            LayoutEngine reference = engine(VERTICAL, source, strategies()[s], false);
+            reference.ensurePlacedThrough(Integer.MAX_VALUE);
+            engine.ensurePlacedThrough(Integer.MAX_VALUE);
+            assertEquals(reference.getPlacedCount(), engine.getPlacedCount());
+            for (int i = 0; i < reference.getPlacedCount(); i += 13) {
+                assertEquals(reference.getPlacement(i).toString(), engine.getPlacement(i).toString());
+            }
+        }
+    }
+
+    @Test
+    public void appendedSectionsContinuePlacement() {
+        for (int s = 0; s < strategies().length; s++) {
+            TestItemSource source = source(true);
+            LayoutEngine engine = engine(VERTICAL, source, strategies()[s], false);
+            placeAll(engine);
+            assertTrue(engine.isComplete());
+
+            final int section = source.addSection();
+            for (int i = 0; i < 50; i++) {
+                source.add(section, 100 + i, 80 + i * 3, 1);
+            }
+            engine.appendSections();
+            assertFalse(engine.isComplete());
+            assertEquals(placeAll(engine(VERTICAL, source, strategies()[s], false)), placeAll(engine));
+            assertEquals(section + 1, engine.getPlacedSectionCount());
+        }
+    }
+
+    @Test
+    public void insertedAndRemovedSectionsMatchPlacingAfresh() {
+        for (int s = 0; s < strategies().length; s++) {
+            TestItemSource source = source(true);
+            LayoutEngine engine = engine(VERTICAL, source, strategies()[s], true);
+            engine.setResidentRange(0, 3000);
+            placeAll(engine);
+
+            source.insertSection(2);
+            for (int i = 0; i < 30; i++) {
+                source.add(2, 90 + i, 60 + i * 2, 1);
+            }
+            final int firstStale = engine.insertSection(2);
+            assertTrue(firstStale <= engine.getRawPosition(2, -1));
+            assertEquals(source.getSectionCount(), engine.getSectionCount());
+            assertEquals(placeAll(engine(VERTICAL, source, strategies()[s], false)), placeAll(engine));
+
+            source.removeSection(0);
+            assertEquals(0, engine.removeSection(0));
+            assertEquals(placeAll(engine(VERTICAL, source, strategies()[s], false)), placeAll(engine));
+            assertEquals(source.getSectionCount(), engine.getPlacedSectionCount());
+        }
+    }
+
+    @Test
+    public void restoredCheckpointsResumePlacement() {
+        TestItemSource source = source(true);
+        LayoutEngine first = engine(VERTICAL, source, null, true);
+        first.setResidentRange(0, 1000);
+        first.ensurePlacedThrough(30000);
+        final int[] key = first.getPlacementKey();
+        final int[] data = first.encodeCheckpoints(first.getPlacedCount());
+
+        LayoutEngine second = engine(VERTICAL, source, null, true);
+        second.setResidentRange(0, 1000);
+        assertTrue(second.restoreCheckpoints(key, data));
+        //resumed at the last checkpoint rather than the first item
+        assertTrue(second.getPlacedCount() > 0);
+        assertTrue(second.getPlacedCount() <= first.getPlacedCount());
+
+        LayoutEngine reference = engine(VERTICAL, source, null, false);
+        reference.ensurePlacedThrough(Integer.MAX_VALUE);
+        second.ensurePlacedThrough(Integer.MAX_VALUE);
+        assertEquals(reference.getPlacedCount(), second.getPlacedCount());
+        assertEquals(reference.getContentEnd(), second.getContentEnd());
+        for (int i = 0; i < reference.getPlacedCount(); i += 41) {
+            assertEquals(reference.getPlacement(i).toString(), second.getPlacement(i).toString());
+        }
+    }
+
+    @Test
+    public void checkpointsForOtherContentAreRefused() {
+        TestItemSource source = source(true);
+        LayoutEngine first = engine(VERTICAL, source, null, true);
+        first.ensurePlacedThrough(30000);
+        final int[] key = first.getPlacementKey();
+        final int[] data = first.encodeCheckpoints(first.getPlacedCount());
+
+        assertFalse(engine(HORIZONTAL, source, null, true).restoreCheckpoints(key, data));
+        assertFalse(engine(VERTICAL, source, new LanePlacementStrategy(3), true).restoreCheckpoints(key, data));
+        //without paging everything before them has to be placed anyway
+        assertFalse(engine(VERTICAL, source, null, false).restoreCheckpoints(key, data));
+
+        source.remove(2, 0);
+        assertFalse(engine(VERTICAL, source, null, true).restoreCheckpoints(key, data));
+    }
+}
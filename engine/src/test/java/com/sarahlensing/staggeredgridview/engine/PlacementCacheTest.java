@@ -0,0 +1,268 @@
+package com.sarahlensing.staggeredgridview.engine;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PlacementCacheTest {
+    private static final GridGeometry GEOMETRY = new GridGeometry(600, 1000, 8, 0, 0, 0, 0, true);
+
+    //engines in a test share a file, so each write is done before the next engine reads it
+    private static final Executor WRITE_NOW = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static TestItemSource source() {
+        return TestItemSource.random(5, false, new int[] {6000}, 300);
+    }
+
+    static ArrayList<GridRect> placeAll(LayoutEngine engine) {
+        engine.ensurePlacedThrough(Integer.MAX_VALUE);
+        ArrayList<GridRect> rects = new ArrayList<GridRect>();
+        for (int i = 0; i < engine.getPlacedCount(); i++) {
+            rects.add(engine.getPlacement(i).rect);
+        }
+        return rects;
+    }
+
+    private static ArrayList<GridRect> reference(ItemSource source) {
+        LayoutEngine engine = new LayoutEngine();
+        engine.start(GEOMETRY, source);
+        return placeAll(engine);
+    }
+
+    private LayoutEngine cachedEngine(File file) {
+        LayoutEngine engine = new LayoutEngine();
+        engine.setPlacementCacheExecutor(WRITE_NOW);
+        engine.setPlacementCache(file, 1);
+        return engine;
+    }
+
+    @Test
+    public void placementOnlyQueuesWritesToTheFile() throws Exception {
+        final File file = new File(mFolder.getRoot(), "placements");
+        TestItemSource source = source();
+        final ArrayList<Runnable> queued = new ArrayList<Runnable>();
+
+        LayoutEngine writer = new LayoutEngine();
+        writer.setPlacementCacheExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                queued.add(command);
+            }
+        });
+        writer.setPlacementCache(file, 1);
+        writer.start(GEOMETRY, source);
+        placeAll(writer);
+        writer.flushPlacementCache();
+        //opening, the periodic commits and the last one are all waiting
+        assertFalse(file.exists());
+        assertTrue(queued.size() > 3);
+
+        for (Runnable write : queued) {
+            write.run();
+        }
+        LayoutEngine reader = cachedEngine(file);
+        reader.start(GEOMETRY, source);
+        assertTrue(reader.isPlacementCacheOpen());
+        assertEquals(reference(source), placeAll(reader));
+    }
+
+    @Test
+    public void startingAgainWaitsForItsOwnQueuedWrites() throws Exception {
+        final File file = new File(mFolder.getRoot(), "placements");
+        TestItemSource source = source();
+
+        //the shared background thread
+        LayoutEngine engine = new LayoutEngine();
+        engine.setPlacementCache(file, 1);
+        engine.start(GEOMETRY, source);
+        placeAll(engine);
+        engine.start(GEOMETRY, source);
+        assertTrue(engine.isPlacementCacheOpen());
+        assertEquals(reference(source), placeAll(engine));
+    }
+
+    @Test
+    public void partlyPlacedItemsAreReadBackAndPlacementCarriesOn() throws Exception {
+        final File file = new File(mFolder.getRoot(), "placements");
+        TestItemSource source = source();
+
+        LayoutEngine first = cachedEngine(file);
+        first.start(GEOMETRY, source);
+        first.ensurePlacedThrough(20000);
+        assertFalse(first.isComplete());
+        final int placed = first.getPlacedCount();
+        first.flushPlacementCache();
+
+        LayoutEngine second = cachedEngine(file);
+        second.start(GEOMETRY, source);
+        assertTrue(second.isPlacementCacheOpen());
+        second.ensurePlacedThrough(20000);
+        //block bounds read from the cache are looser than the skyline, so may place a few more
+        assertTrue(second.getPlacedCount() >= placed);
+        assertEquals(reference(source), placeAll(second));
+        second.flushPlacementCache();
+
+        LayoutEngine third = cachedEngine(file);
+        third.start(GEOMETRY, source);
+        assertTrue(third.isPlacementCacheOpen());
+        assertEquals(reference(source), placeAll(third));
+    }
+
+    @Test
+    public void fileIsBroughtUpToDateAsPlacementAdvances() throws Exception {
+        final File file = new File(mFolder.getRoot(), "placements");
+        TestItemSource source = source();
+
+        LayoutEngine writer = cachedEngine(file);
+        writer.start(GEOMETRY, source);
+        while (writer.getPlacedCount() < 5000) {
+            writer.getPlacement(writer.getPlacedCount());
+        }
+
+        //never flushed, but everything up to the last commit can be read
+        LayoutEngine reader = cachedEngine(file);
+        reader.start(GEOMETRY, source);
+        assertTrue(reader.isPlacementCacheOpen());
+        assertEquals(reference(source), placeAll(reader));
+    }
+
+    @Test
+    public void changeRewritesTheFileFromTheChangedItem() throws Exception {
+        final File file = new File(mFolder.getRoot(), "placements");
+        TestItemSource source = source();
+
+        LayoutEngine first = cachedEngine(file);
+        first.start(GEOMETRY, source);
+        placeAll(first);
+
+        LayoutEngine second = cachedEngine(file);
+        second.start(GEOMETRY, source);
+        assertTrue(second.isPlacementCacheOpen());
+        second.ensurePlacedThrough(50000);
+        source.setSize(0, 1500, 250, 40);
+        second.invalidateFrom(0, 1500);
+        assertTrue(second.hasPlacementCache());
+        assertTrue(second.isWritingPlacementCache());
+        assertEquals(reference(source), placeAll(second));
+
+        LayoutEngine third = cachedEngine(file);
+        third.start(GEOMETRY, source);
+        assertTrue(third.isPlacementCacheOpen());
+        assertEquals(reference(source), placeAll(third));
+    }
+
+    @Test
+    public void removingItemsChangesTheKeyAndTheFileFollows() throws Exception {
+        final File file = new File(mFolder.getRoot(), "placements");
+        TestItemSource source = source();
+
+        LayoutEngine first = cachedEngine(file);
+        first.start(GEOMETRY, source);
+        placeAll(first);
+        source.remove(0, 3000);
+        first.invalidateFrom(0, 3000);
+        assertEquals(reference(source), placeAll(first));
+
+        LayoutEngine second = cachedEngine(file);
+        second.start(GEOMETRY, source);
+        assertTrue(second.isPlacementCacheOpen());
+        assertEquals(reference(source), placeAll(second));
+    }
+
+    @Test
+    public void rearrangedItemsAreNotWrittenToTheFile() throws Exception {
+        final File file = new File(mFolder.getRoot(), "placements");
+        TestItemSource source = source();
+
+        LayoutEngine first = cachedEngine(file);
+        first.start(GEOMETRY, source);
+        placeAll(first);
+
+        //shown in a new order while one is dragged, then dropped back where it was
+        source.move(0, 3000, 2000);
+        first.rearrangeFrom(0, 2000);
+        assertEquals(reference(source), placeAll(first));
+        first.flushPlacementCache();
+        source.move(0, 2000, 3000);
+
+        LayoutEngine second = cachedEngine(file);
+        second.start(GEOMETRY, source);
+        assertTrue(second.isPlacementCacheOpen());
+        assertEquals(reference(source), placeAll(second));
+
+        //or taken by the source, which the file also still describes up to the change
+        source.move(0, 3000, 2000);
+        second.rearrangeFrom(0, 2000);
+        placeAll(second);
+        second.flushPlacementCache();
+
+        LayoutEngine third = cachedEngine(file);
+        third.start(GEOMETRY, source);
+        assertTrue(third.isPlacementCacheOpen());
+        assertEquals(reference(source), placeAll(third));
+    }
+
+    @Test
+    public void pagingReplaysFromCheckpointsStoredWithTheCache() throws Exception {
+        final File file = new File(mFolder.getRoot(), "placements");
+        TestItemSource source = source();
+
+        LayoutEngine first = cachedEngine(file);
+        first.start(GEOMETRY, source);
+        placeAll(first);
+
+        LayoutEngine paged = cachedEngine(file);
+        paged.setPagedPlacementEnabled(true);
+        paged.setResidentRange(0, 3000);
+        paged.start(GEOMETRY, source);
+        assertTrue(paged.isPlacementCacheOpen());
+        paged.ensurePlacedThrough(Integer.MAX_VALUE);
+
+        final ArrayList<GridRect> reference = reference(source);
+        for (int i = 0; i < reference.size(); i += 997) {
+            assertEquals(reference.get(i), paged.getPlacement(i).rect);
+        }
+        //a change inside the cached items places the rest again from a stored checkpoint
+        source.setSize(0, 4000, 300, 60);
+        paged.invalidateFrom(0, 4000);
+        paged.ensurePlacedThrough(Integer.MAX_VALUE);
+        final ArrayList<GridRect> changed = reference(source);
+        for (int i = 0; i < changed.size(); i += 499) {
+            assertEquals(changed.get(i), paged.getPlacement(i).rect);
+        }
+    }
+
+    @Test
+    public void fileForOtherContentIsStartedOver() throws Exception {
+        final File file = new File(mFolder.getRoot(), "placements");
+        LayoutEngine first = cachedEngine(file);
+        first.start(GEOMETRY, source());
+        placeAll(first);
+
+        LayoutEngine otherVersion = new LayoutEngine();
+        otherVersion.setPlacementCache(file, 2);
+        otherVersion.start(GEOMETRY, source());
+        assertFalse(otherVersion.isPlacementCacheOpen());
+
+        LayoutEngine otherGeometry = cachedEngine(file);
+        otherGeometry.start(new GridGeometry(700, 1000, 8, 0, 0, 0, 0, true), source());
+        assertFalse(otherGeometry.isPlacementCacheOpen());
+        assertTrue(otherGeometry.isWritingPlacementCache());
+    }
+}
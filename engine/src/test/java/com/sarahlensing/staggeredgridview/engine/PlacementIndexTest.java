@@ -0,0 +1,137 @@
+package com.sarahlensing.staggeredgridview.engine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class PlacementIndexTest {
+    private static final Comparator<Placement> RAW_ORDER = new Comparator<Placement>() {
+        @Override
+        public int compare(Placement lhs, Placement rhs) {
+            return lhs.rawPosition - rhs.rawPosition;
+        }
+    };
+
+    //items in three columns going down, with every so often one spanning far past the rest
+    private static ArrayList<Placement> placements(Random random, int count, boolean vertical) {
+        ArrayList<Placement> placements = new ArrayList<Placement>();
+        int[] columnEnds = new int[3];
+        for (int i = 0; i < count; i++) {
+            final int column = random.nextInt(3);
+            final int start = columnEnds[column];
+            final int length = random.nextInt(20) == 0 ? 5000 + random.nextInt(5000) : 50 + random.nextInt(200);
+            final int cross = column * 100;
+            final GridRect rect = vertical ? new GridRect(cross, start, cross + 90, start + length) :
+                    new GridRect(start, cross, start + length, cross + 90);
+            placements.add(new Placement(i, 0, i, false, rect));
+            columnEnds[column] = start + length + 10;
+        }
+        return placements;
+    }
+
+    private static ArrayList<Placement> linearInRange(ArrayList<Placement> placements, int start, int end, boolean vertical) {
+        ArrayList<Placement> out = new ArrayList<Placement>();
+        for (Placement placement : placements) {
+            if (placement.rect.start(vertical) < end && placement.rect.end(vertical) > start) {
+                out.add(placement);
+            }
+        }
+        return out;
+    }
+
+    private static void assertMatchesLinearScan(PlacementIndex index, ArrayList<Placement> placements,
+                                                Random random, boolean vertical) {
+        final int contentEnd = 100000;
+        for (int i = 0; i < 200; i++) {
+            final int start = random.nextInt(contentEnd);
+            final int end = start + random.nextInt(3000);
+            ArrayList<Placement> found = new ArrayList<Placement>();
+            index.getInRange(start, end, found);
+            Collections.sort(found, RAW_ORDER);
+            assertEquals(linearInRange(placements, start, end, vertical), found);
+
+            final int along = random.nextInt(contentEnd);
+            final int across = random.nextInt(300);
+            final int x = vertical ? across : along;
+            final int y = vertical ? along : across;
+            Placement expected = null;
+            for (Placement placement : placements) {
+                if (placement.rect.contains(x, y)) {
+                    expected = placement;
+                }
+            }
+            Placement hit = index.itemAt(x, y);
+            if (expected == null) {
+                assertNull(hit);
+            }
+            else {
+                //columns never overlap, so at most one frame contains the point
+                assertSame(expected, hit);
+            }
+        }
+    }
+
+    @Test
+    public void rebuiltIndexMatchesLinearScan() {
+        for (boolean vertical : new boolean[] {true, false}) {
+            Random random = new Random(7);
+            ArrayList<Placement> placements = placements(random, 1500, vertical);
+            PlacementIndex index = new PlacementIndex(vertical);
+            index.rebuild(placements);
+            assertMatchesLinearScan(index, placements, random, vertical);
+        }
+    }
+
+    @Test
+    public void indexBuiltByAddingOutOfOrderMatchesLinearScan() {
+        for (boolean vertical : new boolean[] {true, false}) {
+            Random random = new Random(11);
+            ArrayList<Placement> placements = placements(random, 1500, vertical);
+            ArrayList<Placement> shuffled = new ArrayList<Placement>(placements);
+            Collections.shuffle(shuffled, random);
+            PlacementIndex index = new PlacementIndex(vertical);
+            for (Placement placement : shuffled) {
+                index.add(placement);
+            }
+            assertMatchesLinearScan(index, placements, random, vertical);
+        }
+    }
+
+    @Test
+    public void longFirstItemStillFoundAfterManyShortOnes() {
+        PlacementIndex index = new PlacementIndex(true);
+        Placement banner = new Placement(0, 0, 0, false, new GridRect(0, 0, 100, 100000));
+        index.add(banner);
+        for (int i = 1; i < 1000; i++) {
+            index.add(new Placement(i, 0, i, false, new GridRect(100, i * 100, 200, i * 100 + 90)));
+        }
+        assertSame(banner, index.itemAt(50, 99999));
+        assertEquals(500, index.itemAt(150, 50000).rawPosition);
+        assertNull(index.itemAt(150, 50095));
+
+        ArrayList<Placement> found = new ArrayList<Placement>();
+        index.getInRange(50000, 50100, found);
+        Collections.sort(found, RAW_ORDER);
+        assertEquals(2, found.size());
+        assertSame(banner, found.get(0));
+        assertEquals(500, found.get(1).rawPosition);
+    }
+
+    @Test
+    public void clearedIndexFindsNothing() {
+        PlacementIndex index = new PlacementIndex(true);
+        index.rebuild(placements(new Random(3), 100, true));
+        index.clear();
+        ArrayList<Placement> found = new ArrayList<Placement>();
+        index.getInRange(0, Integer.MAX_VALUE, found);
+        assertEquals(0, found.size());
+        assertNull(index.itemAt(10, 10));
+    }
+}
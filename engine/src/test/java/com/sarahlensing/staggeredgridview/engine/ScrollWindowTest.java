@@ -0,0 +1,122 @@
+package com.sarahlensing.staggeredgridview.engine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScrollWindowTest {
+    private static final GridGeometry VERTICAL = new GridGeometry(600, 1000, 8, 0, 0, 0, 0, true);
+
+    //bound placements in a list, one raw position may refuse to be unbound
+    private static class TestItems implements ScrollWindow.Items {
+        final ArrayList<Placement> bound = new ArrayList<Placement>();
+        int kept = -1;
+        int phase = -1;
+
+        @Override
+        public boolean isBound(int rawPosition) {
+            for (Placement placement : bound) {
+                if (placement.rawPosition == rawPosition) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void bind(Placement placement) {
+            assertFalse(isBound(placement.rawPosition));
+            bound.add(placement);
+        }
+
+        @Override
+        public int getBoundCount() {
+            return bound.size();
+        }
+
+        @Override
+        public GridRect getBoundRect(int index) {
+            return bound.get(index).rect;
+        }
+
+        @Override
+        public boolean unbind(int index) {
+            if (bound.get(index).rawPosition == kept) {
+                return false;
+            }
+            bound.remove(index);
+            return true;
+        }
+
+        @Override
+        public void beginPhase(int phase) {
+            assertEquals(-1, this.phase);
+            this.phase = phase;
+        }
+
+        @Override
+        public void endPhase(int phase) {
+            assertEquals(this.phase, phase);
+            this.phase = -1;
+        }
+    }
+
+    @Test
+    public void scrollingKeepsTheRangeAroundTheOffsetBound() {
+        for (boolean paged : new boolean[] {false, true}) {
+            TestItemSource source = TestItemSource.random(5, true, new int[] {300, 0, 400}, 300).setSectionSize(100, 40);
+            LayoutEngine engine = new LayoutEngine();
+            engine.setPagedPlacementEnabled(paged);
+            TestItems items = new TestItems();
+            ScrollWindow window = new ScrollWindow(engine, items);
+            window.setViewport(true, VERTICAL.getViewportLength(), VERTICAL.itemMargin, 1);
+            window.setResidentRange(0);
+            engine.start(VERTICAL, source);
+
+            int offset = 0;
+            for (int step = 0; step < 400; step++) {
+                final int next = window.clampOffset(offset + (step < 300 ? 457 : -1303));
+                assertTrue(next >= 0 && next <= Math.max(0, window.getMaxOffset()));
+                offset = next;
+                window.bindRange(offset, offset, offset + window.getAmountToLayout());
+                window.unbindOffscreen(offset);
+
+                final int amount = window.getAmountToLayout();
+                for (Placement placement : items.bound) {
+                    assertTrue(placement.rect.end(true) > offset - amount);
+                    assertTrue(placement.rect.start(true) < offset + amount);
+                }
+                ArrayList<Placement> expected = new ArrayList<Placement>();
+                engine.getPlacementsInRange(offset, offset + amount, expected);
+                for (Placement placement : expected) {
+                    assertTrue(placement + " at " + offset, items.isBound(placement.rawPosition));
+                }
+            }
+            //scrolled to the end and back
+            assertTrue(engine.isComplete());
+            assertEquals(0, offset);
+        }
+    }
+
+    @Test
+    public void itemsRefusingToUnbindStayBound() {
+        TestItemSource source = TestItemSource.random(7, false, new int[] {500}, 300);
+        LayoutEngine engine = new LayoutEngine();
+        TestItems items = new TestItems();
+        ScrollWindow window = new ScrollWindow(engine, items);
+        window.setViewport(true, VERTICAL.getViewportLength(), VERTICAL.itemMargin, 1);
+        engine.start(VERTICAL, source);
+        window.bindRange(0, 0, window.getAmountToLayout());
+        items.kept = items.bound.get(0).rawPosition;
+
+        final int offset = window.clampOffset(20000);
+        final int count = items.getBoundCount();
+        assertEquals(count - 1, window.unbindOffscreen(offset));
+        assertEquals(1, items.getBoundCount());
+        assertTrue(items.isBound(items.kept));
+    }
+}
@@ -0,0 +1,150 @@
+package com.sarahlensing.staggeredgridview.engine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class SectionIndexTest {
+    private static int[] randomCounts(Random random) {
+        //empty sections included, and counts that are not powers of two
+        int[] counts = new int[random.nextInt(40)];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = random.nextInt(4) == 0 ? 0 : random.nextInt(30);
+        }
+        return counts;
+    }
+
+    private static int size(int count, boolean hasHeaders) {
+        return hasHeaders ? count + 1 : count;
+    }
+
+    //compares the index against prefix sums taken one section at a time
+    private static void assertMatchesPrefixSums(SectionIndex index, int[] counts, boolean hasHeaders) {
+        assertEquals(counts.length, index.getSectionCount());
+        int start = 0;
+        for (int section = 0; section < counts.length; section++) {
+            assertEquals(counts[section], index.getItemCount(section));
+            assertEquals(start, index.getSectionStart(section));
+            final int first = hasHeaders ? -1 : 0;
+            for (int position = first; position < counts[section]; position++) {
+                final int rawPosition = start + (hasHeaders ? 1 : 0) + position;
+                assertEquals(rawPosition, index.getRawPosition(section, position));
+                assertEquals(section, index.getSection(rawPosition));
+                assertEquals(position, index.getPosition(rawPosition));
+            }
+            start += size(counts[section], hasHeaders);
+        }
+        assertEquals(start, index.getRawCount());
+        assertEquals(start, index.getSectionStart(counts.length));
+        assertEquals(LayoutEngine.INVALID_POSITION, index.getSection(start));
+        assertEquals(LayoutEngine.INVALID_POSITION, index.getSection(-1));
+        assertEquals(LayoutEngine.INVALID_POSITION, index.getPosition(start));
+    }
+
+    @Test
+    public void builtIndexMatchesPrefixSums() {
+        Random random = new Random(17);
+        for (int i = 0; i < 200; i++) {
+            final int[] counts = randomCounts(random);
+            final boolean hasHeaders = random.nextBoolean();
+            assertMatchesPrefixSums(new SectionIndex(counts, hasHeaders), counts, hasHeaders);
+        }
+    }
+
+    @Test
+    public void changedItemCountsMatchPrefixSums() {
+        Random random = new Random(23);
+        for (int i = 0; i < 50; i++) {
+            final int[] counts = randomCounts(random);
+            if (counts.length == 0) {
+                continue;
+            }
+            final boolean hasHeaders = random.nextBoolean();
+            SectionIndex index = new SectionIndex(counts, hasHeaders);
+            for (int change = 0; change < 20; change++) {
+                final int section = random.nextInt(counts.length);
+                counts[section] = random.nextInt(50);
+                index.setItemCount(section, counts[section]);
+                assertMatchesPrefixSums(index, counts, hasHeaders);
+            }
+        }
+    }
+
+    @Test
+    public void updateFollowsChangedCountsAndSectionsAddedOrRemoved() {
+        Random random = new Random(29);
+        for (boolean hasHeaders : new boolean[] {false, true}) {
+            int[] counts = randomCounts(random);
+            SectionIndex index = new SectionIndex(counts, hasHeaders);
+            for (int i = 0; i < 100; i++) {
+                int[] updated;
+                if (random.nextBoolean()) {
+                    //same number of sections, some counts changed in place
+                    updated = new int[counts.length];
+                    for (int section = 0; section < counts.length; section++) {
+                        updated[section] = random.nextInt(3) == 0 ? random.nextInt(30) : counts[section];
+                    }
+                }
+                else {
+                    //sections added or removed at the end as well
+                    updated = randomCounts(random);
+                }
+                index.update(updated);
+                assertMatchesPrefixSums(index, updated, hasHeaders);
+                counts = updated;
+            }
+        }
+    }
+
+    @Test
+    public void insertedAndRemovedSectionsMatchPrefixSums() {
+        Random random = new Random(31);
+        for (boolean hasHeaders : new boolean[] {false, true}) {
+            ArrayList<Integer> counts = new ArrayList<Integer>();
+            SectionIndex index = new SectionIndex(new int[0], hasHeaders);
+            for (int i = 0; i < 600; i++) {
+                //grows to a few hundred sections, then shrinks again
+                if (!counts.isEmpty() && random.nextInt(i < 400 ? 4 : 2) == 0) {
+                    final int section = random.nextInt(counts.size());
+                    counts.remove(section);
+                    index.removeSection(section);
+                }
+                else {
+                    final int section = random.nextInt(counts.size() + 1);
+                    final int count = random.nextInt(4) == 0 ? 0 : random.nextInt(30);
+                    counts.add(section, count);
+                    index.insertSection(section, count);
+                }
+                if (i % 50 == 0 || i == 599) {
+                    assertMatchesPrefixSums(index, toArray(counts), hasHeaders);
+                }
+            }
+            assertArrayEquals(toArray(counts), index.getItemCounts());
+        }
+    }
+
+    private static int[] toArray(ArrayList<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    @Test
+    public void indexKeepsItsOwnCopyOfTheCounts() {
+        int[] counts = new int[] {3, 0, 5};
+        SectionIndex index = new SectionIndex(counts, true);
+        counts[0] = 10;
+        assertMatchesPrefixSums(index, new int[] {3, 0, 5}, true);
+
+        int[] added = new int[] {3, 0, 5, 2};
+        index.update(added);
+        added[3] = 7;
+        assertMatchesPrefixSums(index, new int[] {3, 0, 5, 2}, true);
+    }
+}
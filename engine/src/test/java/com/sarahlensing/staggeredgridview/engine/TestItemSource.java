@@ -0,0 +1,117 @@
+package com.sarahlensing.staggeredgridview.engine;
+
+import com.sarahlensing.staggeredgridview.ItemSize;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Items with sizes and spans set by each test, or generated from a seed.
+ */
+class TestItemSource implements ItemSource {
+    private final boolean mHasSections;
+    private final ArrayList<ArrayList<ItemSize>> mSizes = new ArrayList<ArrayList<ItemSize>>();
+    private final ArrayList<ArrayList<Integer>> mSpans = new ArrayList<ArrayList<Integer>>();
+    private ItemSize mSectionSize = new ItemSize(0, 0);
+
+    TestItemSource(boolean hasSections) {
+        mHasSections = hasSections;
+        if (!hasSections) {
+            addSection();
+        }
+    }
+
+    /**
+     * @param counts Item count of every section, a single one for a grid without sections
+     * @param maxLength Longest item along either axis
+     */
+    static TestItemSource random(long seed, boolean hasSections, int[] counts, int maxLength) {
+        Random random = new Random(seed);
+        TestItemSource source = new TestItemSource(hasSections);
+        for (int section = 0; section < counts.length; section++) {
+            if (hasSections) {
+                source.addSection();
+            }
+            for (int i = 0; i < counts[section]; i++) {
+                source.add(section, 20 + random.nextInt(maxLength - 20), 20 + random.nextInt(maxLength - 20),
+                        random.nextInt(10) == 0 ? 2 : 1);
+            }
+        }
+        return source;
+    }
+
+    TestItemSource setSectionSize(int width, int height) {
+        mSectionSize = new ItemSize(width, height);
+        return this;
+    }
+
+    int addSection() {
+        mSizes.add(new ArrayList<ItemSize>());
+        mSpans.add(new ArrayList<Integer>());
+        return mSizes.size() - 1;
+    }
+
+    void insertSection(int section) {
+        mSizes.add(section, new ArrayList<ItemSize>());
+        mSpans.add(section, new ArrayList<Integer>());
+    }
+
+    void removeSection(int section) {
+        mSizes.remove(section);
+        mSpans.remove(section);
+    }
+
+    TestItemSource add(int section, int width, int height, int span) {
+        mSizes.get(section).add(new ItemSize(width, height));
+        mSpans.get(section).add(span);
+        return this;
+    }
+
+    TestItemSource add(int width, int height) {
+        return add(mSizes.size() - 1, width, height, 1);
+    }
+
+    void setSize(int section, int position, int width, int height) {
+        mSizes.get(section).set(position, new ItemSize(width, height));
+    }
+
+    void remove(int section, int position) {
+        mSizes.get(section).remove(position);
+        mSpans.get(section).remove(position);
+    }
+
+    void move(int section, int from, int to) {
+        mSizes.get(section).add(to, mSizes.get(section).remove(from));
+        mSpans.get(section).add(to, mSpans.get(section).remove(from));
+    }
+
+    @Override
+    public boolean hasSections() {
+        return mHasSections;
+    }
+
+    @Override
+    public int getSectionCount() {
+        return mSizes.size();
+    }
+
+    @Override
+    public int getItemCount(int section) {
+        return mSizes.get(section).size();
+    }
+
+    @Override
+    public ItemSize getSectionSize(int section) {
+        return mSectionSize;
+    }
+
+    @Override
+    public ItemSize getItemSize(int section, int position) {
+        return mSizes.get(section).get(position);
+    }
+
+    @Override
+    public int getItemSpan(int section, int position) {
+        return mSpans.get(section).get(position);
+    }
+}
@@ -0,0 +1,204 @@
+package com.sarahlensing.staggeredgridview;
+
+import android.os.Build;
+import android.support.v4.view.ViewCompat;
+import android.view.View;
+import android.view.animation.AnimationUtils;
+import android.view.animation.DecelerateInterpolator;
+import android.view.animation.Interpolator;
+
+import java.util.ArrayList;
+
+/**
+ * Runs the change animations of a {@link StaggeredGridView}. Views are already laid out where
+ * they end up; moves are played back through translation and items coming and going through
+ * alpha, properties that only touch the view's display list. One runnable posted on the
+ * animation timer drives every animated view, so a frame costs one pass over the views
+ * actually animating whatever the size of the change. Only runs on API 11 and up, where views
+ * have translation and alpha.
+ */
+final class GridItemAnimator implements Runnable {
+    static final boolean SUPPORTED = Build.VERSION.SDK_INT >= 11;
+
+    static final long DEFAULT_DURATION = 250;
+
+    /**
+     * Told when a view that was fading out is done, so it can be removed and recycled.
+     */
+    interface Callback {
+        void onDisappeared(View view);
+    }
+
+    private static final int MOVE = 0;
+    private static final int APPEAR = 1;
+    private static final int DISAPPEAR = 2;
+
+    private static class Entry {
+        View view;
+        int kind;
+        long startTime;
+        float fromX;
+        float fromY;
+    }
+
+    private final View mHost;
+    private final Callback mCallback;
+    private final Interpolator mInterpolator = new DecelerateInterpolator();
+    private final ArrayList<Entry> mEntries = new ArrayList<Entry>();
+    private long mDuration = DEFAULT_DURATION;
+    private boolean mScheduled;
+
+    GridItemAnimator(View host, Callback callback) {
+        mHost = host;
+        mCallback = callback;
+    }
+
+    long getDuration() {
+        return mDuration;
+    }
+
+    void setDuration(long duration) {
+        mDuration = duration;
+    }
+
+    boolean isRunning() {
+        return !mEntries.isEmpty();
+    }
+
+    /**
+     * Slides view from fromX, fromY pixels away from where it is laid out back into place.
+     */
+    void animateMove(View view, float fromX, float fromY) {
+        Entry entry = add(view, MOVE);
+        entry.fromX = fromX;
+        entry.fromY = fromY;
+        ViewCompat.setTranslationX(view, fromX);
+        ViewCompat.setTranslationY(view, fromY);
+    }
+
+    void animateAppear(View view) {
+        add(view, APPEAR);
+        ViewCompat.setAlpha(view, 0);
+    }
+
+    void animateDisappear(View view) {
+        add(view, DISAPPEAR);
+    }
+
+    private Entry add(View view, int kind) {
+        Entry entry = new Entry();
+        entry.view = view;
+        entry.kind = kind;
+        entry.startTime = AnimationUtils.currentAnimationTimeMillis();
+        mEntries.add(entry);
+        if (kind != MOVE) {
+            //fading a view with children in one layer keeps it from drawing every child translucent
+            ViewCompat.setLayerType(view, ViewCompat.LAYER_TYPE_HARDWARE, null);
+        }
+        return entry;
+    }
+
+    /**
+     * Starts driving the animations added, each from the time it was added.
+     */
+    void start() {
+        if (!mScheduled && !mEntries.isEmpty()) {
+            mScheduled = true;
+            ViewCompat.postOnAnimation(mHost, this);
+        }
+    }
+
+    /**
+     * Puts view back in place right away, as when it is recycled. A view that was fading out is
+     * not reported to the callback.
+     */
+    void end(View view) {
+        for (int i = mEntries.size() - 1; i >= 0; i--) {
+            Entry entry = mEntries.get(i);
+            if (entry.view == view) {
+                reset(entry);
+                mEntries.remove(i);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        mScheduled = false;
+        final long now = AnimationUtils.currentAnimationTimeMillis();
+        ArrayList<View> disappeared = null;
+        for (int i = mEntries.size() - 1; i >= 0; i--) {
+            Entry entry = mEntries.get(i);
+            final long elapsed = now - entry.startTime;
+            if (mDuration <= 0 || elapsed >= mDuration) {
+                reset(entry);
+                mEntries.remove(i);
+                if (entry.kind == DISAPPEAR) {
+                    if (disappeared == null) {
+                        disappeared = new ArrayList<View>();
+                    }
+                    disappeared.add(entry.view);
+                }
+                continue;
+            }
+            final float remaining = 1 - mInterpolator.getInterpolation((float) elapsed / mDuration);
+            switch (entry.kind) {
+                case MOVE:
+                    ViewCompat.setTranslationX(entry.view, entry.fromX * remaining);
+                    ViewCompat.setTranslationY(entry.view, entry.fromY * remaining);
+                    break;
+                case APPEAR:
+                    ViewCompat.setAlpha(entry.view, 1 - remaining);
+                    break;
+                case DISAPPEAR:
+                    ViewCompat.setAlpha(entry.view, remaining);
+                    break;
+            }
+        }
+        if (!mEntries.isEmpty()) {
+            mScheduled = true;
+            ViewCompat.postOnAnimation(mHost, this);
+        }
+        reportDisappeared(disappeared);
+    }
+
+    /**
+     * Puts every animated view in its final state right away, reporting the ones that were
+     * fading out.
+     */
+    void endAll() {
+        //views reported as gone may be recycled and end up back in here, so take a copy first
+        ArrayList<View> disappeared = null;
+        for (int i = 0; i < mEntries.size(); i++) {
+            Entry entry = mEntries.get(i);
+            reset(entry);
+            if (entry.kind == DISAPPEAR) {
+                if (disappeared == null) {
+                    disappeared = new ArrayList<View>();
+                }
+                disappeared.add(entry.view);
+            }
+        }
+        mEntries.clear();
+        reportDisappeared(disappeared);
+    }
+
+    private void reportDisappeared(ArrayList<View> disappeared) {
+        if (disappeared != null) {
+            for (int i = 0; i < disappeared.size(); i++) {
+                mCallback.onDisappeared(disappeared.get(i));
+            }
+        }
+    }
+
+    private static void reset(Entry entry) {
+        if (entry.kind == MOVE) {
+            ViewCompat.setTranslationX(entry.view, 0);
+            ViewCompat.setTranslationY(entry.view, 0);
+        }
+        else {
+            ViewCompat.setAlpha(entry.view, 1);
+            ViewCompat.setLayerType(entry.view, ViewCompat.LAYER_TYPE_NONE, null);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.sarahlensing.staggeredgridview;
+
+import android.util.Log;
+
+/**
+ * Debug logging for {@link StaggeredGridView}. Calls are guarded by {@link #DEBUG} at the call
+ * site, so with the flag off javac drops them along with the strings they would build, and
+ * nothing reaches logcat from the scroll path.
+ */
+final class GridLog {
+    static final boolean DEBUG = false;
+
+    private static final String TAG = "StaggeredGridView";
+
+    private GridLog() {
+    }
+
+    static void d(String message) {
+        Log.d(TAG, message);
+    }
+}
@@ -0,0 +1,262 @@
+package com.sarahlensing.staggeredgridview;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The checked items of a {@link StaggeredGridView}, as a bitset over raw positions. Selecting
+ * everything only flips the meaning of the bits, so it is O(1) whatever the number of items;
+ * bits then mark the items left out. With stable IDs the ID of every item with its bit set is
+ * kept with its raw position, so bits can be matched back up to their items after a data change.
+ */
+final class GridSelection {
+    /**
+     * Distance either side of an item's old raw position searched for its ID before falling
+     * back to one pass over every item
+     */
+    private static final int ID_SEARCH_WINDOW = 20;
+
+    private static final long[] EMPTY = new long[0];
+
+    /**
+     * Looks up items by raw position while matching IDs after a data change.
+     */
+    interface Items {
+        int getRawCount();
+
+        boolean isItem(int rawPosition);
+
+        long getItemId(int rawPosition);
+    }
+
+    private long[] mBits = EMPTY;
+    private int mBitCount;
+    private boolean mInverted;
+    private boolean mTrackIds;
+    private final HashMap<Long, Integer> mIds = new HashMap<Long, Integer>();
+
+    void setTrackIds(boolean trackIds) {
+        mTrackIds = trackIds;
+        if (!trackIds) {
+            mIds.clear();
+        }
+    }
+
+    boolean isSelected(int rawPosition) {
+        return get(rawPosition) != mInverted;
+    }
+
+    /**
+     * @param itemCount Number of items, not counting section headers
+     */
+    int getSelectedCount(int itemCount) {
+        return mInverted ? itemCount - mBitCount : mBitCount;
+    }
+
+    /**
+     * @param id Stable ID of the item, only read when IDs are tracked
+     */
+    void setSelected(int rawPosition, long id, boolean selected) {
+        final boolean set = selected != mInverted;
+        if (set == get(rawPosition)) {
+            return;
+        }
+        put(rawPosition, set);
+        if (mTrackIds) {
+            if (set) {
+                mIds.put(id, rawPosition);
+            }
+            else {
+                mIds.remove(id);
+            }
+        }
+    }
+
+    void selectAll() {
+        clear();
+        mInverted = true;
+    }
+
+    void clear() {
+        mBits = EMPTY;
+        mBitCount = 0;
+        mInverted = false;
+        mIds.clear();
+    }
+
+    /**
+     * Moves the bit at fromPosition to toPosition, shifting the ones in between by one, as when
+     * an item is dragged to a new place.
+     */
+    void move(int fromPosition, int toPosition) {
+        if (fromPosition == toPosition) {
+            return;
+        }
+        final boolean moved = get(fromPosition);
+        final int step = fromPosition < toPosition ? 1 : -1;
+        for (int i = fromPosition; i != toPosition; i += step) {
+            put(i, get(i + step));
+        }
+        put(toPosition, moved);
+        for (Map.Entry<Long, Integer> entry : mIds.entrySet()) {
+            final int raw = entry.getValue();
+            if (raw == fromPosition) {
+                entry.setValue(toPosition);
+            }
+            else if (step > 0 ? raw > fromPosition && raw <= toPosition : raw < fromPosition && raw >= toPosition) {
+                entry.setValue(raw - step);
+            }
+        }
+    }
+
+    /**
+     * Matches the selection back up to the items after a data change. With IDs tracked every
+     * item is looked for near its old raw position first; any not found there cost one pass over
+     * every item together, and items that are gone are dropped. Without IDs bits stay on their
+     * raw positions and those past the end are dropped.
+     */
+    void confirm(Items items) {
+        final int rawCount = items.getRawCount();
+        if (!mTrackIds) {
+            for (int raw = rawCount; raw < mBits.length * 64; raw++) {
+                put(raw, false);
+            }
+            return;
+        }
+        HashMap<Long, Integer> missing = null;
+        for (Map.Entry<Long, Integer> entry : mIds.entrySet()) {
+            final long id = entry.getKey();
+            final int raw = entry.getValue();
+            final int found = search(items, id, raw, rawCount);
+            if (found >= 0) {
+                entry.setValue(found);
+            }
+            else {
+                if (missing == null) {
+                    missing = new HashMap<Long, Integer>();
+                }
+                missing.put(id, raw);
+            }
+        }
+        if (missing != null) {
+            for (int raw = 0; raw < rawCount && !missing.isEmpty(); raw++) {
+                if (items.isItem(raw)) {
+                    final Long id = items.getItemId(raw);
+                    if (missing.remove(id) != null) {
+                        mIds.put(id, raw);
+                    }
+                }
+            }
+            for (Long gone : missing.keySet()) {
+                mIds.remove(gone);
+            }
+        }
+        mBits = EMPTY;
+        mBitCount = 0;
+        for (Integer raw : mIds.values()) {
+            put(raw, true);
+        }
+    }
+
+    private static int search(Items items, long id, int around, int rawCount) {
+        final int from = Math.max(0, around - ID_SEARCH_WINDOW);
+        final int to = Math.min(rawCount - 1, around + ID_SEARCH_WINDOW);
+        for (int raw = from; raw <= to; raw++) {
+            if (items.isItem(raw) && items.getItemId(raw) == id) {
+                return raw;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return The raw positions of every selected item, in order. Goes over every item.
+     */
+    int[] getSelectedPositions(Items items) {
+        final int rawCount = items.getRawCount();
+        ArrayList<Integer> selected = new ArrayList<Integer>();
+        for (int raw = 0; raw < rawCount; raw++) {
+            if (isSelected(raw) && items.isItem(raw)) {
+                selected.add(raw);
+            }
+        }
+        final int[] positions = new int[selected.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = selected.get(i);
+        }
+        return positions;
+    }
+
+    private boolean get(int rawPosition) {
+        final int word = rawPosition >> 6;
+        return word < mBits.length && (mBits[word] & (1L << rawPosition)) != 0;
+    }
+
+    private void put(int rawPosition, boolean set) {
+        final int word = rawPosition >> 6;
+        if (word >= mBits.length) {
+            if (!set) {
+                return;
+            }
+            long[] grown = new long[Math.max(word + 1, mBits.length * 2)];
+            System.arraycopy(mBits, 0, grown, 0, mBits.length);
+            mBits = grown;
+        }
+        final long mask = 1L << rawPosition;
+        final boolean was = (mBits[word] & mask) != 0;
+        if (was == set) {
+            return;
+        }
+        if (set) {
+            mBits[word] |= mask;
+            mBitCount++;
+        }
+        else {
+            mBits[word] &= ~mask;
+            mBitCount--;
+        }
+    }
+
+    long[] getBits() {
+        return mBits;
+    }
+
+    boolean isInverted() {
+        return mInverted;
+    }
+
+    long[] getIds() {
+        final long[] ids = new long[mIds.size()];
+        int i = 0;
+        for (Long id : mIds.keySet()) {
+            ids[i++] = id;
+        }
+        return ids;
+    }
+
+    int[] getIdPositions(long[] ids) {
+        final int[] positions = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            positions[i] = mIds.get(ids[i]);
+        }
+        return positions;
+    }
+
+    void restore(long[] bits, boolean inverted, long[] ids, int[] idPositions) {
+        clear();
+        mInverted = inverted;
+        if (bits != null) {
+            for (int word = 0; word < bits.length; word++) {
+                for (long rest = bits[word]; rest != 0; rest &= rest - 1) {
+                    put((word << 6) + Long.numberOfTrailingZeros(rest), true);
+                }
+            }
+        }
+        if (mTrackIds && ids != null && idPositions != null) {
+            for (int i = 0; i < ids.length && i < idPositions.length; i++) {
+                mIds.put(ids[i], idPositions[i]);
+            }
+        }
+    }
+}
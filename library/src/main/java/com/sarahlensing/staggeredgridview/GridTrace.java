@@ -0,0 +1,50 @@
+package com.sarahlensing.staggeredgridview;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * Named systrace sections for the phases of a {@link StaggeredGridView} layout, so traces
+ * attribute frame time to the grid's internals instead of showing anonymous time inside
+ * ViewGroup. Sections are only emitted on API 18 and up, where android.os.Trace exists.
+ */
+final class GridTrace {
+    static final String ON_LAYOUT = "SGV:onLayout";
+    static final String RELOAD_GRID = "SGV:reloadGrid";
+    static final String PLACEMENT = "SGV:placement";
+    static final String LAYOUT_GRID_ITEMS = "SGV:layoutGridItems";
+    static final String OBTAIN_VIEW = "SGV:obtainView";
+    static final String INFLATE = "SGV:inflate";
+    static final String REBIND = "SGV:rebind";
+    static final String RECYCLE_OFFSCREEN_ITEMS = "SGV:recycleOffscreenItems";
+
+    private static final boolean SUPPORTED = Build.VERSION.SDK_INT >= 18;
+
+    private GridTrace() {
+    }
+
+    static void beginSection(String name) {
+        if (SUPPORTED) {
+            Api18.beginSection(name);
+        }
+    }
+
+    static void endSection() {
+        if (SUPPORTED) {
+            Api18.endSection();
+        }
+    }
+
+    //keeps the reference to android.os.Trace out of classes loaded on older versions
+    @TargetApi(18)
+    private static class Api18 {
+        static void beginSection(String name) {
+            Trace.beginSection(name);
+        }
+
+        static void endSection() {
+            Trace.endSection();
+        }
+    }
+}
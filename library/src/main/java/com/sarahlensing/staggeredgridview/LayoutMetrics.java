@@ -0,0 +1,84 @@
+package com.sarahlensing.staggeredgridview;
+
+/**
+ * Work a {@link StaggeredGridView} did since the previous frame it drew, reported to its
+ * {@link StaggeredGridView.OnLayoutMetricsListener}. The same instance is reused for every
+ * frame, so copy out anything needed after the callback returns.
+ */
+public class LayoutMetrics {
+    /**
+     * Full layouts of the grid, from onLayout
+     */
+    public int layoutPasses;
+
+    /**
+     * Scroll steps, one per touch move or scroller frame that moved the content
+     */
+    public int scrollPasses;
+
+    /**
+     * Items placed by the layout engine, including items placed again after paging or a change
+     */
+    public int itemsPlaced;
+    public long placementNanos;
+
+    /**
+     * Time spent finding the placements that overlap the range being laid out
+     */
+    public long visibleQueryNanos;
+
+    /**
+     * Views the adapter created because there was no scrap view to reuse or it did not use it
+     */
+    public int viewsCreated;
+
+    /**
+     * Views the adapter rebound from a scrap view in the RecycleBin
+     */
+    public int viewsRecycled;
+
+    /**
+     * Requests for a scrap view that found none, indexed by view type. Section header view types
+     * follow the adapter's item view types.
+     */
+    public int[] scrapMisses = new int[0];
+
+    public int measureCalls;
+    public int layoutCalls;
+
+    /**
+     * Time spent in the adapter's getView and getSectionView
+     */
+    public long getViewNanos;
+
+    void setViewTypeCount(int viewTypeCount) {
+        if (scrapMisses.length != viewTypeCount) {
+            scrapMisses = new int[viewTypeCount];
+        }
+    }
+
+    void reset() {
+        layoutPasses = 0;
+        scrollPasses = 0;
+        itemsPlaced = 0;
+        placementNanos = 0;
+        visibleQueryNanos = 0;
+        viewsCreated = 0;
+        viewsRecycled = 0;
+        for (int i = 0; i < scrapMisses.length; i++) {
+            scrapMisses[i] = 0;
+        }
+        measureCalls = 0;
+        layoutCalls = 0;
+        getViewNanos = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "LayoutMetrics{layoutPasses=" + layoutPasses + " scrollPasses=" + scrollPasses +
+                " itemsPlaced=" + itemsPlaced + " placementNanos=" + placementNanos +
+                " visibleQueryNanos=" + visibleQueryNanos + " viewsCreated=" + viewsCreated +
+                " viewsRecycled=" + viewsRecycled + " measureCalls=" + measureCalls +
+                " layoutCalls=" + layoutCalls + " getViewNanos=" + getViewNanos + "}";
+    }
+}
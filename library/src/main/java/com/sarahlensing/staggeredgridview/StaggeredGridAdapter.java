@@ -1,6 +1,7 @@
 package com.sarahlensing.staggeredgridview;
 
 import android.widget.BaseAdapter;
+import com.sarahlensing.staggeredgridview.engine.PlacementStrategy;
 
 /**
  * Created by sarahlensing on 11/20/13.
@@ -8,8 +9,46 @@ import android.widget.BaseAdapter;
 
 
 public abstract class StaggeredGridAdapter extends BaseAdapter {
+    /**
+     * Span of an item that stretches across the whole grid, like a section header
+     */
+    public static final int SPAN_FULL = PlacementStrategy.FULL_SPAN;
 
     public abstract ItemSize getItemSize(int position);
+
+    /**
+     * The number of lanes the item at position takes up when the grid lays items out in lanes,
+     * or {@link #SPAN_FULL} to stretch it across the grid after everything before it, as for a
+     * banner. Items placed at their own size only look at SPAN_FULL, and justified rows give any
+     * item spanning more than one lane a row of its own.
+     *
+     * @return 1 unless overridden
+     */
+    public int getItemSpan(int position) {
+        return 1;
+    }
+
+    /**
+     * What accessibility services read out for the item at position. The grid exposes every item
+     * near the screen to them, including ones without a view, so this should not need one.
+     *
+     * @return null unless overridden, in which case the content description of the item's view is
+     *         used while it has one
+     */
+    public CharSequence getItemContentDescription(int position) {
+        return null;
+    }
+
+    /**
+     * Called when the user drops an item dragged to a new place, with reordering enabled on the
+     * grid. The grid already shows the new order, so the adapter only has to move the item in its
+     * data; there is no need to notify a change.
+     *
+     * @return true if the item was moved, false to put it back where it was
+     */
+    public boolean onItemMoved(int fromPosition, int toPosition) {
+        return false;
+    }
 }
 
 
@@ -19,4 +19,46 @@ public abstract class StaggeredGridSectionAdapter extends StaggeredGridAdapter {
     public View getView(int position, View convertView, ViewGroup parent) {
         return null;
     }
+
+    /**
+     * @return The type of view getSectionView creates for the header of a section, between 0 and
+     *         {@link #getSectionViewTypeCount()} - 1. Headers are only recycled into headers of
+     *         the same type.
+     */
+    public int getSectionViewType(int section) {
+        return 0;
+    }
+
+    /**
+     * @return The number of types of views getSectionView creates
+     */
+    public int getSectionViewTypeCount() {
+        return 1;
+    }
+
+    /**
+     * What accessibility services read out for an item. See
+     * {@link StaggeredGridAdapter#getItemContentDescription(int)}.
+     */
+    public CharSequence getItemContentDescription(int section, int position) {
+        return null;
+    }
+
+    /**
+     * What accessibility services read out for the header of a section. See
+     * {@link StaggeredGridAdapter#getItemContentDescription(int)}.
+     */
+    public CharSequence getSectionContentDescription(int section) {
+        return null;
+    }
+
+    /**
+     * Called when the user drops an item dragged to a new place within its section. See
+     * {@link StaggeredGridAdapter#onItemMoved(int, int)}.
+     *
+     * @return true if the item was moved, false to put it back where it was
+     */
+    public boolean onItemMoved(int section, int fromPosition, int toPosition) {
+        return false;
+    }
 }
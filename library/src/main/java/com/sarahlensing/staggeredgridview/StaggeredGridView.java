@@ -24,15 +24,19 @@ import android.content.Context;
 import android.content.res.TypedArray;
 import android.database.DataSetObserver;
 import android.graphics.Canvas;
-import android.graphics.Point;
 import android.graphics.Rect;
+import android.os.Bundle;
 import android.os.Handler;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.support.v4.view.MotionEventCompat;
+import android.support.v4.view.NestedScrollingChild;
+import android.support.v4.view.NestedScrollingChildHelper;
 import android.support.v4.view.VelocityTrackerCompat;
 import android.support.v4.view.ViewCompat;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
 import android.support.v4.widget.EdgeEffectCompat;
+import android.support.v4.widget.ExploreByTouchHelper;
 import android.support.v4.widget.ScrollerCompat;
 import android.util.AttributeSet;
 import android.util.Log;
@@ -46,11 +50,24 @@ import android.view.View;
 import android.view.ViewConfiguration;
 import android.view.ViewGroup;
 import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityManager;
 import android.widget.ListAdapter;
 
+import com.sarahlensing.staggeredgridview.engine.GridGeometry;
+import com.sarahlensing.staggeredgridview.engine.GridRect;
+import com.sarahlensing.staggeredgridview.engine.ItemSource;
+import com.sarahlensing.staggeredgridview.engine.JustifiedPlacementStrategy;
+import com.sarahlensing.staggeredgridview.engine.LayoutEngine;
+import com.sarahlensing.staggeredgridview.engine.Placement;
+import com.sarahlensing.staggeredgridview.engine.PlacementStrategy;
+import com.sarahlensing.staggeredgridview.engine.ScrollWindow;
+import com.sarahlensing.staggeredgridview.engine.SkylinePlacementStrategy;
+
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 
 /**
  * ListView and GridView just not complex enough? Try StaggeredGridView!
@@ -60,7 +77,7 @@ import java.util.Comparator;
  * or left to right. The largest vertical or horizontal gap (depending on grid orientation) is always filled first .</p>
  *
  */
-public class StaggeredGridView extends ViewGroup {
+public class StaggeredGridView extends ViewGroup implements NestedScrollingChild {
     private static final String TAG = "StaggeredGridView";
 
     private StaggeredGridAdapter mAdapter;
@@ -76,8 +93,7 @@ public class StaggeredGridView extends ViewGroup {
     public static final int STAGGERED_GRID_DEFAULT_NUM_PAGES_TO_PRELOAD = 2;
     private int mNumberPagesToPreload = STAGGERED_GRID_DEFAULT_NUM_PAGES_TO_PRELOAD;
 
-    private ArrayList<GridItem> mVisibleItems = new ArrayList<GridItem>();
-    private ArrayList<GridItem> mGridItems = new ArrayList<GridItem>();
+    private SparseArray<GridItem> mVisibleItems = new SparseArray<GridItem>();
 
     private boolean mFastChildLayout;
     private boolean mPopulating;
@@ -91,12 +107,29 @@ public class StaggeredGridView extends ViewGroup {
     private int mItemCount;
     private boolean mHasStableIds;
 
-    private ArrayList<Rect> mPosRects = new ArrayList<Rect>();
-    private ItemSize mContentSize;
     private int mCurrentOffset = 0;
 
-    private ArrayList<Integer> mSectionIndexes;
-    private int mRawPosition;
+    /**
+     * Places the adapter's items; this view only binds and scrolls what it placed
+     */
+    private final LayoutEngine mEngine = new LayoutEngine();
+    private final AdapterItemSource mItemSource = new AdapterItemSource();
+    private final ScrollWindow mScrollWindow = new ScrollWindow(mEngine, new WindowItems());
+    private long mPhaseStart;
+
+    private int mPendingScrollSection = INVALID_POSITION;
+    private int mPendingScrollPosition;
+    private int mPendingScrollOffset;
+
+    private static final int SMOOTH_SCROLL_MAX_PAGES = 3;
+    private static final int SMOOTH_SCROLL_MIN_DURATION = 200;
+    private static final int SMOOTH_SCROLL_MAX_DURATION = 600;
+    private SavedState mRestoreState;
+
+    private int mSmoothScrollRawPosition = INVALID_POSITION;
+    private int mSmoothScrollOffset;
+    private int mSmoothScrollTarget;
+    private boolean mSmoothScrollTargetPlaced;
 
     private int mTouchSlop;
     private int mMaximumVelocity;
@@ -107,6 +140,7 @@ public class StaggeredGridView extends ViewGroup {
     private float mTouchRemainderX;
     private int mActivePointerId;
     private int mMotionPosition;
+    private GridItem mMotionItem;
 
     private static final int TOUCH_MODE_IDLE = 0;
     private static final int TOUCH_MODE_DRAGGING = 1;
@@ -115,11 +149,21 @@ public class StaggeredGridView extends ViewGroup {
     private static final int TOUCH_MODE_TAP = 4;
     private static final int TOUCH_MODE_DONE_WAITING = 5;
     private static final int TOUCH_MODE_REST = 6;
+    private static final int TOUCH_MODE_REORDERING = 7;
 
     private static final int INVALID_POSITION = -1;
 
+    public static final long INVALID_PACKED_POSITION = 0xFFFFFFFFFFFFFFFFL;
+
     private int mTouchMode;
     private final VelocityTracker mVelocityTracker = VelocityTracker.obtain();
+
+    /**
+     * Offers drags and flings to a nested scrolling parent before and after the grid scrolls
+     */
+    private NestedScrollingChildHelper mNestedScrollingHelper;
+    private final int[] mNestedScrollConsumed = new int[2];
+    private final int[] mNestedScrollOffset = new int[2];
     private final ScrollerCompat mScroller;
 
     private final EdgeEffectCompat mBeginningEdge;
@@ -155,42 +199,282 @@ public class StaggeredGridView extends ViewGroup {
     private PerformClick mPerformClick;
 
     /**
-     * Rectangle used for hit testing children
+     * Receives the work done per frame; mLayoutMetrics is only kept while it is set
+     */
+    private OnLayoutMetricsListener mOnLayoutMetricsListener;
+    private LayoutMetrics mLayoutMetrics;
+    private long mItemsPlacedReported;
+
+    /**
+     * Emit systrace sections around the phases of layout
+     */
+    private boolean mTraceEnabled;
+
+    /**
+     * Unexpected conditions hit while laying out, counted per event type
+     */
+    public static final int DIAGNOSTIC_NULL_CHILD = 0;
+    public static final int DIAGNOSTIC_POSITION_OUT_OF_RANGE = 1;
+    private static final int DIAGNOSTIC_EVENT_COUNT = 2;
+    private final int[] mDiagnosticCounts = new int[DIAGNOSTIC_EVENT_COUNT];
+    private OnDiagnosticEventListener mOnDiagnosticEventListener;
+
+    /**
+     * Pin the header of the section at the beginning of the viewport. The pinned header is a
+     * child kept last, so it draws over the items and takes touches first. It is rebound only
+     * when the section changes and offset only when its position does.
+     */
+    private boolean mStickySectionHeaders;
+    private View mStickyHeaderView;
+    private int mStickyHeaderViewType;
+    private int mStickyHeaderSection = INVALID_POSITION;
+    private boolean mStickyHeaderVisible;
+    private int mStickyHeaderLeft;
+    private int mStickyHeaderTop;
+
+    /**
+     * Animate attached items to where they are after an adapter change, diffing by stable ID.
+     * Where every attached header and item was drawn is recorded before the change; afterwards
+     * only the ones on screen before or after it are animated.
+     */
+    private boolean mItemAnimationsEnabled;
+    private final HashMap<Long, AttachedItem> mItemsBefore = new HashMap<Long, AttachedItem>();
+    private final HashMap<Long, AttachedItem> mSectionsBefore = new HashMap<Long, AttachedItem>();
+    private final GridItemAnimator mItemAnimator = new GridItemAnimator(this, new GridItemAnimator.Callback() {
+        @Override
+        public void onDisappeared(View view) {
+            if (view.getParent() == StaggeredGridView.this) {
+                removeViewInLayout(view);
+                mRecycler.addScrap(view);
+            }
+        }
+    });
+
+    /**
+     * Long pressing an item picks it up to be dragged to a new place within its section. The
+     * adapter's order is left alone until the item is dropped: while it is dragged from
+     * mReorderFrom to mReorderTo the positions in between are read from the adapter shifted by
+     * one, and only placements from the changed position on are placed again.
+     */
+    private boolean mReorderEnabled;
+    private int mReorderSection = INVALID_POSITION;
+    private int mReorderFrom = INVALID_POSITION;
+    private int mReorderTo = INVALID_POSITION;
+    private View mReorderView;
+    private int mReorderViewIndex = -1;
+    private int mReorderGrabX;
+    private int mReorderGrabY;
+    private float mReorderTouchX;
+    private float mReorderTouchY;
+    private int mReorderScrollSpeed;
+    private final HashMap<Long, View> mReorderViews = new HashMap<Long, View>();
+    private final Runnable mReorderAutoScroll = new Runnable() {
+        @Override
+        public void run() {
+            mReorderAutoScrollScheduled = false;
+            final int delta = reorderAutoScrollDelta();
+            if (isReordering() && delta != 0) {
+                trackMotionScroll(delta, false);
+                updateReorder(mReorderTouchX, mReorderTouchY);
+            }
+        }
+    };
+    private boolean mReorderAutoScrollScheduled;
+
+    /**
+     * Normal grid that does not indicate choices
+     */
+    public static final int CHOICE_MODE_NONE = 0;
+
+    /**
+     * The grid allows up to one choice
+     */
+    public static final int CHOICE_MODE_SINGLE = 1;
+
+    /**
+     * The grid allows any number of choices
+     */
+    public static final int CHOICE_MODE_MULTIPLE = 2;
+
+    /**
+     * Which items are checked, by raw position. Only attached views are activated, as they are
+     * bound or when the selection changes, so checking every item never touches one off screen.
+     */
+    private int mChoiceMode = CHOICE_MODE_NONE;
+    private final GridSelection mSelection = new GridSelection();
+    private final GridSelection.Items mSelectionItems = new GridSelection.Items() {
+        @Override
+        public int getRawCount() {
+            return mEngine.getRawCount();
+        }
+
+        @Override
+        public boolean isItem(int rawPosition) {
+            return mEngine.getPositionForRawPosition(rawPosition) >= 0;
+        }
+
+        @Override
+        public long getItemId(int rawPosition) {
+            return itemIdFor(mEngine.getSectionForRawPosition(rawPosition),
+                    mEngine.getPositionForRawPosition(rawPosition));
+        }
+    };
+
+    /**
+     * Exposes placed items to accessibility services as virtual views, so items near the screen
+     * can be reached without a view of their own
      */
-    private Rect mTouchFrame;
+    private final GridAccessibilityHelper mAccessibilityHelper;
+    private final AccessibilityManager mAccessibilityManager;
+
+    //counts items bound, so together with how many are bound it tells when they changed
+    private int mBindCount;
+    private int mAccessibilityBindCount = -1;
+    private int mAccessibilityBoundItems = -1;
+
+    private static class AttachedItem {
+        final View view;
+        final int left;
+        final int top;
 
-    private class GridItem extends Object {
+        AttachedItem(View view, int left, int top) {
+            this.view = view;
+            this.left = left;
+            this.top = top;
+        }
+    }
+
+    private class GridItem {
         public long id = -1;
         public int position = -1;
         public int section = -1;
         public boolean isSection;
         public int rawPosition = -1;
-        public Rect rect;
+        public GridRect rect;
         public View view;
 
+        GridItem(Placement placement) {
+            position = placement.position;
+            section = placement.section;
+            isSection = placement.isSection;
+            rawPosition = placement.rawPosition;
+            rect = placement.rect;
+            id = itemIdFor(section, isSection ? -1 : position);
+        }
+
         @Override
         public String toString() {
             String result = "GridItem{c=" + ", id=" + id + " frame=" + rect.toString()+"}";
             return result;
         }
+    }
+
+    /**
+     * Feeds the adapter's sections and item sizes to the layout engine.
+     */
+    private class AdapterItemSource implements ItemSource {
+        @Override
+        public boolean hasSections() {
+            return hasSectionAdapter();
+        }
+
+        @Override
+        public int getSectionCount() {
+            return hasSectionAdapter() ? getSectionAdapter().getSectionCount() : 1;
+        }
+
+        @Override
+        public int getItemCount(int section) {
+            return hasSectionAdapter() ? getSectionAdapter().getItemCountForSection(section) : mAdapter.getCount();
+        }
+
+        @Override
+        public ItemSize getSectionSize(int section) {
+            return getSectionAdapter().getSectionSize(section);
+        }
+
+        @Override
+        public ItemSize getItemSize(int section, int position) {
+            return mAdapter.getItemSize(adapterPosition(section, position));
+        }
+
+        @Override
+        public int getItemSpan(int section, int position) {
+            return mAdapter.getItemSpan(adapterPosition(section, position));
+        }
+    }
+
+    /**
+     * Binds views for the items the scroll window brings into range and recycles those it drops.
+     */
+    private class WindowItems implements ScrollWindow.Items {
+        @Override
+        public boolean isBound(int rawPosition) {
+            return mVisibleItems.get(rawPosition) != null;
+        }
+
+        @Override
+        public void bind(Placement placement) {
+            layoutGridItem(new GridItem(placement));
+        }
+
+        @Override
+        public int getBoundCount() {
+            return mVisibleItems.size();
+        }
+
+        @Override
+        public GridRect getBoundRect(int index) {
+            return mVisibleItems.valueAt(index).rect;
+        }
+
+        @Override
+        public boolean unbind(int index) {
+            GridItem item = mVisibleItems.valueAt(index);
+            if (item.view == mReorderView) {
+                return false; //stays under the finger
+            }
+            View view = item.view;
+            removeViewInLayout(view);
+            mRecycler.addScrap(view);
+            item.view = null;
+            mVisibleItems.delete(mVisibleItems.keyAt(index));
+            return true;
+        }
 
         @Override
-        public boolean equals(Object o) {
-            GridItem other = (GridItem)o;
-            return ((this.id == other.id) && (this.position == other.position) && this.rect.equals(other.rect) &&
-                    (this.isSection == other.isSection) && (this.section == other.section) &&
-                    (this.rawPosition == other.rawPosition));
+        public void beginPhase(int phase) {
+            if (phase == ScrollWindow.PHASE_PLACEMENT) {
+                mPhaseStart = beginPlacement();
+            }
+            else {
+                mPhaseStart = mLayoutMetrics != null ? System.nanoTime() : 0;
+            }
         }
 
-        public boolean similar(Object o) {
-            GridItem other = (GridItem)o;
-            return ((this.id == other.id) && (this.position == other.position) &&
-                    this.rect.width() == other.rect.width() && this.rect.height() == other.rect.height() &&
-                    (this.isSection == other.isSection) && (this.section == other.section)
-                    );
+        @Override
+        public void endPhase(int phase) {
+            if (phase == ScrollWindow.PHASE_PLACEMENT) {
+                endPlacement(mPhaseStart);
+            }
+            else if (mLayoutMetrics != null) {
+                mLayoutMetrics.visibleQueryNanos += System.nanoTime() - mPhaseStart;
+            }
         }
     }
 
+    private int itemStart(GridItem item) {
+        return item.rect.start(vertical());
+    }
+
+    private int itemEnd(GridItem item) {
+        return item.rect.end(vertical());
+    }
+
+    private int placementStart(Placement placement) {
+        return placement.rect.start(vertical());
+    }
+
     public StaggeredGridView(Context context) {
         this(context, null);
     }
@@ -211,6 +495,14 @@ public class StaggeredGridView extends ViewGroup {
                 }
                 mNumberPagesToPreload = a.getInt(R.styleable.StaggeredGridView_numPagesToPreload, STAGGERED_GRID_DEFAULT_NUM_PAGES_TO_PRELOAD);
                 mItemMargin = (int)a.getDimension(R.styleable.StaggeredGridView_itemMargin, STAGGERED_GRID_DEFAULT_ITEM_MARGIN);
+                mEngine.setPagedPlacementEnabled(a.getBoolean(R.styleable.StaggeredGridView_pagedPlacement, false));
+                mStickySectionHeaders = a.getBoolean(R.styleable.StaggeredGridView_stickySectionHeaders, false);
+                mEngine.setLaneCount(a.getInt(R.styleable.StaggeredGridView_laneCount, 0));
+                final int justifiedRowLength = a.getDimensionPixelSize(R.styleable.StaggeredGridView_justifiedRowLength, 0);
+                if (justifiedRowLength > 0) {
+                    mEngine.setPlacementStrategy(new JustifiedPlacementStrategy(justifiedRowLength));
+                }
+                a.recycle();
             }else{
                 mOrientation = STAGGERED_GRID_DEFAULT_ORIENTATION;
                 mNumberPagesToPreload = STAGGERED_GRID_DEFAULT_NUM_PAGES_TO_PRELOAD;
@@ -227,6 +519,12 @@ public class StaggeredGridView extends ViewGroup {
         mBeginningEdge = new EdgeEffectCompat(context);
         mEndingEdge = new EdgeEffectCompat(context);
 
+        setNestedScrollingEnabled(true);
+
+        mAccessibilityHelper = new GridAccessibilityHelper();
+        ViewCompat.setAccessibilityDelegate(this, mAccessibilityHelper);
+        mAccessibilityManager = (AccessibilityManager) context.getSystemService(Context.ACCESSIBILITY_SERVICE);
+
         setWillNotDraw(false);
         setClipToPadding(false);
         this.setFocusableInTouchMode(false);
@@ -251,6 +549,94 @@ public class StaggeredGridView extends ViewGroup {
         }
     }
 
+    public boolean isPagedPlacementEnabled() {
+        return mEngine.isPagedPlacementEnabled();
+    }
+
+    /**
+     * Keep placement data only for the pages surrounding the current scroll position. Items
+     * further away are dropped and placed again from the closest checkpoint when they are
+     * scrolled back into range, so memory use no longer grows with the size of the adapter.
+     *
+     * @param enabled true to page placement data in and out as the grid scrolls
+     */
+    public void setPagedPlacementEnabled(boolean enabled) {
+        final boolean needsReload = enabled != mEngine.isPagedPlacementEnabled();
+        mEngine.setPagedPlacementEnabled(enabled);
+        if (needsReload) {
+            requestLayout();
+        }
+    }
+
+    public PlacementStrategy getPlacementStrategy() {
+        return mEngine.getPlacementStrategy();
+    }
+
+    /**
+     * Decide where items go with a custom strategy. Items placed by it are recycled, scrolled,
+     * paged and cached just like the grid's own.
+     *
+     * @param strategy The strategy to place with, or null for the default
+     *                 {@link SkylinePlacementStrategy}
+     */
+    public void setPlacementStrategy(PlacementStrategy strategy) {
+        mEngine.setPlacementStrategy(strategy);
+        requestLayout();
+    }
+
+    public int getLaneCount() {
+        return mEngine.getLaneCount();
+    }
+
+    /**
+     * Lay items out in a fixed number of equal columns (rows when the grid scrolls horizontally).
+     * Each item is scaled to the width of a column, keeping its aspect ratio, and goes into the
+     * shortest column. This is much cheaper to place than the default, which places every item
+     * at its own size wherever it fits.
+     *
+     * @param laneCount Number of columns or rows, or 0 to place items at their own size
+     */
+    public void setLaneCount(int laneCount) {
+        final boolean needsReload = laneCount != mEngine.getLaneCount();
+        mEngine.setLaneCount(laneCount);
+        if (needsReload) {
+            requestLayout();
+        }
+    }
+
+    public boolean isStickySectionHeadersEnabled() {
+        return mStickySectionHeaders;
+    }
+
+    /**
+     * Keep the header of the section at the beginning of the viewport pinned there until the next
+     * section's header pushes it out. Only applies to a {@link StaggeredGridSectionAdapter}.
+     *
+     * @param enabled true to pin section headers
+     */
+    public void setStickySectionHeadersEnabled(boolean enabled) {
+        mStickySectionHeaders = enabled;
+        updateStickyHeader();
+    }
+
+    /**
+     * Store computed placements in a file and read them back on later launches instead of placing
+     * items again. The file is only used when it was written for the same content version, size,
+     * padding, margin, orientation and section counts; otherwise it is started over. Items are
+     * written as scrolling places them, never all at once, and a later launch reads back however
+     * many were written and carries on placing from there. After
+     * {@link #reloadGridFromPosition(int, int)} the file is rewritten from the change on. Bump
+     * contentVersion whenever item sizes change without going through the grid. The file is
+     * written on a background thread, never while laying out or saving state.
+     *
+     * @param file File to keep the placements in, or null to stop caching
+     * @param contentVersion Caller supplied version of the adapter's content
+     */
+    public void setPlacementCache(File file, long contentVersion) {
+        mEngine.setPlacementCache(file, contentVersion);
+        requestLayout();
+    }
+
     public String getGridOrientation() {
         return mOrientation;
     }
@@ -271,11 +657,13 @@ public class StaggeredGridView extends ViewGroup {
             case MotionEvent.ACTION_DOWN:
                 mVelocityTracker.clear();
                 abortScrollerAnimation();
+                cancelSmoothScroll();
                 mLastTouchY = ev.getY();
                 mLastTouchX = ev.getX();
                 mActivePointerId = MotionEventCompat.getPointerId(ev, 0);
                 mTouchRemainderY = 0;
                 mTouchRemainderX = 0;
+                startNestedScroll(scrollAxis());
                 if (mTouchMode == TOUCH_MODE_FLINGING) {
                     // Catch!
                     mTouchMode = TOUCH_MODE_DRAGGING;
@@ -283,6 +671,11 @@ public class StaggeredGridView extends ViewGroup {
                 }
                 break;
 
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                stopNestedScroll();
+                break;
+
             case MotionEvent.ACTION_MOVE: {
                 final int index = MotionEventCompat.findPointerIndex(ev, mActivePointerId);
                 if (index < 0) {
@@ -291,14 +684,17 @@ public class StaggeredGridView extends ViewGroup {
                             "event stream?");
                     return false;
                 }
+                //only take gestures mostly along the grid's own axis, leave the rest to the parent
                 if (mOrientation.equals(STAGGERED_GRID_ORIENTATION_VERTICAL)) {
                     final float y = MotionEventCompat.getY(ev, index);
                     final float dy = y - mLastTouchY + mTouchRemainderY;
                     final int deltaY = (int) dy;
                     mTouchRemainderY = dy - deltaY;
+                    final float crossDelta = MotionEventCompat.getX(ev, index) - mLastTouchX;
 
-                    if (Math.abs(dy) > mTouchSlop) {
+                    if (Math.abs(dy) > mTouchSlop && Math.abs(dy) > Math.abs(crossDelta)) {
                         mTouchMode = TOUCH_MODE_DRAGGING;
+                        requestParentDisallowInterceptTouchEvent();
                         return true;
                     }
                 }
@@ -307,8 +703,10 @@ public class StaggeredGridView extends ViewGroup {
                     final float dx = x - mLastTouchX + mTouchRemainderX;
                     final int deltaX = (int) dx;
                     mTouchRemainderX = dx - deltaX;
-                    if (Math.abs(dx) > mTouchSlop) {
+                    final float crossDelta = MotionEventCompat.getY(ev, index) - mLastTouchY;
+                    if (Math.abs(dx) > mTouchSlop && Math.abs(dx) > Math.abs(crossDelta)) {
                         mTouchMode = TOUCH_MODE_DRAGGING;
+                        requestParentDisallowInterceptTouchEvent();
                         return true;
                     }
                 }
@@ -373,6 +771,9 @@ public class StaggeredGridView extends ViewGroup {
         if (contentFits) {
             return;
         }
+        if (mLayoutMetrics != null) {
+            mLayoutMetrics.scrollPasses++;
+        }
         offsetChildren(delta);
         layoutGridItems();
         recycleOffscreenItems();
@@ -380,8 +781,23 @@ public class StaggeredGridView extends ViewGroup {
 
     private void doScrollFling() {
         mVelocityTracker.computeCurrentVelocity(1000, mMaximumVelocity);
+        final float velocity = vertical() ?
+                VelocityTrackerCompat.getYVelocity(mVelocityTracker, mActivePointerId) :
+                VelocityTrackerCompat.getXVelocity(mVelocityTracker, mActivePointerId);
+        if (Math.abs(velocity) > mFlingVelocity) {
+            //nested velocities are positive when content moves towards its end
+            final float nestedX = vertical() ? 0 : -velocity;
+            final float nestedY = vertical() ? -velocity : 0;
+            if (dispatchNestedPreFling(nestedX, nestedY)) {
+                mTouchMode = TOUCH_MODE_IDLE;
+                return;
+            }
+            //only consumed if there is content left to fling through in that direction
+            final boolean consumed = !contentFits() && getOverhang(velocity > 0, 1) > 0;
+            dispatchNestedFling(nestedX, nestedY, consumed);
+        }
         if (vertical()) {
-            final float velocityY = VelocityTrackerCompat.getYVelocity(mVelocityTracker, mActivePointerId);
+            final float velocityY = velocity;
             if (Math.abs(velocityY) > mFlingVelocity) { // TODO
                 mTouchMode = TOUCH_MODE_FLINGING;
                 mScroller.fling(0, 0, 0, (int) velocityY, 0, 0, Integer.MIN_VALUE, Integer.MAX_VALUE);
@@ -393,7 +809,7 @@ public class StaggeredGridView extends ViewGroup {
             }
         }
         else {
-            final float velocityX = VelocityTrackerCompat.getXVelocity(mVelocityTracker, mActivePointerId);
+            final float velocityX = velocity;
             if (Math.abs(velocityX) > mFlingVelocity) { // TODO
                 mTouchMode = TOUCH_MODE_FLINGING;
                 mScroller.fling(0, 0, (int) velocityX, 0, Integer.MIN_VALUE, Integer.MAX_VALUE, 0, 0);
@@ -410,6 +826,77 @@ public class StaggeredGridView extends ViewGroup {
         mScroller.abortAnimation();
     }
 
+    private int scrollAxis() {
+        return vertical() ? ViewCompat.SCROLL_AXIS_VERTICAL : ViewCompat.SCROLL_AXIS_HORIZONTAL;
+    }
+
+    private void requestParentDisallowInterceptTouchEvent() {
+        if (getParent() != null) {
+            getParent().requestDisallowInterceptTouchEvent(true);
+        }
+    }
+
+    //the next touch arrives relative to where a nested parent moved the grid to
+    private void offsetLastTouch(int[] offsetInWindow) {
+        mLastTouchX -= offsetInWindow[0];
+        mLastTouchY -= offsetInWindow[1];
+    }
+
+    //created on first use, View's constructor can already set nested scrolling from XML on API 21
+    private NestedScrollingChildHelper getNestedScrollingHelper() {
+        if (mNestedScrollingHelper == null) {
+            mNestedScrollingHelper = new NestedScrollingChildHelper(this);
+        }
+        return mNestedScrollingHelper;
+    }
+
+    @Override
+    public void setNestedScrollingEnabled(boolean enabled) {
+        getNestedScrollingHelper().setNestedScrollingEnabled(enabled);
+    }
+
+    @Override
+    public boolean isNestedScrollingEnabled() {
+        return getNestedScrollingHelper().isNestedScrollingEnabled();
+    }
+
+    @Override
+    public boolean startNestedScroll(int axes) {
+        return getNestedScrollingHelper().startNestedScroll(axes);
+    }
+
+    @Override
+    public void stopNestedScroll() {
+        getNestedScrollingHelper().stopNestedScroll();
+    }
+
+    @Override
+    public boolean hasNestedScrollingParent() {
+        return getNestedScrollingHelper().hasNestedScrollingParent();
+    }
+
+    @Override
+    public boolean dispatchNestedScroll(int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed,
+                                        int[] offsetInWindow) {
+        return getNestedScrollingHelper().dispatchNestedScroll(dxConsumed, dyConsumed, dxUnconsumed, dyUnconsumed,
+                offsetInWindow);
+    }
+
+    @Override
+    public boolean dispatchNestedPreScroll(int dx, int dy, int[] consumed, int[] offsetInWindow) {
+        return getNestedScrollingHelper().dispatchNestedPreScroll(dx, dy, consumed, offsetInWindow);
+    }
+
+    @Override
+    public boolean dispatchNestedFling(float velocityX, float velocityY, boolean consumed) {
+        return getNestedScrollingHelper().dispatchNestedFling(velocityX, velocityY, consumed);
+    }
+
+    @Override
+    public boolean dispatchNestedPreFling(float velocityX, float velocityY) {
+        return getNestedScrollingHelper().dispatchNestedPreFling(velocityX, velocityY);
+    }
+
     @Override
     public boolean onTouchEvent(MotionEvent ev) {
         mVelocityTracker.addMovement(ev);
@@ -420,14 +907,18 @@ public class StaggeredGridView extends ViewGroup {
 
                 mVelocityTracker.clear();
                 abortScrollerAnimation();
+                cancelSmoothScroll();
                 mLastTouchY = ev.getY();
                 mLastTouchX = ev.getX();
-                int motionPosition = pointToPosition((int) mLastTouchX, (int) mLastTouchY);
+                final GridItem motionItem = gridItemAtPoint((int) mLastTouchX, (int) mLastTouchY);
+                final int motionPosition = motionItem != null ? motionItem.position : INVALID_POSITION;
                 mActivePointerId = MotionEventCompat.getPointerId(ev, 0);
                 mTouchRemainderY = 0;
                 mTouchRemainderX = 0;
+                startNestedScroll(scrollAxis());
 
-                if(mTouchMode != TOUCH_MODE_FLINGING && !mDataChanged && motionPosition >= 0 && getAdapter().isEnabled(motionPosition)){
+                if(mTouchMode != TOUCH_MODE_FLINGING && !mDataChanged && motionItem != null && !motionItem.isSection &&
+                        getAdapter().isEnabled(motionPosition)){
                     mTouchMode = TOUCH_MODE_DOWN;
 
                     if (mPendingCheckForTap == null) {
@@ -438,6 +929,7 @@ public class StaggeredGridView extends ViewGroup {
                 }
 
                 mMotionPosition = motionPosition;
+                mMotionItem = motionItem;
                 invalidate();
                 break;
 
@@ -449,11 +941,39 @@ public class StaggeredGridView extends ViewGroup {
                             "event stream?");
                     return false;
                 }
+                if (mTouchMode == TOUCH_MODE_REORDERING) {
+                    updateReorder(MotionEventCompat.getX(ev, index), MotionEventCompat.getY(ev, index));
+                    break;
+                }
                 int delta = calculateDeltaScroll(ev, index);
+                final boolean dragging = mTouchMode == TOUCH_MODE_DRAGGING;
+                if (dragging) {
+                    requestParentDisallowInterceptTouchEvent();
+                    //the parent gets the first go at the distance
+                    if (dispatchNestedPreScroll(vertical() ? 0 : -delta, vertical() ? -delta : 0,
+                            mNestedScrollConsumed, mNestedScrollOffset)) {
+                        delta += vertical() ? mNestedScrollConsumed[1] : mNestedScrollConsumed[0];
+                        offsetLastTouch(mNestedScrollOffset);
+                    }
+                }
+                final int offsetBefore = mCurrentOffset;
                 doScroll(delta);
+                if (dragging) {
+                    //and whatever the grid could not take once it hits an end
+                    final int consumed = offsetBefore - mCurrentOffset;
+                    final int unconsumed = delta - consumed;
+                    if (dispatchNestedScroll(vertical() ? 0 : -consumed, vertical() ? -consumed : 0,
+                            vertical() ? 0 : -unconsumed, vertical() ? -unconsumed : 0, mNestedScrollOffset)) {
+                        offsetLastTouch(mNestedScrollOffset);
+                    }
+                }
             } break;
 
             case MotionEvent.ACTION_CANCEL:
+                stopNestedScroll();
+                if (mTouchMode == TOUCH_MODE_REORDERING) {
+                    finishReorder(false);
+                }
                 mTouchMode = TOUCH_MODE_IDLE;
                 setPressed(false);
 
@@ -468,40 +988,60 @@ public class StaggeredGridView extends ViewGroup {
                 break;
 
             case MotionEvent.ACTION_UP: {
+                if (mTouchMode == TOUCH_MODE_REORDERING) {
+                    stopNestedScroll();
+                    finishReorder(true);
+                    break;
+                }
+                final int touchMode = mTouchMode;
                 doScrollFling();
+                stopNestedScroll();
+                if (touchMode == TOUCH_MODE_DOWN || touchMode == TOUCH_MODE_TAP ||
+                        touchMode == TOUCH_MODE_DONE_WAITING) {
+                    performTapOnMotionItem();
+                }
             } break;
         }
         return true;
     }
 
-    private boolean isLower(GridItem gridItem, int lowest) {
-        if (vertical()) {
-            return gridItem.rect.bottom > lowest;
+    private void performTapOnMotionItem() {
+        final Handler handler = getHandler();
+        if (handler != null) {
+            handler.removeCallbacks(mPendingCheckForTap);
+            handler.removeCallbacks(mPendingCheckForLongPress);
         }
-        else {
-            return gridItem.rect.right > lowest;
-        }
-    }
 
-    private int getOverhang() {
-        int lowest = 0;
-        for (int i = 0; i < mVisibleItems.size(); i++) {
-            GridItem gridItem = mVisibleItems.get(i);
-            if (gridItem == null) {
-                Log.d("GRID ITEM NULL, WHY", "");
-                continue;
-            }
-            if (isLower(gridItem, lowest)) {
-                lowest = vertical()?gridItem.rect.bottom:gridItem.rect.right;
-            }
+        final GridItem motionItem = mMotionItem;
+        if (motionItem != null && motionItem.view != null) {
+            motionItem.view.setPressed(false);
         }
+        setPressed(false);
 
-        if (vertical()) {
-            return lowest - getEndingBottom();
+        if (mDataChanged || motionItem == null || motionItem.isSection) {
+            return;
         }
-        else {
-            return lowest - getEndingRight();
+        if (mPerformClick == null) {
+            mPerformClick = new PerformClick();
+        }
+        mPerformClick.mClickMotionItem = motionItem;
+        mPerformClick.rememberWindowAttachCount();
+        post(mPerformClick);
+    }
+
+    /**
+     * How far the content can still move in the given direction, from the allowed offsets
+     * rather than the visible children.
+     *
+     * @param towardsBeginning true if the content moves back towards its beginning
+     * @param amount How far the content is about to move, so enough is placed to clamp against
+     */
+    private int getOverhang(boolean towardsBeginning, int amount) {
+        if (towardsBeginning) {
+            return Math.max(0, mCurrentOffset - getMinAllowedOffset());
         }
+        ensurePlacedThrough(mCurrentOffset + amount + viewportLength());
+        return Math.max(0, getMaxAllowedOffset() - mCurrentOffset);
     }
 
     /**
@@ -522,8 +1062,8 @@ public class StaggeredGridView extends ViewGroup {
             final int overhang;
             mPopulating = true;
 
-            overhang = getOverhang();
             boolean towardsBeginning = (delta > 0);
+            overhang = getOverhang(towardsBeginning, allowOverhang);
             movedBy = Math.min(overhang, allowOverhang);
             doScroll(towardsBeginning ? movedBy : -movedBy);
 
@@ -562,21 +1102,20 @@ public class StaggeredGridView extends ViewGroup {
     }
 
     private final boolean contentFits() {
-        if (mContentSize == null) {
+        if (!mEngine.hasContent()) {
             return true;
         }
-        if (vertical()) {
-            return mContentSize.height <= getHeight();
-        }
-        else {
-            return mContentSize.width <= getWidth();
-        }
+        return mEngine.getContentEnd() <= viewportLength();
     }
 
     private void recycleAllViews() {
         for (int i = 0; i < getChildCount(); i++) {
-            mRecycler.addScrap(getChildAt(i));
+            final View child = getChildAt(i);
+            if (child != mStickyHeaderView) {
+                mRecycler.addScrap(child);
+            }
         }
+        mStickyHeaderVisible = false;
 
 //        if (mInLayout) {
         removeAllViewsInLayout();
@@ -585,40 +1124,21 @@ public class StaggeredGridView extends ViewGroup {
 //        }
     }
 
-    private Rect getCurrViewportRect() {
-        if (vertical()) {
-            return new Rect(0, Math.max(0, mCurrentOffset-defaultAmountToLayout()), getWidth(), Math.min(mContentSize.height, mCurrentOffset+defaultAmountToLayout()));
-        }
-        else {
-            return new Rect(Math.max(mCurrentOffset-defaultAmountToLayout(), 0), 0, Math.min(mContentSize.width, mCurrentOffset+defaultAmountToLayout()), getHeight());
-        }
-    }
-
-    private ArrayList<GridItem> getNextOffscreenItems() {
-        Rect currViewport = getCurrViewportRect();
-        ArrayList<GridItem> ret = new ArrayList<GridItem>();
-        for (GridItem item : mVisibleItems) {
-            if (!Rect.intersects(currViewport, item.rect)) {
-                ret.add(item);
-            }
-        }
-        return ret;
-    }
-
     private void recycleOffscreenItems() {
-        ArrayList<GridItem> nowOffscreens = getNextOffscreenItems();
-        for (GridItem item : nowOffscreens) {
-            View view = item.view;
-            removeViewInLayout(view);
-//            Log.d("MYVIEWCOUNT", String.valueOf(this.getChildCount()));
-            mRecycler.addScrap(view);
-            item.view = null;
-            mVisibleItems.remove(item);
+        traceBegin(GridTrace.RECYCLE_OFFSCREEN_ITEMS);
+        try {
+            scrollWindow().unbindOffscreen(mCurrentOffset);
+        }
+        finally {
+            traceEnd();
         }
     }
 
     @Override
     public void computeScroll() {
+        if (mSmoothScrollRawPosition != INVALID_POSITION && !mSmoothScrollTargetPlaced) {
+            refineSmoothScrollTarget();
+        }
         if (mScroller.computeScrollOffset()) {
 
             if (vertical()) {
@@ -639,6 +1159,7 @@ public class StaggeredGridView extends ViewGroup {
                         abortScrollerAnimation();
                     }
                     mTouchMode = TOUCH_MODE_IDLE;
+                    finishSmoothScroll();
                 }
             }
             else {
@@ -659,6 +1180,7 @@ public class StaggeredGridView extends ViewGroup {
                         abortScrollerAnimation();
                     }
                     mTouchMode = TOUCH_MODE_IDLE;
+                    finishSmoothScroll();
                 }
             }
         }
@@ -701,6 +1223,7 @@ public class StaggeredGridView extends ViewGroup {
                 invalidate();
             }
         }
+        dispatchLayoutMetrics();
     }
 
     public void beginFastChildLayout() {
@@ -720,7 +1243,14 @@ public class StaggeredGridView extends ViewGroup {
     }
 
     @Override
-    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        //keep whatever was placed since the cache was last brought up to date
+        mEngine.flushPlacementCache();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
 
         int widthMode = MeasureSpec.getMode(widthMeasureSpec);
         int heightMode = MeasureSpec.getMode(heightMeasureSpec);
@@ -749,66 +1279,82 @@ public class StaggeredGridView extends ViewGroup {
     }
 
     private void prepareToBuildItems() {
-        mPosRects.clear();
-        mGridItems.clear();
         mVisibleItems.clear();
-        mContentSize = null;
         mCurrentOffset = 0;
         recycleAllViews();
     }
 
     private int defaultAmountToLayout() {
-        if (vertical()) {
-            return getHeight() * mNumberPagesToPreload;
-        }
-        return getWidth() * mNumberPagesToPreload;
+        return scrollWindow().getAmountToLayout();
     }
 
-    private Rect getVisibleViewportRect() {
-        if (vertical()) {
-            return new Rect(0, Math.max(0, mCurrentOffset), getWidth(), Math.min(mContentSize.height, mCurrentOffset));
+    /**
+     * @return The window scrolling binds and unbinds items through, given the current viewport
+     */
+    private ScrollWindow scrollWindow() {
+        mScrollWindow.setViewport(vertical(), viewportLength(), mItemMargin, mNumberPagesToPreload);
+        return mScrollWindow;
+    }
+
+    private GridGeometry currentGeometry() {
+        return new GridGeometry(getWidth(), getHeight(), mItemMargin, getPaddingLeft(), getPaddingTop(),
+                getPaddingRight(), getPaddingBottom(), vertical());
+    }
+
+    public void reloadGrid() {
+        traceBegin(GridTrace.RELOAD_GRID);
+        try {
+            rebuildGrid();
         }
-        else {
-            return new Rect(Math.max(mCurrentOffset, 0), 0, Math.min(mContentSize.width, mCurrentOffset), getHeight());
+        finally {
+            traceEnd();
         }
     }
-    public void reloadGrid() {
+
+    private void rebuildGrid() {
         //prepare measure of prevOffset
         int prevOffset = mCurrentOffset;
         int adjustOffset = 0;
         GridItem intersecting = null;
-        Rect viewport = null;
 
-        if (mContentSize != null) {
-            viewport = getVisibleViewportRect();
-        }
-        if (mVisibleItems != null) {
-            for (GridItem item : mVisibleItems) {
-                if (Rect.intersects(viewport, item.rect)) {
-                    intersecting = item;
-                    break;
-                }
+        for (int i = 0; i < mVisibleItems.size(); i++) {
+            GridItem item = mVisibleItems.valueAt(i);
+            if (itemStart(item) < prevOffset && itemEnd(item) > prevOffset) {
+                intersecting = item;
+                break;
             }
         }
         if (intersecting != null) {
-            adjustOffset = viewport.left - intersecting.rect.left;
+            adjustOffset = prevOffset - itemStart(intersecting);
         }
 
-        //reset previous build values and build grid items
+        final boolean animate = mDataChanged && beginItemAnimations();
+
+        //reset previous build values and place grid items up to the previous viewport
         prepareToBuildItems();
-        mGridItems = buildGridItems();
+        mStickyHeaderSection = INVALID_POSITION;
+        updateResidentRange(prevOffset);
+        mEngine.start(currentGeometry(), mAdapter != null ? mItemSource : null);
+        if (mDataChanged && mAdapter != null) {
+            mSelection.confirm(mSelectionItems);
+        }
+        if (mRestoreState != null) {
+            applyRestoreState(mRestoreState);
+            mRestoreState = null;
+        }
+        ensurePlacedThrough(prevOffset + viewportLength() + defaultAmountToLayout());
 
         //reset to the best offset so no shifting in grid
         if (intersecting != null) {
-            GridItem similar = null;
-            for (GridItem item : mGridItems) {
-                if (item.similar(intersecting)) {
-                    similar = item;
+            Placement similar = null;
+            for (Placement placement : mEngine.getPlacements()) {
+                if (isSimilar(intersecting, placement)) {
+                    similar = placement;
                     break;
                 }
             }
             if (similar != null) {
-                mCurrentOffset = similar.rect.left + adjustOffset;
+                mCurrentOffset = placementStart(similar) + adjustOffset;
             }
             else {
                 mCurrentOffset = prevOffset;
@@ -820,375 +1366,444 @@ public class StaggeredGridView extends ViewGroup {
 
         //layout the items (which may be new/different) for the current offset
         layoutGridItems();
+        if (animate) {
+            runItemAnimations();
+        }
+        mDataChanged = false;
+
+        if (mPendingScrollSection != INVALID_POSITION) {
+            final int section = mPendingScrollSection;
+            mPendingScrollSection = INVALID_POSITION;
+            scrollToPosition(section, mPendingScrollPosition, mPendingScrollOffset);
+        }
     }
 
-    //use this method if certain previous items wont be removed
-    public void reloadGridAppendItems() {
-        int prevSize = mSectionIndexes.size();
-        mSectionIndexes = getSectionsFromAdapter();
-        int nextSize = mSectionIndexes.size();
-        mGridItems.addAll(buildGridItems(prevSize, nextSize));
+    private boolean isSimilar(GridItem item, Placement placement) {
+        return item.position == placement.position && item.section == placement.section &&
+                item.isSection == placement.isSection &&
+                item.rect.width() == placement.rect.width() && item.rect.height() == placement.rect.height() &&
+                item.id == itemIdFor(placement.section, placement.isSection ? -1 : placement.position);
     }
 
-    @Override
-    protected void onLayout(boolean changed, int l, int t, int r, int b) {
-        mInLayout = true;
-        if (shouldLayout()) {
-            reloadGrid();
+    /**
+     * Reload the grid after the adapter changed at or after the given item. Placement restarts
+     * from the last checkpoint before the change instead of from the first item, and items
+     * before it keep their views.
+     *
+     * @param section Section of the first changed item, 0 for a {@link StaggeredGridAdapter}
+     * @param position Position of the first changed item within its section, -1 for the header
+     */
+    public void reloadGridFromPosition(int section, int position) {
+        if (mAdapter == null || !mEngine.isStarted() || !shouldLayout()) {
+            requestLayout();
+            return;
+        }
+        final boolean animate = beginItemAnimations();
+
+        //drop everything placed from the closest checkpoint on, it will be placed again
+        final long start = beginPlacement();
+        final int firstStale;
+        try {
+            firstStale = mEngine.invalidateFrom(section, position);
         }
-        mInLayout = false;
-        updateEdgeSizes(l, t, r, b);
+        finally {
+            endPlacement(start);
+        }
+        mStickyHeaderSection = INVALID_POSITION;
+        relayoutFrom(firstStale, animate);
     }
 
-    //is actually nextBottom if isVertical() so consider better variable naming
-    private boolean ensureAvailableSpace(int nextLeft, int nextTop, int itemSpace) {
-        boolean ret = true;
+    /**
+     * Reload the grid after a section was inserted into the {@link StaggeredGridSectionAdapter}.
+     * Only the new section's item count is read; placement restarts from the last checkpoint
+     * before its header and sections before it keep their views.
+     *
+     * @param section Position of the new section
+     */
+    public void reloadGridInsertedSection(int section) {
+        reloadGridSectionsFrom(section, true);
+    }
 
-        int clearedSpace = 0;
-        int index = 0;
+    /**
+     * Reload the grid after a section was removed from the {@link StaggeredGridSectionAdapter}.
+     * No section's item count is read again; placement restarts from the last checkpoint before
+     * where the section began and sections before it keep their views.
+     *
+     * @param section Position the section had
+     */
+    public void reloadGridRemovedSection(int section) {
+        reloadGridSectionsFrom(section, false);
+    }
 
-        if (mPosRects.size() == 0) { //we have space because its the first item we are laying out
-            return ret;
+    private void reloadGridSectionsFrom(int section, boolean inserted) {
+        if (mAdapter == null || !mEngine.isStarted() || !shouldLayout()) {
+            requestLayout();
+            return;
         }
-        boolean hadClearedSpaceBefore = false; //because we need consecutive space
-        while (clearedSpace < itemSpace && index < mPosRects.size()) {
-            Rect rect = mPosRects.get(index);
-            if (vertical()) {
-                int rectLeft = rect.left;
-                if (rectLeft >= nextLeft) {
-                    int rectBottom = rect.bottom;
-                    if (rectBottom < nextTop) {
-                        int rectWidth = rect.right - rectLeft;
-                        int rectTotalWidth = rectWidth + mItemMargin;
-                        clearedSpace+= rectTotalWidth;
-                        hadClearedSpaceBefore = true;
-                    }
-                    else if (hadClearedSpaceBefore){
-                        clearedSpace = 0;
-                    }
-                }
-            }
-            else {
-                int rectTop = rect.top;
-                if (rectTop >= nextTop) {
-                    int rectRight = rect.right;
-                    if (rectRight < nextLeft) {
-                        int rectHeight = rect.height();
-                        int rectTotalHeight = rectHeight + mItemMargin;
-                        clearedSpace+= rectTotalHeight;
-                        hadClearedSpaceBefore = true;
-                    }
-                    else if (hadClearedSpaceBefore){
-                        clearedSpace = 0;
-                    }
-                }
-            }
-            index++;
+        final boolean animate = beginItemAnimations();
+        final long start = beginPlacement();
+        final int firstStale;
+        try {
+            firstStale = inserted ? mEngine.insertSection(section) : mEngine.removeSection(section);
         }
-        ret = clearedSpace >= itemSpace;
-        return ret;
-    }
-
-    public class CustomComparator implements Comparator<Rect> {
-        @Override
-        public int compare(Rect r1, Rect r2) {
-            if (vertical()) {
-                return r1.bottom - r2.bottom;
-            }
-            return r1.right - r2.right;
+        finally {
+            endPlacement(start);
         }
+        mStickyHeaderSection = INVALID_POSITION;
+        relayoutFrom(firstStale, animate);
     }
 
-    private ArrayList<Rect> sortedRects() {
-        ArrayList<Rect> sortedPosRects = new ArrayList<Rect>();
-        sortedPosRects.addAll(mPosRects);
-        Collections.copy(sortedPosRects,mPosRects);
-        Collections.sort(sortedPosRects, new CustomComparator());
-        return sortedPosRects;
+    /**
+     * Lays out the items of a section shown in a new order while one is dragged, or back in the
+     * adapter's order when it is not dropped, from the earlier of the two slots it moved between.
+     * The adapter has not changed, so section counts, headers and everything placed before stay
+     * as they are, and items moving while the drag goes on keep their views.
+     */
+    private void relayoutReorderedFrom(int section, int position) {
+        if (!mEngine.isStarted() || !shouldLayout()) {
+            requestLayout();
+            return;
+        }
+        final boolean animate = beginItemAnimations();
+        final long start = beginPlacement();
+        final int firstStale;
+        try {
+            firstStale = mEngine.rearrangeFrom(section, position);
+        }
+        finally {
+            endPlacement(start);
+        }
+        relayoutFrom(firstStale, animate);
     }
 
-    private Point getNextPoint(int itemSpace, boolean isSection) {
-        Point ret;
-        if (mPosRects.size() == 0) {
-            ret = new Point(getBeginningLeft(), getBeginningTop());
-        }
-        else {
-            if (vertical()) {
-                ArrayList<Rect> sorted = sortedRects();
-                if (isSection) {
-                    Rect lastPosRect = sorted.get(mPosRects.size()-1);
-                    return new Point(getBeginningLeft(), lastPosRect.bottom + mItemMargin);
-                }
-                Rect lastPosRect = mPosRects.get(mPosRects.size()-1);
-                //not a lot of pos rects yet so just get next space to right
-                if (getEndingRight() - lastPosRect.right >= itemSpace) {
-                    return new Point(lastPosRect.right + mItemMargin, getBeginningTop());
-                }
-                else {
-                    for (Rect rect : sortedRects()) {
-                        if (ensureAvailableSpace(rect.left, rect.bottom + mItemMargin, itemSpace)) {
-                            return new Point(rect.left, rect.bottom + mItemMargin);
-                        }
-                    }
-                    //ensures that scenario |-___| where rect width is -- places the rect at beginning left
-                    for (Rect anchorRect: sortedRects()) {
-                        for (Rect rect : sortedRects()) {
-                            if (ensureAvailableSpace(rect.left, anchorRect.bottom + mItemMargin, itemSpace)) {
-                                return new Point(rect.left, rect.bottom + mItemMargin);
-                            }
-                        }
-                    }
-                    Rect lastRect = sorted.get(sorted.size()-1);
-                    ret = new Point(getBeginningLeft(), lastRect.bottom + mItemMargin);
-                }
-            }
-            else {
-                ArrayList<Rect> sorted = sortedRects();
-                if (isSection) {
-                    Rect lastPosRect = sorted.get(mPosRects.size()-1);
-                    return new Point(lastPosRect.right + mItemMargin, getBeginningTop());
-                }
-                Rect lastPosRect = mPosRects.get(mPosRects.size()-1);
-                //not a lot of pos rects yet so just get next space below
-                if (getEndingBottom() - lastPosRect.bottom >= itemSpace) {
-                    return new Point(getBeginningLeft(), lastPosRect.bottom + mItemMargin);
+    //binds again every item from firstStale on, which placement has forgotten
+    private void relayoutFrom(int firstStale, boolean animate) {
+        for (int i = mVisibleItems.size() - 1; i >= 0; i--) {
+            GridItem item = mVisibleItems.valueAt(i);
+            if (item.rawPosition >= firstStale) {
+                if (isReordering() && !item.isSection) {
+                    mReorderViews.put(item.id, item.view);
                 }
                 else {
-                    for (Rect rect : sortedRects()) {
-                        if (ensureAvailableSpace(rect.right + mItemMargin, rect.top, itemSpace)) {
-                            return new Point(rect.right + mItemMargin, rect.top);
-                        }
-                    }
-                    Rect lastRect = sorted.get(sorted.size()-1);
-                    ret = new Point(lastRect.right + mItemMargin, getBeginningTop());
+                    removeViewInLayout(item.view);
+                    mRecycler.addScrap(item.view);
                 }
+                item.view = null;
+                mVisibleItems.delete(mVisibleItems.keyAt(i));
             }
         }
-        return ret;
-    }
-
-    private int getBeginningTop() {
-        return getPaddingTop() + mItemMargin;
-    }
 
-    private int getBeginningLeft() {
-        return getPaddingLeft() + mItemMargin;
+        scrollToOffset(mCurrentOffset);
+        //items pushed out of the bound range while reordering
+        for (View view : mReorderViews.values()) {
+            removeViewInLayout(view);
+            mRecycler.addScrap(view);
+        }
+        mReorderViews.clear();
+        if (animate) {
+            runItemAnimations();
+        }
     }
 
-    private int getEndingRight() {
-        return getWidth() - getPaddingRight() - mItemMargin;
+    /**
+     * Scroll so that the item at position begins at the beginning edge of the grid.
+     *
+     * @param position Position of the item in a {@link StaggeredGridAdapter}
+     */
+    public void scrollToPosition(int position) {
+        scrollToPosition(0, position, 0);
     }
 
-    private int getEndingBottom() {
-        return getHeight() - getPaddingBottom() - mItemMargin;
-    }
+    /**
+     * Scroll so that the given item begins offset pixels from the beginning edge of the grid.
+     * A target that has been placed before is found by replaying placement from the closest
+     * checkpoint before it, so only the items in between are placed again. A target that has
+     * not been placed yet depends on every item before it, so all of those are placed first.
+     * With paged placement only the ones around the target are kept; otherwise every one of
+     * them stays resident, as it would after scrolling there.
+     *
+     * @param section Section of the item, 0 for a {@link StaggeredGridAdapter}
+     * @param position Position of the item within its section, -1 for the section header
+     * @param offset Distance in pixels between the beginning edge and the item
+     */
+    public void scrollToPosition(int section, int position, int offset) {
+        if (mAdapter == null || !mEngine.isStarted() || !shouldLayout() || mDataChanged) {
+            mPendingScrollSection = section;
+            mPendingScrollPosition = position;
+            mPendingScrollOffset = offset;
+            return;
+        }
+        abortScrollerAnimation();
+        cancelSmoothScroll();
+        mTouchMode = TOUCH_MODE_IDLE;
 
-    private boolean isIrrelevant(int lastRectStart, int lastRectEnd, int rectStart, int rectEnd) {
-        return lastRectStart >= rectStart && lastRectEnd <= rectEnd;
+        Placement target = placementFor(mEngine.getRawPosition(section, position));
+        if (target != null) {
+            scrollToOffset(placementStart(target) - offset);
+        }
     }
 
-    private boolean noMoreIrrelevants(int lastRectStart, int rectEnd) {
-        return lastRectStart > rectEnd;
+    /**
+     * Animate to the item at position so that it ends at the beginning edge of the grid.
+     *
+     * @param position Position of the item in a {@link StaggeredGridAdapter}
+     */
+    public void smoothScrollToPosition(int position) {
+        smoothScrollToPosition(0, position, 0);
     }
 
-    private ArrayList<Rect> calculateIrrelevantRects(Rect rect) {
-        ArrayList<Rect> ret = new ArrayList<Rect>();
-        int index = 0;
-        int lastRectStart;
-        int lastRectEnd;
-        int rectStart;
-        int rectEnd;
-
-        if (vertical()) {
-            rectStart = rect.left;
-            rectEnd = rect.right;
+    /**
+     * Animate to the given item so that it ends offset pixels from the beginning edge of the grid.
+     * The target does not need to be placed yet: its offset is estimated from what has been
+     * placed and corrected once placement reaches it. Long distances jump to within a few pages
+     * of the target first, and only the visible page is bound while the animation runs.
+     *
+     * @param section Section of the item, 0 for a {@link StaggeredGridAdapter}
+     * @param position Position of the item within its section, -1 for the section header
+     * @param offset Distance in pixels between the beginning edge and the item
+     */
+    public void smoothScrollToPosition(int section, int position, int offset) {
+        if (mAdapter == null || !mEngine.isStarted() || !shouldLayout() || mDataChanged ||
+                !mEngine.hasContent()) {
+            scrollToPosition(section, position, offset);
+            return;
         }
-        else {
-            rectStart = rect.top;
-            rectEnd = rect.bottom;
+        final int rawPosition = mEngine.getRawPosition(section, position);
+        if (rawPosition < 0 || (mEngine.isComplete() && rawPosition >= mEngine.getPlacedCount())) {
+            return;
         }
 
-        while (index < mPosRects.size()) {
-            Rect potentialIrrelevant = mPosRects.get(index);
-
-            if (vertical()) {
-                lastRectStart = potentialIrrelevant.left;
-                lastRectEnd = potentialIrrelevant.right;
-            }
-            else {
-                lastRectStart = potentialIrrelevant.top;
-                lastRectEnd = potentialIrrelevant.bottom;
-            }
-
-            if (isIrrelevant(lastRectStart, lastRectEnd, rectStart, rectEnd)) {
-                ret.add(potentialIrrelevant);
-            }
-            else if (noMoreIrrelevants(lastRectStart, rectEnd)) { //there are no more irrelevants bc we have accounted for rect's height
-                break;
-            }
-            index++;
+        abortScrollerAnimation();
+        mSmoothScrollRawPosition = rawPosition;
+        mSmoothScrollOffset = offset;
+        mSmoothScrollTargetPlaced = false;
+        refineSmoothScrollTarget();
+        if (!mSmoothScrollTargetPlaced) {
+            startSmoothScroll(mSmoothScrollTarget);
         }
-        return ret;
     }
 
-    private boolean shouldAddRectBefore(Rect rect, Rect r) {
-        if (vertical()) {
-            return rect.right <= r.right;
+    private void refineSmoothScrollTarget() {
+        if (mSmoothScrollRawPosition < mEngine.getPlacedCount()) {
+            Placement target = placementFor(mSmoothScrollRawPosition);
+            mSmoothScrollTargetPlaced = true;
+            if (target != null) {
+                startSmoothScroll(placementStart(target) - mSmoothScrollOffset);
+            }
         }
         else {
-            return rect.bottom <= r.bottom;
+            //not placed yet, extrapolate from the average extent of the items placed so far
+            mSmoothScrollTarget = (int) ((long) mEngine.getContentEnd() * mSmoothScrollRawPosition /
+                    Math.max(1, mEngine.getPlacedCount()));
         }
     }
 
-    private int nextAddIndexForRect(Rect rect) {
-        int index = mPosRects.size();
-        for (int i = 0; i < mPosRects.size(); i++) {
-            Rect r = mPosRects.get(i);
-            if (shouldAddRectBefore(rect, r)) {
-                index = i;
-                break;
-            }
-        }
-        return index;
-    }
+    private void startSmoothScroll(int targetOffset) {
+        mSmoothScrollTarget = targetOffset;
 
-    private boolean rectOverlapsRect(Rect r1, Rect r2) {
-        if (vertical()) {
-            return r2.left < r1.right;
+        //jump over anything further than a few pages away instead of binding it on the way
+        final int maxDistance = viewportLength() * SMOOTH_SCROLL_MAX_PAGES;
+        if (targetOffset - mCurrentOffset > maxDistance) {
+            scrollToOffset(targetOffset - maxDistance);
         }
-        else {
-            return r2.top < r1.bottom;
+        else if (mCurrentOffset - targetOffset > maxDistance) {
+            scrollToOffset(targetOffset + maxDistance);
         }
-    }
 
-    private Rect getTrimmedRect(Rect r1, Rect r2) {
+        final int delta = mCurrentOffset - targetOffset;
+        final int duration = Math.min(SMOOTH_SCROLL_MAX_DURATION,
+                SMOOTH_SCROLL_MIN_DURATION + Math.abs(delta) * SMOOTH_SCROLL_MIN_DURATION / Math.max(1, viewportLength()));
+        mLastTouchX = 0;
+        mLastTouchY = 0;
         if (vertical()) {
-            return new Rect(r1.right + mItemMargin, r2.top, r2.right, r2.bottom);
+            mScroller.startScroll(0, 0, 0, delta, duration);
         }
         else {
-            return new Rect(r2.left,r1.bottom + mItemMargin, r2.right, r2.bottom);
+            mScroller.startScroll(0, 0, delta, 0, duration);
         }
+        mTouchMode = TOUCH_MODE_FLINGING;
+        invalidate();
     }
 
-    private void trimAnyPosRectOverlap() {
-        if (mPosRects.size() < 2) {
-            return; //no work to be done
+    private void finishSmoothScroll() {
+        if (mSmoothScrollRawPosition == INVALID_POSITION) {
+            return;
         }
-        for (int i = 0; i < mPosRects.size()-1; i++) {
-            Rect r1 = mPosRects.get(i);
-            Rect r2 = mPosRects.get(i+1);
-            if (rectOverlapsRect(r1, r2)) { //need to trim
-                //trim
-                Rect trimmed = getTrimmedRect(r1, r2);
-                mPosRects.remove(i+1);
-                mPosRects.add(i+1, trimmed);
+        if (!mSmoothScrollTargetPlaced) {
+            //the estimate fell short of the item, place up to it and keep going
+            Placement target = placementFor(mSmoothScrollRawPosition);
+            mSmoothScrollTargetPlaced = true;
+            if (target != null) {
+                startSmoothScroll(placementStart(target) - mSmoothScrollOffset);
+                return;
             }
         }
-    }
+        final int target = mSmoothScrollTarget;
+        cancelSmoothScroll();
 
-    private void updatePosRects(Rect rect) {
-        int addIndex;
+        //land exactly on the item and bind the preloaded pages that were skipped
+        scrollToOffset(target);
+    }
 
-        //1) remove irrelevant rects
+    private void cancelSmoothScroll() {
+        mSmoothScrollRawPosition = INVALID_POSITION;
+        mSmoothScrollTargetPlaced = false;
+    }
 
-        //remove rects that rect will render irrelevant in next views position calculations
-        ArrayList<Rect> irrelevantRects = calculateIrrelevantRects(rect);
-        if (irrelevantRects.size() > 0) {
-            addIndex = mPosRects.indexOf(irrelevantRects.get(0));
-            mPosRects.removeAll(irrelevantRects);
+    private void scrollToOffset(int offset) {
+        ensurePlacedThrough(offset + viewportLength() + defaultAmountToLayout());
+        if (!mEngine.hasContent()) {
+            return; //nothing has been placed
+        }
+        if (contentFits()) {
+            //nothing to clamp against, just move back to the beginning
+            final int delta = mCurrentOffset - getMinAllowedOffset();
+            for (int i = 0; i < getChildCount(); i++) {
+                offsetChild(getChildAt(i), delta);
+            }
+            mCurrentOffset = getMinAllowedOffset();
         }
         else {
-            addIndex = nextAddIndexForRect(rect);
+            offsetChildren(mCurrentOffset - offset);
         }
-
-        // 2) add this rect
-
-        //add rect so can be used in future position calculations
-        mPosRects.add(addIndex, rect);
-
-        // 3) modify rects so that there is no overlap (ie. in case that one element takes whole height and then another takes half, modify whole element's top for future calculations
-        trimAnyPosRectOverlap();
+        recycleOffscreenItems();
+        layoutGridItems();
     }
 
-    private ItemSize getDefaultContentSize(Rect rect) {
-        ItemSize ret;
-        if (vertical()) {
-            ret = new ItemSize(getWidth(), rect.bottom);
+    //use this method if certain previous items wont be removed
+    public void reloadGridAppendItems() {
+        final boolean animate = beginItemAnimations();
+        final long start = beginPlacement();
+        final int firstStale;
+        try {
+            firstStale = mEngine.appendSections();
+        }
+        finally {
+            endPlacement(start);
+        }
+        //items placed again keep their views unless they moved, as the end of a justified row can
+        for (int i = mVisibleItems.size() - 1; i >= 0; i--) {
+            GridItem item = mVisibleItems.valueAt(i);
+            if (item.rawPosition >= firstStale) {
+                Placement placement = placementFor(item.rawPosition);
+                if (placement == null || !placement.rect.equals(item.rect)) {
+                    removeViewInLayout(item.view);
+                    mRecycler.addScrap(item.view);
+                    item.view = null;
+                    mVisibleItems.delete(mVisibleItems.keyAt(i));
+                }
+            }
         }
-        else {
-            ret = new ItemSize(rect.right, getHeight());
+        layoutGridItems();
+        if (animate) {
+            runItemAnimations();
         }
-        return ret;
     }
 
-    private void updateContentSize(Rect rect) {
-        if (mContentSize == null) {
-            mContentSize = getDefaultContentSize(rect);
+    /**
+     * Records where every attached header and item is drawn, keyed by stable ID, before the grid
+     * changes. Animations still running are ended first. Items moved out of the way of a dragged
+     * item are animated even with change animations off.
+     *
+     * @return false if the change is not going to be animated
+     */
+    private boolean beginItemAnimations() {
+        if ((!mItemAnimationsEnabled && !isReordering()) || !mHasStableIds || !GridItemAnimator.SUPPORTED ||
+                mVisibleItems.size() == 0) {
+            return false;
         }
-        else {
-            int currMeasure;
-            int proposedMeasure;
-            if (vertical()) {
-                currMeasure = mContentSize.height;
-                proposedMeasure = rect.bottom;
-            }
-            else {
-                currMeasure = mContentSize.width;
-                proposedMeasure = rect.right;
-            }
-            if (proposedMeasure > currMeasure) {
-                if (vertical()) {
-                    mContentSize.height = proposedMeasure;
-                }
-                else {
-                    mContentSize.width = proposedMeasure;
-                }
+        mItemsBefore.clear();
+        mSectionsBefore.clear();
+        for (int i = 0; i < mVisibleItems.size(); i++) {
+            GridItem item = mVisibleItems.valueAt(i);
+            final View view = item.view;
+            if (view != null) {
+                //where it is drawn, which is not where it is laid out while it is moving
+                final int left = view.getLeft() + Math.round(ViewCompat.getTranslationX(view));
+                final int top = view.getTop() + Math.round(ViewCompat.getTranslationY(view));
+                (item.isSection ? mSectionsBefore : mItemsBefore).put(item.id, new AttachedItem(view, left, top));
             }
         }
+        mItemAnimator.endAll();
+        return true;
     }
 
-    private Rect posRectFor(int itemLeft, int itemTop, int itemRight, int itemBottom, boolean isSection) {
-        if (isSection) {
-            if (vertical()) {
-                return new Rect(getBeginningLeft(), itemTop, getWidth()-getBeginningLeft(), itemBottom);
+    /**
+     * Diffs the attached items against what {@link #beginItemAnimations()} recorded. Items that
+     * moved slide from where they were, new ones fade in and ones no longer attached fade out
+     * where they were. Items off screen both before and after the change are left alone, so the
+     * work only grows with what can be seen moving.
+     */
+    private void runItemAnimations() {
+        final int width = getWidth();
+        final int height = getHeight();
+        for (int i = 0; i < mVisibleItems.size(); i++) {
+            GridItem item = mVisibleItems.valueAt(i);
+            final View view = item.view;
+            final AttachedItem before = (item.isSection ? mSectionsBefore : mItemsBefore).remove(item.id);
+            if (view == mReorderView) {
+                continue; //follows the finger instead
+            }
+            final boolean onScreen = intersectsScreen(view.getLeft(), view.getTop(),
+                    view.getRight(), view.getBottom(), width, height);
+            if (before == null) {
+                if (onScreen) {
+                    mItemAnimator.animateAppear(view);
+                }
             }
-            else {
-                return new Rect(itemLeft, getBeginningTop(), itemRight, getHeight()-getBeginningTop());
+            else if (before.left != view.getLeft() || before.top != view.getTop()) {
+                if (onScreen || intersectsScreen(before.left, before.top, before.left + view.getWidth(),
+                        before.top + view.getHeight(), width, height)) {
+                    mItemAnimator.animateMove(view, before.left - view.getLeft(), before.top - view.getTop());
+                }
             }
         }
-        else {
-            return new Rect(itemLeft, itemTop, itemRight, itemBottom);
-        }
+        disappearItems(mItemsBefore, width, height);
+        disappearItems(mSectionsBefore, width, height);
+        mItemsBefore.clear();
+        mSectionsBefore.clear();
+        mItemAnimator.start();
     }
 
-    private Rect viewRectFor(int itemLeft, int itemTop, int itemRight, int itemBottom, boolean isSection, Rect posRect) {
-        if (isSection) {
-            return new Rect(itemLeft, itemTop, itemRight, itemBottom);
-        }
-        else {
-            return posRect;
+    //whatever was not matched was removed or moved out of the attached range
+    private void disappearItems(HashMap<Long, AttachedItem> items, int width, int height) {
+        for (AttachedItem before : items.values()) {
+            final View view = before.view;
+            final int right = before.left + view.getWidth();
+            final int bottom = before.top + view.getHeight();
+            //a view rebound to another item is already taken
+            if (view.getParent() != null || !intersectsScreen(before.left, before.top, right, bottom, width, height)) {
+                continue;
+            }
+            mRecycler.removeScrap(view);
+            //drawn beneath the attached items, which may be sliding over where it was
+            addViewInLayout(view, 0, view.getLayoutParams(), true);
+            view.layout(before.left, before.top, right, bottom);
+            mItemAnimator.animateDisappear(view);
         }
     }
 
-    private Rect calculateNextItemRect(ItemSize size, boolean isSection) {
-        int itemWidth = size.width;
-        int itemHeight = size.height;
-
-        Point point = getNextPoint(vertical()?itemWidth:itemHeight, isSection);
-        int nextLeft = point.x;
-        int nextTop = point.y;
-
-        int itemLeft = nextLeft;
-        int itemRight = itemLeft + itemWidth;
-        final int itemTop = nextTop;
-        final int itemBottom = itemTop + itemHeight;
-
-        Rect posRect = posRectFor(itemLeft, itemTop, itemRight, itemBottom, isSection);
-        updatePosRects(posRect);
-        updateContentSize(posRect);
+    private static boolean intersectsScreen(int left, int top, int right, int bottom, int width, int height) {
+        return right > 0 && bottom > 0 && left < width && top < height;
+    }
 
-        Rect viewRect = viewRectFor(itemLeft, itemTop, itemRight, itemBottom, isSection, posRect);
-        return viewRect;
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        traceBegin(GridTrace.ON_LAYOUT);
+        try {
+            mInLayout = true;
+            if (mLayoutMetrics != null) {
+                mLayoutMetrics.layoutPasses++;
+            }
+            if (shouldLayout()) {
+                reloadGrid();
+            }
+            mInLayout = false;
+            updateEdgeSizes(l, t, r, b);
+        }
+        finally {
+            traceEnd();
+        }
     }
 
     private StaggeredGridSectionAdapter getSectionAdapter() {
@@ -1199,93 +1814,72 @@ public class StaggeredGridView extends ViewGroup {
         return mAdapter instanceof StaggeredGridSectionAdapter;
     }
 
-    private ArrayList<Integer> getSectionsFromAdapter() {
-        ArrayList<Integer> ret = new ArrayList<Integer>();
-        if (hasSectionAdapter()) {
-            for (int i = 0; i < getSectionAdapter().getSectionCount(); i++) {
-                ret.add(getSectionAdapter().getItemCountForSection(i));
-            }
-            return ret;
-        }
-        ret.add(mAdapter.getCount());
-        return ret;
+    private int viewportLength() {
+        return vertical() ? getHeight() : getWidth();
     }
 
-    private ArrayList<GridItem> buildGridItems() {
-        mRawPosition = 0;
-        mSectionIndexes = getSectionsFromAdapter();
-        return buildGridItems(0, mSectionIndexes.size());
+    private void updateResidentRange(int offset) {
+        scrollWindow().setResidentRange(offset);
     }
 
-    private ArrayList<GridItem> buildGridItems(int sectionStart, int sectionEnd) {
-        if (mAdapter == null) {
-            return null;
-        }
-
-        ArrayList<GridItem> items = new ArrayList<GridItem>();
-
-        for (int i = sectionStart; i < sectionEnd; i++) {
-            if (hasSectionAdapter()) {
-                GridItem sectionItem = new GridItem();
-                sectionItem.id = getSectionAdapter().getSectionID(i);
-                sectionItem.position = i;
-                sectionItem.section = i;
-                sectionItem.isSection = true;
-                sectionItem.rawPosition = mRawPosition;
-                ItemSize sectionSize = getSectionAdapter().getSectionSize(i);
-                sectionItem.rect = calculateNextItemRect(sectionSize, sectionItem.isSection);
-                items.add(i,sectionItem);
-            }
-
-            int numItemsInSection = mSectionIndexes.get(i);
-            for (int j = 0; j < numItemsInSection; j++) {
-                mRawPosition++;
+    private void ensurePlacedThrough(int end) {
+        scrollWindow().ensurePlacedThrough(end);
+    }
 
-                GridItem item = new GridItem();
-                item.id = mAdapter.getItemId(j);
-                item.position = j;
-                item.section = i;
-                item.isSection = false;
-                item.rawPosition = mRawPosition;
-                ItemSize size = mAdapter.getItemSize(j);
-                item.rect = calculateNextItemRect(size, item.isSection);
-                items.add(j,item);
-            }
-            mRawPosition++;
+    private Placement placementFor(int rawPosition) {
+        final long start = beginPlacement();
+        try {
+            return mEngine.getPlacement(rawPosition);
+        }
+        finally {
+            endPlacement(start);
         }
-        return items;
     }
 
-    private boolean shouldLayout(Rect itemRect, Rect layoutRect) {
-        return Rect.intersects(layoutRect, itemRect);
+    //every call into the layout engine that may place items is traced and timed as placement
+    private long beginPlacement() {
+        traceBegin(GridTrace.PLACEMENT);
+        return mLayoutMetrics != null ? System.nanoTime() : 0;
     }
 
-    private Rect getLayoutRect(int start, int end) {
-        if (vertical()) {
-            return new Rect(getBeginningLeft(), start, getEndingRight(), end);
-        }
-        else {
-            return new Rect(start, getBeginningTop(), end, getEndingBottom());
+    private void endPlacement(long start) {
+        if (mLayoutMetrics != null) {
+            mLayoutMetrics.placementNanos += System.nanoTime() - start;
         }
+        traceEnd();
     }
 
+    /**
+     * @return The view bound to item, or null if the adapter gave none, which is reported as a
+     *         diagnostic event
+     */
     private View getViewForGridItem(GridItem item) {
-        int position = item.position;
-        final View child;
-        if (item.isSection) {
-            child = obtainSectionView(position, null, item.rawPosition);
-        }
-        else {
-            if (hasSectionAdapter()) {
-                child = obtainView(position, null, item.rawPosition, item.section);
+        //an item only moving while another is dragged keeps its view
+        View child = item.isSection || mReorderViews.isEmpty() ? null : mReorderViews.remove(item.id);
+        if (child == null) {
+            traceBegin(GridTrace.OBTAIN_VIEW);
+            try {
+                if (item.isSection) {
+                    child = obtainSectionView(item.position, null, item.rawPosition);
+                }
+                else {
+                    final int position = adapterPosition(item.section, item.position);
+                    if (hasSectionAdapter()) {
+                        child = obtainView(position, null, item.rawPosition, item.section);
+                    }
+                    else {
+                        child = obtainView(position, null, item.rawPosition);
+                    }
+                }
             }
-            else {
-                child = obtainView(position, null, item.rawPosition);
+            finally {
+                traceEnd();
             }
         }
 
         if(child == null) {
-            Log.d("PROBLEM", "NULL CHILD");
+            reportDiagnostic(DIAGNOSTIC_NULL_CHILD, item.rawPosition);
+            return null;
         }
 
         LayoutParams lp = (LayoutParams) child.getLayoutParams();
@@ -1295,19 +1889,28 @@ public class StaggeredGridView extends ViewGroup {
         }
         child.setTag(R.string.GRID_ITEM_TAG, item);
         if (child.getParent() != this) {
+            //beneath the pinned header
+            final int index = isStickyHeaderAttached() ? getChildCount() - 1 : -1;
 //            if (mInLayout) {
-            addViewInLayout(child, -1, lp); //always addViewInLayout so we dont trigger onLayout
+            addViewInLayout(child, index, lp); //always addViewInLayout so we dont trigger onLayout
 //            } else {
 //                addView(child);
 //            }
-//            Log.d("MYVIEWCOUNT", String.valueOf(this.getChildCount()));
         }
         return child;
     }
 
     private void layoutGridItem(GridItem item) {
         View child = getViewForGridItem(item);
+        if (child == null) {
+            //left unbound, so the next layout asks the adapter again
+            return;
+        }
         child.measure(item.rect.width(),item.rect.height());
+        if (mLayoutMetrics != null) {
+            mLayoutMetrics.measureCalls++;
+            mLayoutMetrics.layoutCalls++;
+        }
         if (vertical()) {
             child.layout(item.rect.left, item.rect.top-mCurrentOffset, item.rect.right, item.rect.bottom-mCurrentOffset);
         }
@@ -1315,72 +1918,143 @@ public class StaggeredGridView extends ViewGroup {
             child.layout(item.rect.left-mCurrentOffset, item.rect.top, item.rect.right-mCurrentOffset, item.rect.bottom);
         }
         item.view = child;
-//        mVisibleItems.add(item.position, item);
-        mVisibleItems.add(item);
+        mVisibleItems.put(item.rawPosition, item);
+        mBindCount++;
+        if (mChoiceMode != CHOICE_MODE_NONE && !item.isSection) {
+            ViewCompat.setActivated(child, mSelection.isSelected(checkedRawPosition(item)));
+        }
+        if (isReordering() && !item.isSection && item.section == mReorderSection && item.position == mReorderTo) {
+            mReorderView = child;
+            followReorderTouch();
+        }
     }
 
-    private ArrayList<GridItem> getNextVisibleItems(int start, int end) {
-        ArrayList<GridItem> ret = new ArrayList<GridItem>();
-        Rect layoutRect = getLayoutRect(start, end);
-        for (int i = 0; i < mGridItems.size(); i++) {
-            GridItem item = mGridItems.get(i);
-            if (shouldLayout(item.rect, layoutRect)) {
-                ret.add(item);
-            }
+    private void layoutGridItems() {
+        if (mSmoothScrollRawPosition != INVALID_POSITION) {
+            //only bind what is on screen while animating towards a position
+            layoutGridItems(mCurrentOffset, mCurrentOffset+viewportLength());
         }
-        return ret;
+        else {
+            layoutGridItems(mCurrentOffset, mCurrentOffset+defaultAmountToLayout());
+        }
+        updateStickyHeader();
+        invalidateAccessibilityItems();
     }
 
-    private boolean needsLayout(ArrayList<GridItem>nextVisibles) {
-        return !nextVisibles.equals(mVisibleItems);
+    /**
+     * Tells accessibility services the virtual views changed, only while one is on and only
+     * when items were bound or unbound since it was last told. Any new binding moves
+     * mBindCount and unbinding alone shrinks mVisibleItems, so comparing both is enough.
+     */
+    private void invalidateAccessibilityItems() {
+        if (mAccessibilityManager == null || !mAccessibilityManager.isEnabled()) {
+            return;
+        }
+        final int boundItems = mVisibleItems.size();
+        if (mBindCount == mAccessibilityBindCount && boundItems == mAccessibilityBoundItems) {
+            return;
+        }
+        mAccessibilityBindCount = mBindCount;
+        mAccessibilityBoundItems = boundItems;
+        mAccessibilityHelper.invalidateRoot();
     }
 
-    private void layoutItems(ArrayList<GridItem>nextVisibles) {
-        if (nextVisibles.size() == 0) {
-            return; //no items to add to grid
+    /**
+     * Works out which section's header is pinned and where. The header view is only rebound
+     * when the section changes; while scrolling within a section it is only offset, and not
+     * touched at all while its section and position stay the same.
+     */
+    private void updateStickyHeader() {
+        if (mStickySectionHeaders && hasSectionAdapter() && mEngine.hasContent()) {
+            final int pinEdge = vertical() ? getPaddingTop() + mItemMargin : getPaddingLeft() + mItemMargin;
+            final int section = mEngine.getSectionAt(mCurrentOffset + pinEdge);
+            final Placement header = section != INVALID_POSITION ? mEngine.getSectionHeader(section) : null;
+            //nothing to pin while the header is still where it was placed
+            if (header != null && placementStart(header) - mCurrentOffset < pinEdge) {
+                final int length = header.rect.end(vertical()) - header.rect.start(vertical());
+                int pinnedStart = pinEdge;
+                final Placement next = mEngine.getSectionHeader(section + 1);
+                if (next != null) {
+                    //the next header pushes the pinned one out as it arrives
+                    pinnedStart = Math.min(pinnedStart, placementStart(next) - mCurrentOffset - mItemMargin - length);
+                }
+                final int left = vertical() ? header.rect.left : pinnedStart;
+                final int top = vertical() ? pinnedStart : header.rect.top;
+                if (mStickyHeaderVisible && section == mStickyHeaderSection &&
+                        left == mStickyHeaderLeft && top == mStickyHeaderTop && isStickyHeaderAttached()) {
+                    return;
+                }
+                bindStickyHeader(section, header, left, top);
+                return;
+            }
         }
-        for (int i = 0; i < nextVisibles.size(); i++) {
-            GridItem item = nextVisibles.get(i);
-            if (!mVisibleItems.contains(item)) {
-                layoutGridItem(item);
+        if (mStickyHeaderVisible) {
+            mStickyHeaderVisible = false;
+            if (mStickyHeaderView != null) {
+                mStickyHeaderView.setVisibility(View.INVISIBLE);
             }
         }
     }
 
-    private void layoutGridItems() {
-        layoutGridItems(mCurrentOffset, mCurrentOffset+defaultAmountToLayout());
+    private boolean isStickyHeaderAttached() {
+        return mStickyHeaderView != null && mStickyHeaderView.getParent() == this;
     }
 
-    private void layoutGridItems(int start, int end) {
-        ArrayList<GridItem> nextVisibles = getNextVisibleItems(start, end);
-        if (needsLayout(nextVisibles)) {
-            layoutItems(nextVisibles);
+    private void bindStickyHeader(int section, Placement header, int left, int top) {
+        final View previous = mStickyHeaderView;
+        if (section != mStickyHeaderSection || previous == null || !isStickyHeaderAttached()) {
+            final int viewType = getSectionAdapter().getSectionViewType(section);
+            //a header of another type can't be rebound into this one
+            final View convertView = viewType == mStickyHeaderViewType ? previous : null;
+            final View view = getSectionAdapter().getSectionView(section, convertView, this);
+            if (previous != null && previous != view && previous.getParent() == this) {
+                removeViewInLayout(previous);
+            }
+            if (view.getParent() != this) {
+                final ViewGroup.LayoutParams params = view.getLayoutParams();
+                final LayoutParams lp = params instanceof LayoutParams ?
+                        (LayoutParams) params : generateDefaultLayoutParams();
+                addViewInLayout(view, -1, lp, true);
+            }
+            view.measure(MeasureSpec.makeMeasureSpec(header.rect.width(), MeasureSpec.EXACTLY),
+                    MeasureSpec.makeMeasureSpec(header.rect.height(), MeasureSpec.EXACTLY));
+            view.layout(left, top, left + header.rect.width(), top + header.rect.height());
+            mStickyHeaderView = view;
+            mStickyHeaderViewType = viewType;
+            mStickyHeaderSection = section;
         }
+        else {
+            mStickyHeaderView.offsetLeftAndRight(left - mStickyHeaderView.getLeft());
+            mStickyHeaderView.offsetTopAndBottom(top - mStickyHeaderView.getTop());
+        }
+        if (!mStickyHeaderVisible) {
+            mStickyHeaderView.setVisibility(View.VISIBLE);
+            mStickyHeaderVisible = true;
+        }
+        mStickyHeaderLeft = left;
+        mStickyHeaderTop = top;
     }
 
-    private int getMinAllowedOffset() {
+    private void layoutGridItems(int start, int end) {
+        traceBegin(GridTrace.LAYOUT_GRID_ITEMS);
+        try {
+            scrollWindow().bindRange(mCurrentOffset, start, end);
+        }
+        finally {
+            traceEnd();
+        }
+    }
+
+    private int getMinAllowedOffset() {
         return 0;
     }
 
     private int getMaxAllowedOffset() {
-        if (vertical()) {
-            return mContentSize.height - getHeight() + mItemMargin;
-        }
-        else {
-            return mContentSize.width - getWidth() + mItemMargin;
-        }
+        return scrollWindow().getMaxOffset();
     }
 
     final void offsetChildren(int offset) {
-//        Log.d("CURR OFFSET", String.valueOf(mCurrentOffset));
-
-        int nextPredictedOffset = mCurrentOffset - offset;
-        if (nextPredictedOffset < getMinAllowedOffset()) {
-            offset = mCurrentOffset;
-        }
-        else if (nextPredictedOffset > getMaxAllowedOffset()) {
-            offset = mCurrentOffset - getMaxAllowedOffset();
-        }
+        offset = mCurrentOffset - scrollWindow().clampOffset(mCurrentOffset - offset);
 
         if (offset != 0) {
             final int childCount = getChildCount();
@@ -1393,6 +2067,12 @@ public class StaggeredGridView extends ViewGroup {
     }
 
     final void offsetChild(View child, int offset) {
+        if (child == mStickyHeaderView) {
+            return; //placed by updateStickyHeader
+        }
+        if (mLayoutMetrics != null) {
+            mLayoutMetrics.layoutCalls++;
+        }
         if (vertical()) {
             int nextTop = child.getTop() + offset;
             int nextBottom = child.getBottom() + offset;
@@ -1413,16 +2093,26 @@ public class StaggeredGridView extends ViewGroup {
         }
 
         if(position >= getSectionAdapter().getCount()){
-            Log.d("PROBLEM", "ASKING FOR POSITION THAT DOESNT EXIST");
+            reportDiagnostic(DIAGNOSTIC_POSITION_OUT_OF_RANGE, rawPosition);
             return null;
         }
 
         // Reuse optScrap if it's of the right type (and not null)
         final int optType = optScrap != null ? ((LayoutParams) optScrap.getLayoutParams()).viewType : -1;
-        final int positionViewType = getAdapterViewTypeCount() - 1; //position
+        final int positionViewType = mRecycler.getSectionScrapType(getSectionAdapter().getSectionViewType(position));
         final View scrap = optType == positionViewType ? optScrap : mRecycler.getScrapView(positionViewType);
 
-        view = getSectionAdapter().getSectionView(position, scrap, this);
+        final long start = mLayoutMetrics != null ? System.nanoTime() : 0;
+        traceBegin(scrap != null ? GridTrace.REBIND : GridTrace.INFLATE);
+        try {
+            view = getSectionAdapter().getSectionView(position, scrap, this);
+        }
+        finally {
+            traceEnd();
+        }
+        if (mLayoutMetrics != null) {
+            recordGetView(start, positionViewType, scrap, view);
+        }
 
         if (view != scrap && scrap != null) {
             // The adapter didn't use it; put it back.
@@ -1463,7 +2153,7 @@ public class StaggeredGridView extends ViewGroup {
         }
 
         if(position >= mAdapter.getCount()){
-            Log.d("PROBLEM", "ASKING FOR POSITION THAT DOESNT EXIST");
+            reportDiagnostic(DIAGNOSTIC_POSITION_OUT_OF_RANGE, rawPosition);
             return null;
         }
 
@@ -1472,11 +2162,21 @@ public class StaggeredGridView extends ViewGroup {
         final int positionViewType = mAdapter.getItemViewType(position);
         final View scrap = optType == positionViewType ? optScrap : mRecycler.getScrapView(positionViewType);
 
-        if (hasSectionAdapter()) {
-            view = getSectionAdapter().getView(section, position, scrap, this);
+        final long start = mLayoutMetrics != null ? System.nanoTime() : 0;
+        traceBegin(scrap != null ? GridTrace.REBIND : GridTrace.INFLATE);
+        try {
+            if (hasSectionAdapter()) {
+                view = getSectionAdapter().getView(section, position, scrap, this);
+            }
+            else {
+                view = mAdapter.getView(position, scrap, this);
+            }
         }
-        else {
-            view = mAdapter.getView(position, scrap, this);
+        finally {
+            traceEnd();
+        }
+        if (mLayoutMetrics != null) {
+            recordGetView(start, positionViewType, scrap, view);
         }
 
         if (view != scrap && scrap != null) {
@@ -1505,12 +2205,25 @@ public class StaggeredGridView extends ViewGroup {
         return obtainView(position, optScrap, rawPosition, -1);
     }
 
+    private void recordGetView(long start, int viewType, View scrap, View view) {
+        mLayoutMetrics.getViewNanos += System.nanoTime() - start;
+        if (scrap == null && viewType < mLayoutMetrics.scrapMisses.length) {
+            mLayoutMetrics.scrapMisses[viewType]++;
+        }
+        if (scrap != null && view == scrap) {
+            mLayoutMetrics.viewsRecycled++;
+        }
+        else {
+            mLayoutMetrics.viewsCreated++;
+        }
+    }
+
     public ListAdapter getAdapter() {
         return mAdapter;
     }
 
     private int getSectionAdapterViewTypeCount() {
-        return 1; //for now only support one view type for header
+        return getSectionAdapter().getSectionViewTypeCount();
     }
 
     private int getAdapterViewTypeCount() {
@@ -1532,11 +2245,18 @@ public class StaggeredGridView extends ViewGroup {
 
         if (adapter != null) {
             adapter.registerDataSetObserver(mObserver);
-            mRecycler.setViewTypeCount(getAdapterViewTypeCount());
+            mItemCount = adapter.getCount();
+            mRecycler.setViewTypeCount(adapter.getViewTypeCount(),
+                    hasSectionAdapter() ? getSectionAdapterViewTypeCount() : 0);
+            if (mLayoutMetrics != null) {
+                mLayoutMetrics.setViewTypeCount(getAdapterViewTypeCount());
+            }
             mHasStableIds = adapter.hasStableIds();
         } else {
+            mItemCount = 0;
             mHasStableIds = false;
         }
+        mSelection.setTrackIds(mHasStableIds);
         //TODO:
 //        populate(adapter!=null);
     }
@@ -1545,13 +2265,20 @@ public class StaggeredGridView extends ViewGroup {
      * Clear all state because the grid will be used for a completely different set of data.
      */
     private void clearAllState() {
+        cancelReorder();
+        mSelection.clear();
+        mItemAnimator.endAll();
+
         // Clear all grid items and views
-        mGridItems.clear();
-        mPosRects.clear();
+        mEngine.clear();
+        mVisibleItems.clear();
         removeAllViews();
 
         // Clear recycler because there could be different view types now
         mRecycler.clear();
+        mStickyHeaderView = null;
+        mStickyHeaderSection = INVALID_POSITION;
+        mStickyHeaderVisible = false;
     }
 
     @Override
@@ -1633,17 +2360,25 @@ public class StaggeredGridView extends ViewGroup {
     }
 
     private class RecycleBin {
+        //one pool per adapter view type, followed by one per section header view type
         private ArrayList<View>[] mScrapViews;
         private int mViewTypeCount;
+        private int mItemViewTypeCount;
         private int mMaxScrap;
 
         private SparseArray<View> mTransientStateViews;
 
-        public void setViewTypeCount(int viewTypeCount) {
-            if (viewTypeCount < 1) {
+        public void setViewTypeCount(int itemViewTypeCount, int sectionViewTypeCount) {
+            if (itemViewTypeCount < 1) {
                 throw new IllegalArgumentException("Must have at least one view type (" +
-                        viewTypeCount + " types reported)");
+                        itemViewTypeCount + " types reported)");
             }
+            if (sectionViewTypeCount < 0) {
+                throw new IllegalArgumentException("Negative section view type count (" +
+                        sectionViewTypeCount + " types reported)");
+            }
+            final int viewTypeCount = itemViewTypeCount + sectionViewTypeCount;
+            mItemViewTypeCount = itemViewTypeCount;
             if (viewTypeCount == mViewTypeCount) {
                 return;
             }
@@ -1658,6 +2393,18 @@ public class StaggeredGridView extends ViewGroup {
             mScrapViews = scrapViews;
         }
 
+        /**
+         * @return The scrap pool holding section headers of the given section view type
+         */
+        public int getSectionScrapType(int sectionViewType) {
+            if (sectionViewType < 0 || sectionViewType >= mViewTypeCount - mItemViewTypeCount) {
+                throw new IllegalStateException("Section view type " + sectionViewType +
+                        " is out of range, the adapter reports " +
+                        (mViewTypeCount - mItemViewTypeCount) + " section view types");
+            }
+            return mItemViewTypeCount + sectionViewType;
+        }
+
         public void clear() {
             final int typeCount = mViewTypeCount;
             for (int i = 0; i < typeCount; i++) {
@@ -1675,6 +2422,12 @@ public class StaggeredGridView extends ViewGroup {
         }
 
         public void addScrap(View v) {
+            mItemAnimator.end(v);
+            if (v == mReorderView) {
+                ViewCompat.setTranslationX(v, 0);
+                ViewCompat.setTranslationY(v, 0);
+                mReorderView = null;
+            }
             final LayoutParams lp = (LayoutParams) v.getLayoutParams();
             if (ViewCompat.hasTransientState(v)) {
                 if (mTransientStateViews == null) {
@@ -1695,6 +2448,23 @@ public class StaggeredGridView extends ViewGroup {
             }
         }
 
+        /**
+         * Takes v back out of the bin, as when it is kept on screen while it fades out.
+         */
+        public void removeScrap(View v) {
+            final LayoutParams lp = (LayoutParams) v.getLayoutParams();
+            if (mTransientStateViews != null) {
+                final int index = mTransientStateViews.indexOfValue(v);
+                if (index >= 0) {
+                    mTransientStateViews.delete(mTransientStateViews.keyAt(index));
+                    return;
+                }
+            }
+            if (lp.viewType < mViewTypeCount) {
+                mScrapViews[lp.viewType].remove(v);
+            }
+        }
+
         public View getTransientStateView(int position) {
             if (mTransientStateViews == null) {
                 return null;
@@ -1723,6 +2493,7 @@ public class StaggeredGridView extends ViewGroup {
     private class AdapterDataSetObserver extends DataSetObserver {
         @Override
         public void onChanged() {
+            cancelReorder();
             mDataChanged = true;
             mItemCount = mAdapter.getCount();
 
@@ -1731,11 +2502,9 @@ public class StaggeredGridView extends ViewGroup {
 
             if (!mHasStableIds) {
                 // Clear all layout records and recycle the views
-                mGridItems.clear();
-
+                mEngine.clear();
                 recycleAllViews();
-
-                mPosRects.clear();
+                mVisibleItems.clear();
             }
 
             // TODO: consider repopulating in a deferred runnable instead
@@ -1748,56 +2517,95 @@ public class StaggeredGridView extends ViewGroup {
         }
     }
 
-    static class ColMap implements Parcelable {
-        private ArrayList<Integer> values;
-        int tempMap[];
-
-        public ColMap(ArrayList<Integer> values){
-            this.values = values;
-        }
-
-        private ColMap(Parcel in) {
-            in.readIntArray(tempMap);
-            values = new ArrayList<Integer>();
-            for (int index = 0; index < tempMap.length; index++) {
-                values.add(tempMap[index]);
+    @Override
+    public Parcelable onSaveInstanceState() {
+        final Parcelable superState = super.onSaveInstanceState();
+        mEngine.flushPlacementCache();
+        final SavedState ss = new SavedState(superState);
+        ss.choiceMode = mChoiceMode;
+        ss.selectionBits = mSelection.getBits();
+        ss.selectionInverted = mSelection.isInverted();
+        ss.selectedIds = mSelection.getIds();
+        ss.selectedIdPositions = mSelection.getIdPositions(ss.selectedIds);
+
+        GridItem anchor = null;
+        for (int i = 0; i < mVisibleItems.size(); i++) {
+            GridItem item = mVisibleItems.valueAt(i);
+            if (itemEnd(item) > mCurrentOffset &&
+                    (anchor == null || itemStart(item) < itemStart(anchor) ||
+                            (itemStart(item) == itemStart(anchor) && item.rawPosition < anchor.rawPosition))) {
+                anchor = item;
             }
         }
-
-        @Override
-        public void writeToParcel(Parcel out, int flags) {
-            tempMap = toIntArray(values);
-            out.writeIntArray(tempMap);
+        if (anchor == null) {
+            return ss;
         }
 
-        public static final Creator<ColMap> CREATOR = new Creator<ColMap>() {
-            public ColMap createFromParcel(Parcel source) {
-                return new ColMap(source);
-            }
+        ss.firstId = anchor.id;
+        ss.section = anchor.section;
+        ss.position = anchor.isSection ? -1 : anchor.position;
+        ss.offset = itemStart(anchor) - mCurrentOffset;
+        ss.placementKey = mEngine.getPlacementKey();
+        ss.checkpoints = mEngine.encodeCheckpoints(anchor.rawPosition);
+        return ss;
+    }
 
-            public ColMap[] newArray(int size) {
-                return new ColMap[size];
-            }
-        };
+    @Override
+    public void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof SavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+        final SavedState ss = (SavedState) state;
+        super.onRestoreInstanceState(ss.getSuperState());
+        mChoiceMode = ss.choiceMode;
+        mSelection.restore(ss.selectionBits, ss.selectionInverted, ss.selectedIds, ss.selectedIdPositions);
+        if (ss.firstId != -1) {
+            mRestoreState = ss;
+            requestLayout();
+        }
+    }
 
-        int[] toIntArray(ArrayList<Integer> list) {
-            int[] ret = new int[list.size()];
-            for (int i = 0; i < ret.length; i++)
-                ret[i] = list.get(i);
-            return ret;
+    /**
+     * Restores the anchor item from saved state. When paging placement data, the saved checkpoints
+     * are reused so placement resumes right before the anchor instead of from the first item;
+     * otherwise everything before the anchor has to be placed to be kept resident anyway.
+     */
+    private void applyRestoreState(SavedState ss) {
+        if (mAdapter == null || ss.section >= mEngine.getSectionCount()) {
+            return;
         }
+        if (ss.position >= mEngine.getItemCount(ss.section)) {
+            return;
+        }
+        final boolean sameItem = !mHasStableIds || itemIdFor(ss.section, ss.position) == ss.firstId;
+        if (sameItem) {
+            mEngine.restoreCheckpoints(ss.placementKey, ss.checkpoints);
+        }
+        mPendingScrollSection = ss.section;
+        mPendingScrollPosition = ss.position;
+        mPendingScrollOffset = ss.offset;
+    }
 
-        @Override
-        public int describeContents() {
-            return 0;
+    private long itemIdFor(int section, int position) {
+        if (position < 0) {
+            return getSectionAdapter().getSectionID(section);
         }
+        return mAdapter.getItemId(adapterPosition(section, position));
     }
 
     static class SavedState extends BaseSavedState {
         long firstId = -1;
+        int section;
         int position;
-        int topOffsets[];
-        ArrayList<ColMap> mapping;
+        int offset;
+        int placementKey[];
+        int checkpoints[];
+        int choiceMode;
+        long selectionBits[];
+        boolean selectionInverted;
+        long selectedIds[];
+        int selectedIdPositions[];
 
         SavedState(Parcelable superState) {
             super(superState);
@@ -1806,19 +2614,32 @@ public class StaggeredGridView extends ViewGroup {
         private SavedState(Parcel in) {
             super(in);
             firstId = in.readLong();
+            section = in.readInt();
             position = in.readInt();
-            in.readIntArray(topOffsets);
-            in.readTypedList(mapping, ColMap.CREATOR);
-
+            offset = in.readInt();
+            placementKey = in.createIntArray();
+            checkpoints = in.createIntArray();
+            choiceMode = in.readInt();
+            selectionBits = in.createLongArray();
+            selectionInverted = in.readInt() != 0;
+            selectedIds = in.createLongArray();
+            selectedIdPositions = in.createIntArray();
         }
 
         @Override
         public void writeToParcel(Parcel out, int flags) {
             super.writeToParcel(out, flags);
             out.writeLong(firstId);
+            out.writeInt(section);
             out.writeInt(position);
-            out.writeIntArray(topOffsets);
-            out.writeTypedList(mapping);
+            out.writeInt(offset);
+            out.writeIntArray(placementKey);
+            out.writeIntArray(checkpoints);
+            out.writeInt(choiceMode);
+            out.writeLongArray(selectionBits);
+            out.writeInt(selectionInverted ? 1 : 0);
+            out.writeLongArray(selectedIds);
+            out.writeIntArray(selectedIdPositions);
         }
 
         @Override
@@ -1826,6 +2647,7 @@ public class StaggeredGridView extends ViewGroup {
             return "StaggereGridView.SavedState{"
                     + Integer.toHexString(System.identityHashCode(this))
                     + " firstId=" + firstId
+                    + " section=" + section
                     + " position=" + position + "}";
         }
 
@@ -1896,8 +2718,7 @@ public class StaggeredGridView extends ViewGroup {
             if (mTouchMode == TOUCH_MODE_DOWN) {
 
                 mTouchMode = TOUCH_MODE_TAP;
-//                final View child = getChildAt(mMotionPosition - mFirstPosition);
-                final View child = getChildAt(mMotionPosition);
+                final View child = mMotionItem != null ? mMotionItem.view : null;
                 if (child != null && !child.hasFocusable()) {
 
                     if (!mDataChanged) {
@@ -1910,7 +2731,7 @@ public class StaggeredGridView extends ViewGroup {
                         refreshDrawableState();
 
                         final int longPressTimeout = ViewConfiguration.getLongPressTimeout();
-                        final boolean longClickable = isLongClickable();
+                        final boolean longClickable = isLongClickable() || mReorderEnabled;
 
                         if (longClickable) {
                             if (mPendingCheckForLongPress == null) {
@@ -1933,15 +2754,18 @@ public class StaggeredGridView extends ViewGroup {
 
     private class CheckForLongPress extends WindowRunnnable implements Runnable {
         public void run() {
-            final int motionPosition = mMotionPosition;
-//            final View child = getChildAt(motionPosition - mFirstPosition);
-            final View child = getChildAt(motionPosition);
+            final GridItem motionItem = mMotionItem;
+            final View child = motionItem != null ? motionItem.view : null;
             if (child != null) {
-                final int longPressPosition = mMotionPosition;
-                final long longPressId = mAdapter.getItemId(mMotionPosition);
+                final int longPressPosition = motionItem.position;
+                final long longPressId = motionItem.id;
 
                 boolean handled = false;
                 if (sameWindow() && !mDataChanged) {
+                    if (mReorderEnabled && mTouchMode == TOUCH_MODE_TAP && !motionItem.isSection) {
+                        startReorder(motionItem);
+                        return;
+                    }
                     handled = performLongPress(child, longPressPosition, longPressId);
                 }
                 if (handled) {
@@ -1956,7 +2780,7 @@ public class StaggeredGridView extends ViewGroup {
     }
 
     private class PerformClick extends WindowRunnnable implements Runnable {
-        int mClickMotionPosition;
+        GridItem mClickMotionItem;
 
         public void run() {
             // The data has changed since we posted this action in the event queue,
@@ -1964,21 +2788,29 @@ public class StaggeredGridView extends ViewGroup {
             if (mDataChanged) return;
 
             final ListAdapter adapter = mAdapter;
-            final int motionPosition = mClickMotionPosition;
-            if (adapter != null && mItemCount > 0 &&
-                    motionPosition != INVALID_POSITION &&
-                    motionPosition < adapter.getCount() && sameWindow()) {
-//                final View view = getChildAt(motionPosition - mFirstPosition);
-                final View view = getChildAt(motionPosition);
+            final GridItem motionItem = mClickMotionItem;
+            if (adapter != null && mItemCount > 0 && motionItem != null &&
+                    motionItem.position != INVALID_POSITION && sameWindow()) {
+                final View view = motionItem.view;
                 // If there is no view, something bad happened (the view scrolled off the
                 // screen, etc.) and we should cancel the click
                 if (view != null) {
-                    performItemClick(view, motionPosition, adapter.getItemId(motionPosition));
+                    clickItem(motionItem);
                 }
             }
         }
     }
 
+    private boolean clickItem(GridItem item) {
+        if (mChoiceMode == CHOICE_MODE_MULTIPLE) {
+            setItemChecked(item.section, item.position, !mSelection.isSelected(item.rawPosition));
+        }
+        else if (mChoiceMode == CHOICE_MODE_SINGLE) {
+            setItemChecked(item.section, item.position, true);
+        }
+        return performItemClick(item.view, item.position, item.id);
+    }
+
     public boolean performItemClick(View view, int position, long id) {
         if (mOnItemClickListener != null) {
             playSoundEffect(SoundEffectConstants.CLICK);
@@ -1994,9 +2826,6 @@ public class StaggeredGridView extends ViewGroup {
 
     boolean performLongPress(final View child,
                              final int longPressPosition, final long longPressId) {
-
-        // TODO : add check for multiple choice mode.. currently modes are yet to be supported
-
         boolean handled = false;
         if (mOnItemLongClickListener != null) {
             handled = mOnItemLongClickListener.onItemLongClick(this, child, longPressPosition, longPressId);
@@ -2011,6 +2840,341 @@ public class StaggeredGridView extends ViewGroup {
         return handled;
     }
 
+    public boolean isReorderEnabled() {
+        return mReorderEnabled;
+    }
+
+    /**
+     * Let the user long press an item and drag it to a new place within its section instead of
+     * long clicking it. Items make way as it is dragged over them and the grid scrolls when it is
+     * held near an edge; only placements from the first changed position on are placed again, so
+     * this stays cheap however many items come after. Dropping it reports the move to
+     * {@link StaggeredGridAdapter#onItemMoved(int, int)}, or
+     * {@link StaggeredGridSectionAdapter#onItemMoved(int, int, int)} for sections. Items only
+     * animate out of the way with stable IDs.
+     *
+     * @param enabled true to reorder on long press
+     */
+    public void setReorderEnabled(boolean enabled) {
+        mReorderEnabled = enabled;
+        if (!enabled && isReordering()) {
+            finishReorder(false);
+        }
+    }
+
+    private boolean isReordering() {
+        return mReorderFrom != INVALID_POSITION;
+    }
+
+    public int getChoiceMode() {
+        return mChoiceMode;
+    }
+
+    /**
+     * Defines the choice behavior for the grid. By default grids do not have any choice behavior
+     * ({@link #CHOICE_MODE_NONE}). With {@link #CHOICE_MODE_SINGLE} clicking an item checks it,
+     * with {@link #CHOICE_MODE_MULTIPLE} clicking an item toggles it, and checked items are shown
+     * activated. Section headers cannot be checked. With stable IDs the checked items follow
+     * their IDs through data changes; otherwise they stay on their positions.
+     *
+     * @param choiceMode One of {@link #CHOICE_MODE_NONE}, {@link #CHOICE_MODE_SINGLE} or
+     *                   {@link #CHOICE_MODE_MULTIPLE}
+     */
+    public void setChoiceMode(int choiceMode) {
+        mChoiceMode = choiceMode;
+        mSelection.clear();
+        for (int i = 0; i < mVisibleItems.size(); i++) {
+            GridItem item = mVisibleItems.valueAt(i);
+            if (!item.isSection && item.view != null) {
+                ViewCompat.setActivated(item.view, false);
+            }
+        }
+    }
+
+    public void setItemChecked(int position, boolean checked) {
+        setItemChecked(0, position, checked);
+    }
+
+    /**
+     * Sets the checked state of an item. Only has an effect while a choice mode is set; in
+     * {@link #CHOICE_MODE_SINGLE} checking an item unchecks the one checked before.
+     *
+     * @param section Section of the item, 0 for a {@link StaggeredGridAdapter}
+     * @param position Position of the item within its section
+     */
+    public void setItemChecked(int section, int position, boolean checked) {
+        if (mChoiceMode == CHOICE_MODE_NONE || mAdapter == null || position < 0) {
+            return;
+        }
+        final int rawPosition = mEngine.getRawPosition(section, position);
+        if (mChoiceMode == CHOICE_MODE_SINGLE && checked) {
+            mSelection.clear();
+            updateActivatedViews();
+        }
+        mSelection.setSelected(rawPosition, mHasStableIds ? itemIdFor(section, position) : -1, checked);
+        GridItem item = mVisibleItems.get(rawPosition);
+        if (item != null && item.view != null) {
+            ViewCompat.setActivated(item.view, checked);
+        }
+    }
+
+    public boolean isItemChecked(int position) {
+        return isItemChecked(0, position);
+    }
+
+    /**
+     * @param section Section of the item, 0 for a {@link StaggeredGridAdapter}
+     * @param position Position of the item within its section
+     */
+    public boolean isItemChecked(int section, int position) {
+        if (mChoiceMode == CHOICE_MODE_NONE || position < 0) {
+            return false;
+        }
+        return mSelection.isSelected(mEngine.getRawPosition(section, position));
+    }
+
+    /**
+     * Checks every item in {@link #CHOICE_MODE_MULTIPLE}. Only flips how the selection is
+     * recorded and reactivates the attached views, so it takes the same time for any number of
+     * items.
+     */
+    public void checkAll() {
+        if (mChoiceMode != CHOICE_MODE_MULTIPLE) {
+            return;
+        }
+        mSelection.selectAll();
+        updateActivatedViews();
+    }
+
+    /**
+     * Unchecks every item.
+     */
+    public void clearChoices() {
+        mSelection.clear();
+        updateActivatedViews();
+    }
+
+    public int getCheckedItemCount() {
+        if (mChoiceMode == CHOICE_MODE_NONE || mAdapter == null) {
+            return 0;
+        }
+        final int sections = hasSectionAdapter() ? mEngine.getSectionCount() : 0;
+        return mSelection.getSelectedCount(mEngine.getRawCount() - sections);
+    }
+
+    /**
+     * @return The checked items as packed positions, read with
+     *         {@link #getPackedPositionSection(long)} and {@link #getPackedPositionPosition(long)}.
+     *         Goes over every item.
+     */
+    public long[] getCheckedItemPackedPositions() {
+        if (mChoiceMode == CHOICE_MODE_NONE || mAdapter == null) {
+            return new long[0];
+        }
+        final int[] rawPositions = mSelection.getSelectedPositions(mSelectionItems);
+        final long[] packed = new long[rawPositions.length];
+        for (int i = 0; i < rawPositions.length; i++) {
+            packed[i] = getPackedPositionForRawPosition(rawPositions[i]);
+        }
+        return packed;
+    }
+
+    /**
+     * @return The stable IDs of the checked items, or an empty array if the adapter does not have
+     *         stable IDs. Goes over every item.
+     */
+    public long[] getCheckedItemIds() {
+        if (mChoiceMode == CHOICE_MODE_NONE || mAdapter == null || !mHasStableIds) {
+            return new long[0];
+        }
+        final int[] rawPositions = mSelection.getSelectedPositions(mSelectionItems);
+        final long[] ids = new long[rawPositions.length];
+        for (int i = 0; i < rawPositions.length; i++) {
+            ids[i] = mSelectionItems.getItemId(rawPositions[i]);
+        }
+        return ids;
+    }
+
+    private void updateActivatedViews() {
+        for (int i = 0; i < mVisibleItems.size(); i++) {
+            GridItem item = mVisibleItems.valueAt(i);
+            if (!item.isSection && item.view != null) {
+                ViewCompat.setActivated(item.view, mSelection.isSelected(checkedRawPosition(item)));
+            }
+        }
+    }
+
+    //where an item's checked state is kept, which is not where it is shown while another is dragged
+    private int checkedRawPosition(GridItem item) {
+        if (!isReordering() || item.section != mReorderSection) {
+            return item.rawPosition;
+        }
+        return mEngine.getRawPosition(item.section, adapterPosition(item.section, item.position));
+    }
+
+    //the adapter position shown at position while an item is dragged through its section
+    private int adapterPosition(int section, int position) {
+        if (mReorderFrom == INVALID_POSITION || section != mReorderSection) {
+            return position;
+        }
+        if (position == mReorderTo) {
+            return mReorderFrom;
+        }
+        if (mReorderFrom < mReorderTo && position >= mReorderFrom && position < mReorderTo) {
+            return position + 1;
+        }
+        if (mReorderFrom > mReorderTo && position > mReorderTo && position <= mReorderFrom) {
+            return position - 1;
+        }
+        return position;
+    }
+
+    private void startReorder(GridItem item) {
+        final View view = item.view;
+        mReorderSection = item.section;
+        mReorderFrom = item.position;
+        mReorderTo = item.position;
+        mReorderView = view;
+        mReorderTouchX = mLastTouchX;
+        mReorderTouchY = mLastTouchY;
+        mReorderGrabX = (int) mLastTouchX - view.getLeft();
+        mReorderGrabY = (int) mLastTouchY - view.getTop();
+        mReorderScrollSpeed = Math.max(1, viewportLength() / 30);
+        mTouchMode = TOUCH_MODE_REORDERING;
+        view.setPressed(false);
+        setPressed(false);
+        setChildrenDrawingOrderEnabled(true);
+        if (getParent() != null) {
+            getParent().requestDisallowInterceptTouchEvent(true);
+        }
+        performHapticFeedback(HapticFeedbackConstants.LONG_PRESS);
+        invalidate();
+    }
+
+    private void updateReorder(float x, float y) {
+        mReorderTouchX = x;
+        mReorderTouchY = y;
+        final GridItem hovered = gridItemAtPoint((int) x, (int) y);
+        if (hovered != null && !hovered.isSection && hovered.section == mReorderSection &&
+                hovered.position != mReorderTo) {
+            //only what comes after the earlier of the two slots has moved
+            final int first = Math.min(mReorderTo, hovered.position);
+            mReorderTo = hovered.position;
+            relayoutReorderedFrom(mReorderSection, first);
+        }
+        followReorderTouch();
+        if (!mReorderAutoScrollScheduled && reorderAutoScrollDelta() != 0) {
+            mReorderAutoScrollScheduled = true;
+            ViewCompat.postOnAnimation(this, mReorderAutoScroll);
+        }
+    }
+
+    //keeps the dragged view under the finger wherever its slot is laid out
+    private void followReorderTouch() {
+        final View view = mReorderView;
+        if (view != null) {
+            ViewCompat.setTranslationX(view, mReorderTouchX - mReorderGrabX - view.getLeft());
+            ViewCompat.setTranslationY(view, mReorderTouchY - mReorderGrabY - view.getTop());
+            invalidate();
+        }
+    }
+
+    //scrolls faster the closer the finger is to an edge, towards the beginning if positive
+    private int reorderAutoScrollDelta() {
+        final float touch = vertical() ? mReorderTouchY : mReorderTouchX;
+        final int length = viewportLength();
+        final int zone = length / 6;
+        if (zone <= 0) {
+            return 0;
+        }
+        if (touch < zone) {
+            return (int) Math.ceil(mReorderScrollSpeed * (zone - touch) / zone);
+        }
+        if (touch > length - zone) {
+            return -(int) Math.ceil(mReorderScrollSpeed * (touch - length + zone) / zone);
+        }
+        return 0;
+    }
+
+    /**
+     * Drops the dragged item where it is. If the adapter does not take the move, or the drag was
+     * cancelled, everything moves back.
+     */
+    private void finishReorder(boolean drop) {
+        final int section = mReorderSection;
+        final int from = mReorderFrom;
+        final int to = mReorderTo;
+        final View view = mReorderView;
+        boolean moved = false;
+        if (drop && from != to) {
+            if (hasSectionAdapter()) {
+                moved = getSectionAdapter().onItemMoved(section, from, to);
+            }
+            else {
+                moved = mAdapter.onItemMoved(from, to);
+            }
+        }
+        clearReorder();
+        mTouchMode = TOUCH_MODE_IDLE;
+        if (moved) {
+            mSelection.move(mEngine.getRawPosition(section, from), mEngine.getRawPosition(section, to));
+        }
+        if (view != null) {
+            //settle into its slot from under the finger
+            final float x = ViewCompat.getTranslationX(view);
+            final float y = ViewCompat.getTranslationY(view);
+            if (GridItemAnimator.SUPPORTED && (x != 0 || y != 0)) {
+                mItemAnimator.animateMove(view, x, y);
+                mItemAnimator.start();
+            }
+        }
+        if (!moved && from != to) {
+            //the adapter kept its order, back to where everything was
+            relayoutReorderedFrom(section, Math.min(from, to));
+        }
+    }
+
+    /**
+     * Abandons a drag without moving anything back, as when the adapter changed under it.
+     */
+    private void cancelReorder() {
+        if (!isReordering()) {
+            return;
+        }
+        if (mReorderView != null) {
+            ViewCompat.setTranslationX(mReorderView, 0);
+            ViewCompat.setTranslationY(mReorderView, 0);
+        }
+        clearReorder();
+        mTouchMode = TOUCH_MODE_IDLE;
+    }
+
+    private void clearReorder() {
+        removeCallbacks(mReorderAutoScroll);
+        mReorderAutoScrollScheduled = false;
+        mReorderSection = INVALID_POSITION;
+        mReorderFrom = INVALID_POSITION;
+        mReorderTo = INVALID_POSITION;
+        mReorderView = null;
+        setChildrenDrawingOrderEnabled(false);
+    }
+
+    @Override
+    protected int getChildDrawingOrder(int childCount, int i) {
+        //the dragged view is drawn last, above the items it passes over
+        if (i == 0) {
+            mReorderViewIndex = mReorderView != null ? indexOfChild(mReorderView) : -1;
+        }
+        final int index = mReorderViewIndex;
+        if (index < 0) {
+            return i;
+        }
+        if (i == childCount - 1) {
+            return index;
+        }
+        return i < index ? i : i + 1;
+    }
+
     @Override
     protected ContextMenuInfo getContextMenuInfo() {
         return mContextMenuInfo;
@@ -2153,6 +3317,163 @@ public class StaggeredGridView extends ViewGroup {
         boolean onItemLongClick(StaggeredGridView parent, View view, int position, long id);
     }
 
+    public boolean isTraceEnabled() {
+        return mTraceEnabled;
+    }
+
+    /**
+     * Emit named systrace sections around layout, placement, binding and recycling, splitting
+     * views the adapter inflates from views it rebinds. Sections are only emitted on API 18 and
+     * up. Can be toggled at any time from the UI thread.
+     *
+     * @param enabled true to emit trace sections
+     */
+    public void setTraceEnabled(boolean enabled) {
+        mTraceEnabled = enabled;
+    }
+
+    public boolean isItemAnimationsEnabled() {
+        return mItemAnimationsEnabled;
+    }
+
+    /**
+     * Animate items into their new places when the adapter changes instead of snapping to the new
+     * layout. Old and new places are matched by ID, so the adapter needs stable IDs. Items that
+     * moved slide over, items added fade in and items removed fade out. Only runs on API 11 and
+     * up; earlier versions always snap.
+     *
+     * @param enabled true to animate changes
+     */
+    public void setItemAnimationsEnabled(boolean enabled) {
+        mItemAnimationsEnabled = enabled;
+        if (!enabled) {
+            mItemAnimator.endAll();
+        }
+    }
+
+    public long getItemAnimationDuration() {
+        return mItemAnimator.getDuration();
+    }
+
+    /**
+     * @param duration Length of change animations in milliseconds
+     */
+    public void setItemAnimationDuration(long duration) {
+        mItemAnimator.setDuration(duration);
+    }
+
+    private void traceBegin(String section) {
+        if (mTraceEnabled) {
+            GridTrace.beginSection(section);
+        }
+    }
+
+    private void traceEnd() {
+        if (mTraceEnabled) {
+            GridTrace.endSection();
+        }
+    }
+
+    /**
+     * Register a callback to receive the work the grid did for every frame it draws: items
+     * placed, time spent placing, querying and in the adapter, views created versus recycled,
+     * scrap misses per view type and measure/layout calls. Nothing is measured while no listener
+     * is set.
+     *
+     * @param listener The callback that will run after each frame, or null to stop measuring
+     */
+    public void setOnLayoutMetricsListener(OnLayoutMetricsListener listener) {
+        mOnLayoutMetricsListener = listener;
+        if (listener == null) {
+            mLayoutMetrics = null;
+            return;
+        }
+        if (mLayoutMetrics == null) {
+            mLayoutMetrics = new LayoutMetrics();
+            mItemsPlacedReported = mEngine.getItemsPlacedCount();
+        }
+        if (mAdapter != null) {
+            mLayoutMetrics.setViewTypeCount(getAdapterViewTypeCount());
+        }
+    }
+
+    public final OnLayoutMetricsListener getOnLayoutMetricsListener() {
+        return mOnLayoutMetricsListener;
+    }
+
+    public interface OnLayoutMetricsListener {
+        /**
+         * Callback method invoked after the grid draws a frame, with the work done since the
+         * previous one.
+         *
+         * @param parent The StaggeredGridView that drew the frame
+         * @param metrics Counters for the frame, only valid during this call
+         */
+        void onFrameMetrics(StaggeredGridView parent, LayoutMetrics metrics);
+    }
+
+    private void dispatchLayoutMetrics() {
+        if (mLayoutMetrics == null) {
+            return;
+        }
+        final long itemsPlaced = mEngine.getItemsPlacedCount();
+        mLayoutMetrics.itemsPlaced = (int) (itemsPlaced - mItemsPlacedReported);
+        mItemsPlacedReported = itemsPlaced;
+        mOnLayoutMetricsListener.onFrameMetrics(this, mLayoutMetrics);
+        mLayoutMetrics.reset();
+    }
+
+    /**
+     * Register a callback to be invoked when the grid hits a condition that indicates a bug in
+     * the grid or an adapter that changed without notifying it: an adapter that returned no view,
+     * or a request for a position past the adapter's count.
+     *
+     * @param listener The callback that will run, or null to only count events
+     */
+    public void setOnDiagnosticEventListener(OnDiagnosticEventListener listener) {
+        mOnDiagnosticEventListener = listener;
+    }
+
+    public final OnDiagnosticEventListener getOnDiagnosticEventListener() {
+        return mOnDiagnosticEventListener;
+    }
+
+    /**
+     * @param event One of the DIAGNOSTIC_ constants
+     * @return How many times the event occurred since the grid was created or last reset
+     */
+    public int getDiagnosticCount(int event) {
+        return mDiagnosticCounts[event];
+    }
+
+    public void resetDiagnosticCounts() {
+        for (int i = 0; i < DIAGNOSTIC_EVENT_COUNT; i++) {
+            mDiagnosticCounts[i] = 0;
+        }
+    }
+
+    public interface OnDiagnosticEventListener {
+        /**
+         * Callback method invoked when the grid hits an unexpected condition.
+         *
+         * @param parent The StaggeredGridView where the event occurred
+         * @param event One of the DIAGNOSTIC_ constants
+         * @param rawPosition The raw position of the item involved
+         * @param count How many times the event has occurred, including this one
+         */
+        void onDiagnosticEvent(StaggeredGridView parent, int event, int rawPosition, int count);
+    }
+
+    private void reportDiagnostic(int event, int rawPosition) {
+        final int count = ++mDiagnosticCounts[event];
+        if (GridLog.DEBUG) {
+            GridLog.d("diagnostic event " + event + " at raw position " + rawPosition);
+        }
+        if (mOnDiagnosticEventListener != null) {
+            mOnDiagnosticEventListener.onDiagnosticEvent(this, event, rawPosition, count);
+        }
+    }
+
     /**
      * Maps a point to a position in the list.
      *
@@ -2160,26 +3481,289 @@ public class StaggeredGridView extends ViewGroup {
      * @param y Y in local coordinate
      * @return The position of the item which contains the specified point, or
      *         {@link #INVALID_POSITION} if the point does not intersect an item.
+     *         For a {@link StaggeredGridSectionAdapter} this is the position within the item's
+     *         section; use {@link #pointToPackedPosition(int, int)} to also get the section.
      */
     public int pointToPosition(int x, int y) {
-        Rect frame = mTouchFrame;
-        if (frame == null) {
-            mTouchFrame = new Rect();
-            frame = mTouchFrame;
+        GridItem item = gridItemAtPoint(x, y);
+        return item != null ? item.position : INVALID_POSITION;
+    }
+
+    /**
+     * Maps a point to the section and position of the item beneath it.
+     *
+     * @param x X in local coordinate
+     * @param y Y in local coordinate
+     * @return A packed position that can be read with {@link #getPackedPositionSection(long)} and
+     *         {@link #getPackedPositionPosition(long)}, or {@link #INVALID_PACKED_POSITION} if the
+     *         point does not intersect an item. Section headers report a position of -1.
+     */
+    public long pointToPackedPosition(int x, int y) {
+        GridItem item = gridItemAtPoint(x, y);
+        if (item == null) {
+            return INVALID_PACKED_POSITION;
         }
+        return getPackedPosition(item.section, item.isSection ? -1 : item.position);
+    }
 
-        final int count = getChildCount();
-        for (int i = count - 1; i >= 0; i--) {
-            final View child = getChildAt(i);
-            if (child.getVisibility() == View.VISIBLE) {
-                child.getHitRect(frame);
-                if (frame.contains(x, y)) {
-                    GridItem item = (GridItem) child.getTag(R.string.GRID_ITEM_TAG);
-                    return item.position;
+    /**
+     * @param section Section of the item, 0 for a {@link StaggeredGridAdapter}
+     * @param position Position of the item within its section, -1 for the section header
+     * @return The position of the item among every header and item in the grid
+     */
+    public int getRawPosition(int section, int position) {
+        return mEngine.getRawPosition(section, position);
+    }
+
+    /**
+     * Maps a position among every header and item back to its section and position in
+     * O(log sections).
+     *
+     * @return A packed position that can be read with {@link #getPackedPositionSection(long)} and
+     *         {@link #getPackedPositionPosition(long)}, or {@link #INVALID_PACKED_POSITION} if
+     *         there is no item at rawPosition. Section headers report a position of -1.
+     */
+    public long getPackedPositionForRawPosition(int rawPosition) {
+        final int section = mEngine.getSectionForRawPosition(rawPosition);
+        if (section == INVALID_POSITION) {
+            return INVALID_PACKED_POSITION;
+        }
+        return getPackedPosition(section, mEngine.getPositionForRawPosition(rawPosition));
+    }
+
+    public static long getPackedPosition(int section, int position) {
+        return ((long) section << 32) | (position & 0xFFFFFFFFL);
+    }
+
+    public static int getPackedPositionSection(long packedPosition) {
+        return (int) (packedPosition >> 32);
+    }
+
+    public static int getPackedPositionPosition(long packedPosition) {
+        return (int) packedPosition;
+    }
+
+    private GridItem gridItemAtPoint(int x, int y) {
+        if (mStickyHeaderVisible && x >= mStickyHeaderView.getLeft() && x < mStickyHeaderView.getRight() &&
+                y >= mStickyHeaderView.getTop() && y < mStickyHeaderView.getBottom()) {
+            //the pinned header covers whatever scrolled beneath it
+            return new GridItem(mEngine.getSectionHeader(mStickyHeaderSection));
+        }
+        final Placement placement;
+        if (vertical()) {
+            placement = mEngine.itemAt(x, y + mCurrentOffset);
+        }
+        else {
+            placement = mEngine.itemAt(x + mCurrentOffset, y);
+        }
+        if (placement == null) {
+            return null;
+        }
+        GridItem item = mVisibleItems.get(placement.rawPosition);
+        return item != null ? item : new GridItem(placement);
+    }
+
+    @Override
+    protected boolean dispatchHoverEvent(MotionEvent event) {
+        return mAccessibilityHelper.dispatchHoverEvent(event) || super.dispatchHoverEvent(event);
+    }
+
+    /**
+     * Every placed header and item within a page of the screen is a virtual view, identified by
+     * its raw position and described from its placement, so none of them needs a view to be read
+     * out or acted on. Further items are reached by scrolling, which the grid offers as actions
+     * along with the collection info services use to announce positions.
+     */
+    private class GridAccessibilityHelper extends ExploreByTouchHelper {
+        private final ArrayList<Placement> mPlacements = new ArrayList<Placement>();
+        private final Rect mBounds = new Rect();
+
+        GridAccessibilityHelper() {
+            super(StaggeredGridView.this);
+        }
+
+        private boolean hasItems() {
+            return mAdapter != null && mEngine.isStarted() && mEngine.hasContent();
+        }
+
+        @Override
+        protected int getVirtualViewAt(float x, float y) {
+            if (!hasItems()) {
+                return INVALID_ID;
+            }
+            GridItem item = gridItemAtPoint((int) x, (int) y);
+            return item != null ? item.rawPosition : INVALID_ID;
+        }
+
+        @Override
+        protected void getVisibleVirtualViews(List<Integer> virtualViewIds) {
+            if (!hasItems()) {
+                return;
+            }
+            final int length = viewportLength();
+            mEngine.getPlacementsInRange(Math.max(0, mCurrentOffset - length), mCurrentOffset + 2 * length, mPlacements);
+            for (int i = 0; i < mPlacements.size(); i++) {
+                virtualViewIds.add(mPlacements.get(i).rawPosition);
+            }
+            mPlacements.clear();
+            Collections.sort(virtualViewIds);
+        }
+
+        @Override
+        protected void onPopulateEventForVirtualView(int virtualViewId, AccessibilityEvent event) {
+            event.setContentDescription(describe(virtualViewId));
+        }
+
+        private CharSequence describe(int rawPosition) {
+            final long packed = getPackedPositionForRawPosition(rawPosition);
+            if (mAdapter == null || packed == INVALID_PACKED_POSITION) {
+                return "";
+            }
+            final int section = getPackedPositionSection(packed);
+            final int position = getPackedPositionPosition(packed);
+            CharSequence description;
+            if (position < 0) {
+                description = getSectionAdapter().getSectionContentDescription(section);
+            }
+            else if (hasSectionAdapter()) {
+                description = getSectionAdapter().getItemContentDescription(section, adapterPosition(section, position));
+            }
+            else {
+                description = mAdapter.getItemContentDescription(adapterPosition(section, position));
+            }
+            if (description == null) {
+                GridItem item = mVisibleItems.get(rawPosition);
+                if (item != null && item.view != null) {
+                    description = item.view.getContentDescription();
                 }
             }
+            return description != null ? description : "";
+        }
+
+        @Override
+        protected void onPopulateNodeForVirtualView(int virtualViewId, AccessibilityNodeInfoCompat node) {
+            node.setContentDescription(describe(virtualViewId));
+            //never place items just to describe them
+            final Placement placement = hasItems() && virtualViewId < mEngine.getPlacedCount() ?
+                    placementFor(virtualViewId) : null;
+            if (placement == null) {
+                mBounds.setEmpty();
+                node.setBoundsInParent(mBounds);
+                return;
+            }
+            final GridRect rect = placement.rect;
+            if (vertical()) {
+                mBounds.set(rect.left, rect.top - mCurrentOffset, rect.right, rect.bottom - mCurrentOffset);
+            }
+            else {
+                mBounds.set(rect.left - mCurrentOffset, rect.top, rect.right - mCurrentOffset, rect.bottom);
+            }
+            node.setBoundsInParent(mBounds);
+            node.setClassName(View.class.getName());
+            node.setCollectionItemInfo(AccessibilityNodeInfoCompat.CollectionItemInfoCompat.obtain(
+                    vertical() ? virtualViewId : 0, 1, vertical() ? 0 : virtualViewId, 1, placement.isSection));
+            if (placement.isSection) {
+                return;
+            }
+            final int position = adapterPosition(placement.section, placement.position);
+            final boolean enabled = mAdapter.isEnabled(position);
+            node.setEnabled(enabled);
+            if (enabled) {
+                node.setClickable(true);
+                node.addAction(AccessibilityNodeInfoCompat.ACTION_CLICK);
+                if (isLongClickable() && mVisibleItems.get(virtualViewId) != null) {
+                    node.setLongClickable(true);
+                    node.addAction(AccessibilityNodeInfoCompat.ACTION_LONG_CLICK);
+                }
+            }
+            if (mChoiceMode != CHOICE_MODE_NONE) {
+                node.setCheckable(true);
+                node.setChecked(mSelection.isSelected(virtualViewId));
+            }
+        }
+
+        @Override
+        protected boolean onPerformActionForVirtualView(int virtualViewId, int action, Bundle arguments) {
+            if (!hasItems() || virtualViewId >= mEngine.getPlacedCount() || mDataChanged) {
+                return false;
+            }
+            GridItem item = mVisibleItems.get(virtualViewId);
+            if (item == null) {
+                final Placement placement = placementFor(virtualViewId);
+                if (placement == null) {
+                    return false;
+                }
+                item = new GridItem(placement);
+            }
+            if (item.isSection) {
+                return false;
+            }
+            switch (action) {
+                case AccessibilityNodeInfoCompat.ACTION_CLICK:
+                    return clickItem(item) || mChoiceMode != CHOICE_MODE_NONE;
+                case AccessibilityNodeInfoCompat.ACTION_LONG_CLICK:
+                    return item.view != null && performLongPress(item.view, item.position, item.id);
+            }
+            return false;
+        }
+
+        @Override
+        public void onInitializeAccessibilityNodeInfo(View host, AccessibilityNodeInfoCompat info) {
+            super.onInitializeAccessibilityNodeInfo(host, info);
+            info.setClassName(StaggeredGridView.class.getName());
+            if (!hasItems()) {
+                return;
+            }
+            final int rawCount = mEngine.getRawCount();
+            info.setCollectionInfo(AccessibilityNodeInfoCompat.CollectionInfoCompat.obtain(
+                    vertical() ? rawCount : 1, vertical() ? 1 : rawCount, false));
+            final boolean canScroll = !contentFits();
+            info.setScrollable(canScroll);
+            if (canScroll && mCurrentOffset > getMinAllowedOffset()) {
+                info.addAction(AccessibilityNodeInfoCompat.ACTION_SCROLL_BACKWARD);
+            }
+            if (canScroll && (mCurrentOffset < getMaxAllowedOffset() || !mEngine.isComplete())) {
+                info.addAction(AccessibilityNodeInfoCompat.ACTION_SCROLL_FORWARD);
+            }
+            info.addAction(AccessibilityNodeInfoCompat.AccessibilityActionCompat.ACTION_SCROLL_TO_POSITION);
         }
-        return INVALID_POSITION;
-    }
 
-}
\ No newline at end of file
+        @Override
+        public void onInitializeAccessibilityEvent(View host, AccessibilityEvent event) {
+            super.onInitializeAccessibilityEvent(host, event);
+            event.setClassName(StaggeredGridView.class.getName());
+            if (hasItems()) {
+                event.setScrollable(!contentFits());
+                event.setItemCount(mEngine.getRawCount());
+            }
+        }
+
+        @Override
+        public boolean performAccessibilityAction(View host, int action, Bundle arguments) {
+            if (hasItems() && !mDataChanged) {
+                if (action == AccessibilityNodeInfoCompat.ACTION_SCROLL_FORWARD ||
+                        action == AccessibilityNodeInfoCompat.ACTION_SCROLL_BACKWARD) {
+                    //a page less the margin, so items cut off at the edge come round whole
+                    final int page = viewportLength() - mItemMargin;
+                    final int before = mCurrentOffset;
+                    scrollToOffset(action == AccessibilityNodeInfoCompat.ACTION_SCROLL_FORWARD ?
+                            mCurrentOffset + page : mCurrentOffset - page);
+                    return mCurrentOffset != before;
+                }
+                if (action == AccessibilityNodeInfoCompat.AccessibilityActionCompat.ACTION_SCROLL_TO_POSITION.getId()
+                        && arguments != null) {
+                    final int rawPosition = arguments.getInt(vertical() ?
+                            AccessibilityNodeInfoCompat.ACTION_ARGUMENT_ROW_INT :
+                            AccessibilityNodeInfoCompat.ACTION_ARGUMENT_COLUMN_INT, INVALID_POSITION);
+                    final long packed = getPackedPositionForRawPosition(rawPosition);
+                    if (packed == INVALID_PACKED_POSITION) {
+                        return false;
+                    }
+                    scrollToPosition(getPackedPositionSection(packed), getPackedPositionPosition(packed), 0);
+                    return true;
+                }
+            }
+            return super.performAccessibilityAction(host, action, arguments);
+        }
+    }
+}
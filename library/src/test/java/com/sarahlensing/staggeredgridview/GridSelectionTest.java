@@ -0,0 +1,183 @@
+package com.sarahlensing.staggeredgridview;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GridSelectionTest {
+    //items with the given IDs at their raw positions, -1 for a section header
+    private static class TestItems implements GridSelection.Items {
+        private final long[] mIds;
+        int idReads;
+
+        TestItems(long... ids) {
+            mIds = ids;
+        }
+
+        @Override
+        public int getRawCount() {
+            return mIds.length;
+        }
+
+        @Override
+        public boolean isItem(int rawPosition) {
+            return mIds[rawPosition] >= 0;
+        }
+
+        @Override
+        public long getItemId(int rawPosition) {
+            idReads++;
+            return mIds[rawPosition];
+        }
+    }
+
+    //items whose ID is their raw position
+    private static long[] ids(int count) {
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = i;
+        }
+        return ids;
+    }
+
+    private static GridSelection selection(boolean trackIds, int... selected) {
+        GridSelection selection = new GridSelection();
+        selection.setTrackIds(trackIds);
+        for (int raw : selected) {
+            selection.setSelected(raw, raw, true);
+        }
+        return selection;
+    }
+
+    @Test
+    public void selectedItemsAreCounted() {
+        GridSelection selection = selection(false, 3, 64, 200);
+        assertTrue(selection.isSelected(64));
+        assertFalse(selection.isSelected(65));
+        assertEquals(3, selection.getSelectedCount(1000));
+
+        selection.setSelected(64, 64, false);
+        selection.setSelected(3, 3, true);
+        assertFalse(selection.isSelected(64));
+        assertEquals(2, selection.getSelectedCount(1000));
+        assertArrayEquals(new int[] {3, 200}, selection.getSelectedPositions(new TestItems(ids(1000))));
+    }
+
+    @Test
+    public void selectAllOnlyFlipsTheMeaningOfTheBits() {
+        GridSelection selection = selection(false, 5);
+        selection.selectAll();
+        assertTrue(selection.isInverted());
+        assertEquals(0, selection.getBits().length);
+        assertTrue(selection.isSelected(5));
+        assertTrue(selection.isSelected(100000));
+        assertEquals(1000, selection.getSelectedCount(1000));
+
+        //bits now mark the items left out
+        selection.setSelected(7, 7, false);
+        assertFalse(selection.isSelected(7));
+        assertEquals(999, selection.getSelectedCount(1000));
+        selection.setSelected(7, 7, true);
+        assertEquals(1000, selection.getSelectedCount(1000));
+
+        selection.clear();
+        assertFalse(selection.isInverted());
+        assertFalse(selection.isSelected(7));
+        assertEquals(0, selection.getSelectedCount(1000));
+    }
+
+    @Test
+    public void sectionHeadersAreNeverSelectedPositions() {
+        GridSelection selection = selection(false);
+        selection.selectAll();
+        assertArrayEquals(new int[] {1, 2, 4}, selection.getSelectedPositions(new TestItems(-1, 1, 2, -1, 4)));
+    }
+
+    @Test
+    public void moveShiftsTheItemsInBetween() {
+        GridSelection selection = selection(true, 2, 5, 9);
+        selection.move(2, 7);
+        assertArrayEquals(new int[] {4, 7, 9}, selection.getSelectedPositions(new TestItems(ids(12))));
+        selection.move(9, 0);
+        assertArrayEquals(new int[] {0, 5, 8}, selection.getSelectedPositions(new TestItems(ids(12))));
+        assertEquals(3, selection.getSelectedCount(12));
+
+        //the tracked IDs moved with their bits
+        long[] ids = selection.getIds();
+        int[] positions = selection.getIdPositions(ids);
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(ids[i] == 9 ? 0 : ids[i] == 2 ? 8 : 5, positions[i]);
+        }
+    }
+
+    @Test
+    public void confirmFindsItemsNearTheirOldPositionWithoutReadingEveryId() {
+        GridSelection selection = selection(true, 500);
+        //ten items inserted before it
+        long[] ids = new long[1000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i < 10 ? 2000 + i : i - 10;
+        }
+        TestItems items = new TestItems(ids);
+        selection.confirm(items);
+        assertArrayEquals(new int[] {510}, selection.getSelectedPositions(new TestItems(ids)));
+        //only the window either side of the old position was searched
+        assertTrue(items.idReads <= 41);
+    }
+
+    @Test
+    public void confirmFallsBackToOnePassForItemsMovedFurther() {
+        GridSelection selection = selection(true, 100, 900, 950);
+        long[] ids = ids(1000);
+        //100 went to the start, 950 is gone
+        System.arraycopy(ids, 0, ids, 1, 100);
+        ids[0] = 100;
+        ids[950] = 5000;
+        selection.confirm(new TestItems(ids));
+        assertArrayEquals(new int[] {0, 900}, selection.getSelectedPositions(new TestItems(ids)));
+        assertEquals(2, selection.getSelectedCount(1000));
+        assertEquals(2, selection.getIds().length);
+    }
+
+    @Test
+    public void confirmWithoutIdsDropsBitsPastTheEnd() {
+        GridSelection selection = selection(false, 3, 90, 130);
+        selection.confirm(new TestItems(ids(100)));
+        assertEquals(2, selection.getSelectedCount(100));
+        assertTrue(selection.isSelected(90));
+        assertFalse(selection.isSelected(130));
+    }
+
+    @Test
+    public void restoredSelectionMatchesTheSavedOne() {
+        for (boolean inverted : new boolean[] {false, true}) {
+            GridSelection saved = selection(true);
+            if (inverted) {
+                saved.selectAll();
+            }
+            for (int raw : new int[] {1, 63, 64, 700}) {
+                saved.setSelected(raw, 10000 + raw, !inverted);
+            }
+            final long[] ids = saved.getIds();
+
+            GridSelection restored = new GridSelection();
+            restored.setTrackIds(true);
+            restored.restore(saved.getBits(), saved.isInverted(), ids, saved.getIdPositions(ids));
+            assertEquals(inverted, restored.isInverted());
+            TestItems items = new TestItems(ids(1000));
+            assertArrayEquals(saved.getSelectedPositions(items), restored.getSelectedPositions(items));
+            assertEquals(saved.getSelectedCount(1000), restored.getSelectedCount(1000));
+
+            long[] restoredIds = restored.getIds();
+            Arrays.sort(restoredIds);
+            long[] savedIds = ids.clone();
+            Arrays.sort(savedIds);
+            assertArrayEquals(savedIds, restoredIds);
+        }
+    }
+}